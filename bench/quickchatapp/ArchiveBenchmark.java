@@ -0,0 +1,99 @@
+package quickchatapp;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+import org.openjdk.jmh.annotations.*;
+
+// JSONHandler against archives of different sizes: storing one more message and
+// rendering the stored-messages view, for each storage mode
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ArchiveBenchmark {
+
+    @Param({"100", "1000", "10000"})
+    public int archiveSize;
+
+    @Param({"JSON_ARRAY", "APPEND_LOG", "BINARY"})
+    public JSONHandler.StorageMode storageMode;
+
+    private Path dir;
+    private Message message;
+    private PrintStream stdout;
+    // Stores since the archive was last reset
+    private int storedSinceReset;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        dir = Files.createTempDirectory("quickchat-bench");
+        JSONHandler.disableBatching();
+        JSONHandler.setDataDirectory(dir);
+        JSONHandler.setStorageMode(storageMode);
+        message = new Message();
+        message.setRecipient(BenchData.recipient(0));
+        message.setMessage(BenchData.text(0));
+        message.setStatus("sent");
+        // storeMessage reports every write on stdout; keep that out of the measurement
+        stdout = System.out;
+        System.setOut(new PrintStream(OutputStream.nullOutputStream()));
+    }
+
+    // Each iteration starts from an archive of exactly archiveSize messages;
+    // the append formats are seeded from it when they are first opened
+    @Setup(Level.Iteration)
+    public void resetArchive() throws IOException {
+        JSONHandler.closeLog();
+        deleteContents();
+        BenchData.writeArrayArchive(dir.resolve("messages.json"), archiveSize);
+        // A lookup opens (and seeds) the append logs here rather than in the first measured store
+        JSONHandler.findMessageByID("1000000000");
+        storedSinceReset = 0;
+    }
+
+    // Resets the archive once storeMessage has grown it by a tenth, so every store runs
+    // against about archiveSize messages however many fit in an iteration. In JSON_ARRAY
+    // mode that also empties the write-ahead log before it reaches a checkpoint; the
+    // checkpoint cost is measured by DurabilityBenchmark instead.
+    @Setup(Level.Invocation)
+    public void limitGrowth() throws IOException {
+        if (storedSinceReset >= Math.max(1, archiveSize / 10)) {
+            resetArchive();
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        System.setOut(stdout);
+        JSONHandler.closeLog();
+        deleteContents();
+        Files.deleteIfExists(dir);
+    }
+
+    private void deleteContents() throws IOException {
+        try (Stream<Path> files = Files.list(dir)) {
+            for (Path file : (Iterable<Path>) files.sorted(Comparator.reverseOrder())::iterator) {
+                Files.delete(file);
+            }
+        }
+    }
+
+    @Benchmark
+    public void storeMessage() {
+        JSONHandler.storeMessage(message);
+        storedSinceReset++;
+    }
+
+    @Benchmark
+    public String getAllMessages() {
+        return JSONHandler.getAllMessages();
+    }
+}
@@ -0,0 +1,55 @@
+package quickchatapp;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+// Synthetic archives shared by the benchmarks
+final class BenchData {
+    private BenchData() {
+    }
+
+    static String recipient(int i) {
+        return "+2772" + String.format("%07d", i % 10_000_000);
+    }
+
+    static String text(int i) {
+        return "Benchmark message number " + i + " with a few more words to look like a real chat";
+    }
+
+    static MessageRecord record(int i) {
+        long id = 1_000_000_000L + i;
+        return new MessageRecord(String.valueOf(id), i + 1, recipient(i), text(i),
+                String.valueOf(id).substring(0, 2) + ":" + (i + 1) + ":BENCHMARKCHAT",
+                i % 3 == 0 ? "stored" : "sent", "2025-10-13 14:45:30");
+    }
+
+    // Writes a messages.json array exactly as JSONHandler does in JSON_ARRAY mode
+    static Path writeArrayArchive(Path file, int records) throws IOException {
+        List<String> entries = new ArrayList<>(records);
+        for (int i = 0; i < records; i++) {
+            entries.add(JSONHandler.toArrayEntry(record(i)));
+        }
+        JSONHandler.writeMessagesToFile(file, entries);
+        return file;
+    }
+
+    // Writes a JSON Lines archive in the same layout JSONHandler uses for the append log
+    static Path writeLogArchive(Path file, int records) throws IOException {
+        try (BufferedWriter out = Files.newBufferedWriter(file, StandardCharsets.UTF_8)) {
+            for (int i = 0; i < records; i++) {
+                long id = 1_000_000_000L + i;
+                out.write("{\"messageID\":\"" + id + "\",\"messageCount\":" + (i + 1)
+                        + ",\"recipient\":\"" + recipient(i) + "\",\"message\":\"" + text(i)
+                        + "\",\"messageHash\":\"" + String.valueOf(id).substring(0, 2) + ":" + (i + 1) + ":BENCHMARKCHAT"
+                        + "\",\"status\":\"" + (i % 3 == 0 ? "stored" : "sent")
+                        + "\",\"timestamp\":\"2025-10-13 14:45:30\"}\n");
+            }
+        }
+        return file;
+    }
+}
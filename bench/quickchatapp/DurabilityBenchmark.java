@@ -0,0 +1,81 @@
+package quickchatapp;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+import org.openjdk.jmh.annotations.*;
+
+// Messages per second through the batching writer at each durability level: a burst of
+// stores is queued and the benchmark waits until every one has been written as far as
+// the level requires. JSON_ARRAY includes the checkpoints into a growing messages.json.
+// NONE and FLUSH differ only in whether those rewrites are forced, so for the append
+// logs they measure the same work.
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class DurabilityBenchmark {
+    private static final int BURST = 1000;
+
+    @Param({"NONE", "FLUSH", "FSYNC_PER_BATCH", "FSYNC_PER_MESSAGE"})
+    public JSONHandler.Durability durability;
+
+    @Param({"JSON_ARRAY", "APPEND_LOG", "BINARY"})
+    public JSONHandler.StorageMode storageMode;
+
+    private Path dir;
+    private PrintStream stdout;
+    private Message[] messages;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        dir = Files.createTempDirectory("quickchat-bench");
+        JSONHandler.disableBatching();
+        JSONHandler.setDataDirectory(dir);
+        JSONHandler.setStorageMode(storageMode);
+        JSONHandler.setDurability(durability);
+        JSONHandler.enableBatching(16 * 1024, 256, 2);
+        messages = new Message[BURST];
+        for (int i = 0; i < BURST; i++) {
+            messages[i] = new Message();
+            messages[i].setRecipient(BenchData.recipient(i));
+            messages[i].setMessage(BenchData.text(i));
+            messages[i].setStatus("sent");
+        }
+        // Every batch is reported on stdout; keep that out of the measurement
+        stdout = System.out;
+        System.setOut(new PrintStream(OutputStream.nullOutputStream()));
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        JSONHandler.disableBatching();
+        JSONHandler.closeLog();
+        JSONHandler.setDurability(JSONHandler.Durability.FSYNC_PER_BATCH);
+        System.setOut(stdout);
+        try (Stream<Path> files = Files.list(dir)) {
+            for (Path file : (Iterable<Path>) files.sorted(Comparator.reverseOrder())::iterator) {
+                Files.delete(file);
+            }
+        }
+        Files.deleteIfExists(dir);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BURST)
+    public void storeBurst() {
+        CompletableFuture<?>[] stored = new CompletableFuture<?>[BURST];
+        for (int i = 0; i < BURST; i++) {
+            stored[i] = JSONHandler.storeMessageAsync(messages[i]);
+        }
+        CompletableFuture.allOf(stored).join();
+    }
+}
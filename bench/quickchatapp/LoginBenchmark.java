@@ -0,0 +1,26 @@
+package quickchatapp;
+
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.*;
+
+// Registration runs every validation (username, password complexity, cell number)
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class LoginBenchmark {
+
+    private final Login login = new Login();
+
+    @Benchmark
+    public String registerUserValid() {
+        return login.registerUser("Kyle", "Smith", "kyl_1", "Ch&&sec@ke99!", "+27838968976");
+    }
+
+    @Benchmark
+    public String registerUserBadPassword() {
+        return login.registerUser("Kyle", "Smith", "kyl_1", "password", "+27838968976");
+    }
+}
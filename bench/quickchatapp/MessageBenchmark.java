@@ -0,0 +1,60 @@
+package quickchatapp;
+
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+// Per-message work done on every send: constructing a Message (ID, hash and
+// registration in the store), re-hashing its text and validating the recipient
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class MessageBenchmark {
+    private static final int BATCH = 1000;
+
+    private Message message;
+    private int next;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        message = new Message();
+        message.setRecipient(BenchData.recipient(0));
+        message.setMessage(BenchData.text(0));
+    }
+
+    // Every Message registers its ID in the shared store, so construction is measured
+    // in batches and the store is emptied between them to keep memory flat
+    @Setup(Level.Invocation)
+    public void clearStore() {
+        Message.getStore().clear();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BATCH)
+    public void construct(Blackhole bh) {
+        for (int i = 0; i < BATCH; i++) {
+            Message m = new Message();
+            m.setRecipient(BenchData.recipient(i));
+            m.setMessage(BenchData.text(i));
+            bh.consume(m);
+        }
+    }
+
+    @Benchmark
+    public String createMessageHash() {
+        return message.createMessageHash();
+    }
+
+    @Benchmark
+    public int checkRecipientCellValid() {
+        return message.checkRecipientCell("+27718693002");
+    }
+
+    @Benchmark
+    public int checkRecipientCellInvalid() {
+        return message.checkRecipientCell(next++ % 2 == 0 ? "08575975889" : "+2771869300a");
+    }
+}
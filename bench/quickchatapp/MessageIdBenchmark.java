@@ -0,0 +1,37 @@
+package quickchatapp;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import org.openjdk.jmh.annotations.*;
+
+// ID generation throughput with several threads asking at once: the original
+// new-Random-per-message scheme, a single shared counter, and the striped generator
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@Threads(4)
+public class MessageIdBenchmark {
+
+    private final AtomicLong sharedCounter = new AtomicLong();
+    private final StripedMessageIdGenerator striped = new StripedMessageIdGenerator(0, StripedMessageIdGenerator.DEFAULT_BLOCK_SIZE);
+
+    @Benchmark
+    public long randomPerMessage() {
+        Random rand = new Random();
+        return 1000000000L + (long) (rand.nextDouble() * 9000000000L);
+    }
+
+    @Benchmark
+    public long sharedAtomicCounter() {
+        return StripedMessageIdGenerator.MIN_ID + sharedCounter.getAndIncrement() % StripedMessageIdGenerator.ID_RANGE;
+    }
+
+    @Benchmark
+    public long stripedGenerator() {
+        return striped.nextId();
+    }
+}
@@ -0,0 +1,57 @@
+package quickchatapp;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+// Full scan of a message archive: the streaming reader (BufferedReader + full decode)
+// against the memory-mapped scanner that only decodes the displayed fields
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ReadPathBenchmark {
+
+    @Param({"10000", "1000000"})
+    public int records;
+
+    private Path dir;
+    private Path archive;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        dir = Files.createTempDirectory("quickchat-bench");
+        archive = BenchData.writeLogArchive(dir.resolve("messages.jsonl"), records);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        Files.deleteIfExists(archive);
+        Files.deleteIfExists(dir);
+    }
+
+    @Benchmark
+    public void streamingReader(Blackhole bh) throws IOException {
+        MessageJsonReader.forEach(archive, record -> {
+            bh.consume(record.getMessageID());
+            bh.consume(record.getRecipient());
+            bh.consume(record.getStatus());
+            bh.consume(record.getTimestamp());
+        });
+    }
+
+    @Benchmark
+    public void mappedScanner(Blackhole bh) throws IOException {
+        MappedMessageScanner.scan(archive, (messageID, recipient, status, timestamp) -> {
+            bh.consume(messageID);
+            bh.consume(recipient);
+            bh.consume(status);
+            bh.consume(timestamp);
+        });
+    }
+}
@@ -0,0 +1,77 @@
+package quickchatapp;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+import org.openjdk.jmh.annotations.*;
+
+// Sequential (parallelism 1) against fork-join report building: the full report over
+// the sent messages in memory, and getAllMessages over a JSON Lines archive
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ReportBenchmark {
+
+    @Param({"100000", "1000000"})
+    public int records;
+
+    @Param({"1", "4"})
+    public int parallelism;
+
+    private Path dir;
+    private PrintStream stdout;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        ParallelReport.setParallelism(parallelism);
+        dir = Files.createTempDirectory("quickchat-bench");
+        BenchData.writeLogArchive(dir.resolve("messages.jsonl"), records);
+        JSONHandler.disableBatching();
+        JSONHandler.setDataDirectory(dir);
+        JSONHandler.setStorageMode(JSONHandler.StorageMode.APPEND_LOG);
+        stdout = System.out;
+        System.setOut(new PrintStream(OutputStream.nullOutputStream()));
+        // Builds the log's index now rather than during the first measured call
+        JSONHandler.findMessageByID("1000000000");
+
+        Message.getStore().clear();
+        for (int i = 0; i < records; i++) {
+            Message message = new Message();
+            message.setRecipient(BenchData.recipient(i));
+            message.setMessage(BenchData.text(i));
+            message.setStatus("sent");
+            Message.getStore().add(MessageStore.Category.SENT, message);
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        System.setOut(stdout);
+        Message.getStore().clear();
+        JSONHandler.closeLog();
+        try (Stream<Path> files = Files.list(dir)) {
+            for (Path file : (Iterable<Path>) files.sorted(Comparator.reverseOrder())::iterator) {
+                Files.delete(file);
+            }
+        }
+        Files.deleteIfExists(dir);
+    }
+
+    @Benchmark
+    public String fullReport() {
+        return Message.displayFullReport();
+    }
+
+    @Benchmark
+    public String allMessages() {
+        return JSONHandler.getAllMessages();
+    }
+}
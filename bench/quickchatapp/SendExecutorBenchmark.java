@@ -0,0 +1,79 @@
+package quickchatapp;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+import org.openjdk.jmh.annotations.*;
+
+// A burst of messages, each handled as its own task that waits until its message is
+// durable: one virtual thread per message against a fixed pool of platform threads.
+// Stores go through the batching writer, so the more tasks wait at once, the more
+// messages share each write and sync.
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class SendExecutorBenchmark {
+    private static final int BURST = 1000;
+
+    @Param({"VIRTUAL", "PLATFORM"})
+    public MessageSendExecutor.Mode executorMode;
+
+    @Param({"16"})
+    public int platformThreads;
+
+    private Path dir;
+    private PrintStream stdout;
+    private MessageSendExecutor executor;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        dir = Files.createTempDirectory("quickchat-bench");
+        JSONHandler.disableBatching();
+        JSONHandler.setDataDirectory(dir);
+        JSONHandler.setStorageMode(JSONHandler.StorageMode.APPEND_LOG);
+        JSONHandler.enableBatching(16 * 1024, 512, 2);
+        executor = new MessageSendExecutor(executorMode, platformThreads, BURST);
+        // Every batch is reported on stdout; keep that out of the measurement
+        stdout = System.out;
+        System.setOut(new PrintStream(OutputStream.nullOutputStream()));
+    }
+
+    // Keeps the in-memory store from growing across iterations
+    @Setup(Level.Iteration)
+    public void clearStore() {
+        Message.getStore().clear();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        executor.close();
+        JSONHandler.disableBatching();
+        JSONHandler.closeLog();
+        System.setOut(stdout);
+        try (Stream<Path> files = Files.list(dir)) {
+            for (Path file : (Iterable<Path>) files.sorted(Comparator.reverseOrder())::iterator) {
+                Files.delete(file);
+            }
+        }
+        Files.deleteIfExists(dir);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BURST)
+    public void sendBurst() throws InterruptedException {
+        CompletableFuture<?>[] sent = new CompletableFuture<?>[BURST];
+        for (int i = 0; i < BURST; i++) {
+            sent[i] = executor.send(BenchData.recipient(i), BenchData.text(i), 1);
+        }
+        CompletableFuture.allOf(sent).join();
+    }
+}
@@ -0,0 +1,105 @@
+package quickchatapp;
+
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+// The char-scanning Validators against the regular expressions Login, QuickChatApp and
+// Message used before, copied here unchanged, over a mix of valid and invalid inputs.
+// Time is per input checked.
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ValidatorsBenchmark {
+    private static final int INPUTS = 1024;
+
+    private final String[] cellNumbers = new String[INPUTS];
+    private final String[] recipients = new String[INPUTS];
+    private final String[] passwords = new String[INPUTS];
+
+    @Setup
+    public void setUp() {
+        for (int i = 0; i < INPUTS; i++) {
+            // One in four is malformed, as a messy import might be
+            boolean bad = i % 4 == 0;
+            cellNumbers[i] = bad ? "08" + String.format("%08d", i) : "+27" + String.format("%09d", 838_000_000 + i);
+            recipients[i] = bad ? "+2783x" + String.format("%06d", i) : BenchData.recipient(i);
+            passwords[i] = bad ? "password" + i : "Ch&&sec@ke" + i;
+        }
+    }
+
+    private static boolean regexCellNumber(String cellPhoneNumber) {
+        String regex = "^\\+27[0-9]{9}$";
+        Pattern pattern = Pattern.compile(regex);
+        Matcher matcher = pattern.matcher(cellPhoneNumber);
+        return matcher.matches();
+    }
+
+    private static boolean regexRecipient(String recipient) {
+        if (recipient.startsWith("+") && recipient.length() <= 13 && recipient.length() >= 11) {
+            String numberPart = recipient.substring(1);
+            return numberPart.matches("\\d+");
+        }
+        return false;
+    }
+
+    private static boolean regexPassword(String password) {
+        if (password.length() < 8) return false;
+        if (!Pattern.compile("[A-Z]").matcher(password).find()) return false;
+        if (!Pattern.compile("[0-9]").matcher(password).find()) return false;
+        return Pattern.compile("[^A-Za-z0-9]").matcher(password).find();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(INPUTS)
+    public void cellNumberRegex(Blackhole bh) {
+        for (String number : cellNumbers) {
+            bh.consume(regexCellNumber(number));
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(INPUTS)
+    public void cellNumberScan(Blackhole bh) {
+        for (String number : cellNumbers) {
+            bh.consume(Validators.isSouthAfricanCellNumber(number));
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(INPUTS)
+    public void recipientRegex(Blackhole bh) {
+        for (String recipient : recipients) {
+            bh.consume(regexRecipient(recipient));
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(INPUTS)
+    public void recipientScan(Blackhole bh) {
+        for (String recipient : recipients) {
+            bh.consume(Validators.isValidRecipient(recipient));
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(INPUTS)
+    public void passwordRegex(Blackhole bh) {
+        for (String password : passwords) {
+            bh.consume(regexPassword(password));
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(INPUTS)
+    public void passwordScan(Blackhole bh) {
+        for (String password : passwords) {
+            bh.consume(Validators.isComplexAsciiPassword(password));
+        }
+    }
+}
@@ -0,0 +1,57 @@
+package quickchatapp;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.*;
+
+// Startup recovery of the write-ahead log: opening a log of logSize records, which reads
+// every record and checks its length, sequence number and CRC32C. Replaying the records
+// into messages.json afterwards costs the same as any other checkpoint and is not included.
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class WalRecoveryBenchmark {
+
+    @Param({"100000", "1000000"})
+    public int logSize;
+
+    private Path dir;
+    private Path file;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        dir = Files.createTempDirectory("quickchat-bench");
+        file = dir.resolve("messages.wal");
+        try (MessageWal wal = new MessageWal(file)) {
+            List<MessageRecord> batch = new ArrayList<>();
+            for (int i = 0; i < logSize; i++) {
+                batch.add(BenchData.record(i));
+                if (batch.size() == 10_000) {
+                    wal.appendAll(batch);
+                    batch.clear();
+                }
+            }
+            wal.appendAll(batch);
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        Files.deleteIfExists(file);
+        Files.deleteIfExists(dir);
+    }
+
+    @Benchmark
+    public int recover() throws IOException {
+        try (MessageWal wal = new MessageWal(file)) {
+            return wal.getRecoveredRecords();
+        }
+    }
+}
@@ -0,0 +1,168 @@
+package quickchatapp;
+
+import javax.swing.*;
+import java.awt.*;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.Writer;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+
+// Runs slow work (file I/O, reports over the whole history) on a SwingWorker thread so the
+// window keeps repainting. If the work takes longer than DIALOG_DELAY_MS a small dialog
+// with a progress bar is shown. Read-only work started with start() also gets a Cancel
+// button, which interrupts the worker thread; work that changes messages is started with
+// startUncancellable(), since an interrupt could stop a send or delete after it changed
+// the store but before it was persisted. The result is handed to the callback on the event dispatch thread; a cancelled task
+// calls nothing and a failed one shows the error.
+public final class BackgroundTask<T> extends SwingWorker<T, Void> {
+    static final int DIALOG_DELAY_MS = 300;
+
+    // The part that runs off the event dispatch thread
+    public interface Work<T> {
+        T run() throws Exception;
+    }
+
+    // Receives the result on the event dispatch thread
+    public interface Done<T> {
+        void accept(T result);
+    }
+
+    private final Component parent;
+    private final String title;
+    private final Work<T> work;
+    private final Done<T> done;
+    private final boolean cancellable;
+    private final Timer dialogTimer;
+    private JDialog dialog;
+
+    private BackgroundTask(Component parent, String title, Work<T> work, Done<T> done, boolean cancellable) {
+        this.parent = parent;
+        this.title = title;
+        this.work = work;
+        this.done = done;
+        this.cancellable = cancellable;
+        this.dialogTimer = new Timer(DIALOG_DELAY_MS, e -> showDialog());
+        this.dialogTimer.setRepeats(false);
+    }
+
+    // For reads and reports. Must be called on the event dispatch thread.
+    public static <T> BackgroundTask<T> start(Component parent, String title, Work<T> work, Done<T> done) {
+        return start(new BackgroundTask<>(parent, title, work, done, true));
+    }
+
+    // For sends, stores and deletes, which run to the end once started. Must be called on
+    // the event dispatch thread.
+    public static <T> BackgroundTask<T> startUncancellable(Component parent, String title, Work<T> work,
+                                                           Done<T> done) {
+        return start(new BackgroundTask<>(parent, title, work, done, false));
+    }
+
+    private static <T> BackgroundTask<T> start(BackgroundTask<T> task) {
+        task.dialogTimer.start();
+        task.execute();
+        return task;
+    }
+
+    @Override
+    protected T doInBackground() throws Exception {
+        return work.run();
+    }
+
+    @Override
+    protected void done() {
+        dialogTimer.stop();
+        if (dialog != null) {
+            dialog.dispose();
+        }
+        if (isCancelled()) {
+            return;
+        }
+        T result;
+        try {
+            result = get();
+        } catch (CancellationException | InterruptedException e) {
+            return;
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause() != null ? e.getCause() : e;
+            if (!(cause instanceof InterruptedIOException)) {
+                JOptionPane.showMessageDialog(parent, title + " failed: " + cause.getMessage(),
+                        "Error", JOptionPane.ERROR_MESSAGE);
+            }
+            return;
+        }
+        done.accept(result);
+    }
+
+    private void showDialog() {
+        if (isDone()) {
+            return;
+        }
+        Window owner = parent == null ? null : SwingUtilities.getWindowAncestor(parent);
+        if (parent instanceof Window) {
+            owner = (Window) parent;
+        }
+        dialog = new JDialog(owner, title);
+        JProgressBar progressBar = new JProgressBar();
+        progressBar.setIndeterminate(true);
+
+        JPanel panel = new JPanel(new BorderLayout(10, 10));
+        panel.setBorder(BorderFactory.createEmptyBorder(10, 10, 10, 10));
+        panel.add(new JLabel(title + "..."), BorderLayout.NORTH);
+        panel.add(progressBar, BorderLayout.CENTER);
+        if (cancellable) {
+            JButton cancelBtn = new JButton("Cancel");
+            cancelBtn.addActionListener(e -> cancel(true));
+            panel.add(cancelBtn, BorderLayout.SOUTH);
+        }
+        dialog.add(panel);
+        dialog.setDefaultCloseOperation(JDialog.DO_NOTHING_ON_CLOSE);
+        dialog.pack();
+        dialog.setLocationRelativeTo(parent);
+        dialog.setVisible(true);
+    }
+
+    // In-memory Writer for the Writer-based reports that stops with an InterruptedIOException
+    // once the worker thread is interrupted, so a cancelled report ends at its next line
+    public static final class ReportBuffer extends Writer {
+        private final StringBuilder sb = new StringBuilder();
+
+        @Override
+        public void write(char[] cbuf, int off, int len) throws IOException {
+            checkInterrupted();
+            sb.append(cbuf, off, len);
+        }
+
+        @Override
+        public void write(String str) throws IOException {
+            checkInterrupted();
+            sb.append(str);
+        }
+
+        @Override
+        public Writer append(CharSequence csq) throws IOException {
+            checkInterrupted();
+            sb.append(csq);
+            return this;
+        }
+
+        private static void checkInterrupted() throws InterruptedIOException {
+            if (Thread.currentThread().isInterrupted()) {
+                throw new InterruptedIOException("Report cancelled.");
+            }
+        }
+
+        @Override
+        public void flush() {
+        }
+
+        @Override
+        public void close() {
+        }
+
+        @Override
+        public String toString() {
+            return sb.toString();
+        }
+    }
+}
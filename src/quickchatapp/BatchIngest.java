@@ -0,0 +1,294 @@
+package quickchatapp;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+// Headless bulk ingestion: reads recipients and message texts from a file and feeds them
+// to a MessagePipeline, which validates them like the Send Message window does and sends
+// (or stores) each one through Message; the records are persisted by JSONHandler's
+// batching writer. With more than one thread the archive order may differ from the
+// file order. Two input formats are accepted:
+//   *.jsonl / *.json  one object per record with "recipient" and "message" fields and an
+//                     optional "status" of "sent" or "stored"
+//   anything else     CSV lines of recipient,message[,status]; quotes as in RFC 4180,
+//                     unquoted commas are kept as part of the message unless what
+//                     follows the last one is a status, and a first line starting
+//                     with "recipient" is taken as a header
+//
+//   java quickchatapp.QuickChatApp --ingest messages.csv [--store] [--threads N]
+//                                  [--executor virtual|platform]
+//
+// --executor handles each record as its own task on a MessageSendExecutor instead of
+// the pipeline: one virtual thread per message, or a pool of --threads platform threads.
+public final class BatchIngest {
+    private static final int REJECTIONS_SHOWN = 10;
+    private static final int QUEUE_CAPACITY = 4096;
+
+    // Counts for one run
+    public static final class Result {
+        private long read;
+        private long accepted;
+        private long rejected;
+        private long failed;
+        private long elapsedNanos;
+
+        public long getRead() { return read; }
+        public long getAccepted() { return accepted; }
+        public long getRejected() { return rejected; }
+        // Accepted messages whose write to disk failed
+        public long getFailed() { return failed; }
+        public long getElapsedNanos() { return elapsedNanos; }
+
+        public double messagesPerSecond() {
+            return elapsedNanos == 0 ? 0 : accepted * 1_000_000_000.0 / elapsedNanos;
+        }
+
+        @Override
+        public String toString() {
+            return String.format(Locale.ROOT,
+                    "Ingested %d of %d messages (%d rejected, %d failed to save) in %.3f s: %.0f messages/second",
+                    accepted, read, rejected, failed, elapsedNanos / 1e9, messagesPerSecond());
+        }
+    }
+
+    private interface RecordSink {
+        void accept(long line, String recipient, String text, String status);
+    }
+
+    private BatchIngest() {
+    }
+
+    public static void main(String[] args) {
+        Path file = null;
+        int choice = 1;
+        int threads = Runtime.getRuntime().availableProcessors();
+        MessageSendExecutor.Mode executorMode = null;
+        try {
+            for (int i = 0; i < args.length; i++) {
+                if (args[i].equals("--store")) {
+                    choice = 3;
+                } else if (args[i].equals("--threads") && i + 1 < args.length) {
+                    threads = Integer.parseInt(args[++i]);
+                } else if (args[i].equals("--executor") && i + 1 < args.length) {
+                    executorMode = MessageSendExecutor.Mode.valueOf(args[++i].toUpperCase(Locale.ROOT));
+                } else if (!args[i].equals("--ingest")) {
+                    file = Paths.get(args[i]);
+                }
+            }
+        } catch (IllegalArgumentException e) {
+            // Also covers NumberFormatException
+            file = null;
+        }
+        if (file == null || threads < 1) {
+            System.err.println("Usage: QuickChatApp --ingest <file.csv|file.jsonl> [--store] [--threads N]"
+                    + " [--executor virtual|platform]");
+            System.exit(2);
+        }
+        try {
+            System.out.println(executorMode == null
+                    ? ingest(file, choice, threads)
+                    : ingestPerMessage(file, choice, executorMode, threads));
+        } catch (IOException e) {
+            System.err.println("Error ingesting messages: " + e.getMessage());
+            System.exit(1);
+        }
+    }
+
+    // Sends (choice 1) or stores (choice 3) every valid record of the file; a record's own
+    // status overrides the choice. Validation and hashing use the given number of threads
+    // each. Returns once everything accepted has been written.
+    public static Result ingest(Path file, int choice, int threads) throws IOException {
+        Result result = new Result();
+        boolean startedBatching = !JSONHandler.isBatchingEnabled();
+        if (startedBatching) {
+            // Large batches: one write and one sync per few hundred messages
+            JSONHandler.enableBatching(16 * 1024, 512, 5);
+        }
+        long start = System.nanoTime();
+        AtomicLong rejectionsShown = new AtomicLong();
+        MessagePipeline pipeline = new MessagePipeline(threads, threads, 1, QUEUE_CAPACITY, (line, problem) -> {
+            if (rejectionsShown.incrementAndGet() <= REJECTIONS_SHOWN) {
+                System.err.println("Skipping record " + line + ": " + problem);
+            }
+        });
+        try {
+            RecordSink sink = (line, recipient, text, status) -> {
+                result.read++;
+                try {
+                    pipeline.submit(line, recipient, text, choiceFor(status, choice));
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new IllegalStateException("Interrupted while ingesting messages.");
+                }
+            };
+            read(file, sink);
+        } finally {
+            // Drains the stages and waits for the queued writes
+            pipeline.close();
+            if (startedBatching) {
+                JSONHandler.disableBatching();
+            }
+            result.elapsedNanos = System.nanoTime() - start;
+            result.accepted = pipeline.getAccepted();
+            result.rejected = pipeline.getRejected();
+            result.failed = pipeline.getFailed();
+        }
+        return result;
+    }
+
+    // Like ingest, but every record is handled as its own task, which waits until its
+    // message is on disk: a virtual thread per message, or a pool of platform threads
+    public static Result ingestPerMessage(Path file, int choice, MessageSendExecutor.Mode mode, int threads)
+            throws IOException {
+        Result result = new Result();
+        boolean startedBatching = !JSONHandler.isBatchingEnabled();
+        if (startedBatching) {
+            JSONHandler.enableBatching(16 * 1024, 512, 5);
+        }
+        long start = System.nanoTime();
+        LongAdder accepted = new LongAdder();
+        LongAdder rejected = new LongAdder();
+        LongAdder failed = new LongAdder();
+        try {
+            try (MessageSendExecutor executor = new MessageSendExecutor(mode, threads, QUEUE_CAPACITY)) {
+                read(file, (line, recipient, text, status) -> {
+                    result.read++;
+                    try {
+                        executor.send(recipient, text, choiceFor(status, choice)).whenComplete((message, ex) -> {
+                            if (ex == null) {
+                                accepted.increment();
+                            } else if (ex instanceof IllegalArgumentException) {
+                                rejected.increment();
+                                if (rejected.sum() <= REJECTIONS_SHOWN) {
+                                    System.err.println("Skipping record " + line + ": " + ex.getMessage());
+                                }
+                            } else {
+                                // Accepted, but the write failed
+                                accepted.increment();
+                                failed.increment();
+                            }
+                        });
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                        throw new IllegalStateException("Interrupted while ingesting messages.");
+                    }
+                });
+            }
+        } finally {
+            if (startedBatching) {
+                JSONHandler.disableBatching();
+            }
+            result.elapsedNanos = System.nanoTime() - start;
+            result.accepted = accepted.sum();
+            result.rejected = rejected.sum();
+            result.failed = failed.sum();
+        }
+        return result;
+    }
+
+    private static void read(Path file, RecordSink sink) throws IOException {
+        String name = file.getFileName().toString().toLowerCase(Locale.ROOT);
+        if (name.endsWith(".jsonl") || name.endsWith(".json")) {
+            readJson(file, sink);
+        } else {
+            readCsv(file, sink);
+        }
+    }
+
+    private static int choiceFor(String status, int choice) {
+        if ("stored".equalsIgnoreCase(status)) {
+            return 3;
+        }
+        if ("sent".equalsIgnoreCase(status)) {
+            return 1;
+        }
+        return choice;
+    }
+
+    private static void readJson(Path file, RecordSink sink) throws IOException {
+        try (MessageJsonReader reader = new MessageJsonReader(Files.newBufferedReader(file, StandardCharsets.UTF_8))) {
+            MessageRecord record;
+            long count = 0;
+            while ((record = reader.next()) != null) {
+                count++;
+                // Missing fields come back as "N/A"
+                String text = "N/A".equals(record.getMessage()) ? null : record.getMessage();
+                sink.accept(count, record.getRecipient(), text, record.getStatus());
+            }
+        }
+    }
+
+    private static void readCsv(Path file, RecordSink sink) throws IOException {
+        try (BufferedReader in = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+            String line;
+            long lineNumber = 0;
+            List<String> fields = new ArrayList<>();
+            while ((line = in.readLine()) != null) {
+                long firstLine = ++lineNumber;
+                if (line.isEmpty() || (lineNumber == 1 && line.toLowerCase(Locale.ROOT).startsWith("recipient"))) {
+                    continue;
+                }
+                // A quoted field may run over several lines
+                StringBuilder record = new StringBuilder(line);
+                while (!parseCsv(record, fields)) {
+                    String more = in.readLine();
+                    if (more == null) {
+                        throw new IOException("Unterminated quote in record starting on line " + firstLine);
+                    }
+                    lineNumber++;
+                    record.append('\n').append(more);
+                }
+                String status = null;
+                int last = fields.size();
+                if (last > 2 && choiceFor(fields.get(last - 1).trim(), 0) != 0) {
+                    status = fields.get(--last).trim();
+                }
+                String text = last > 1 ? String.join(",", fields.subList(1, last)).trim() : null;
+                sink.accept(firstLine, fields.get(0).trim(), text, status);
+            }
+        }
+    }
+
+    // Splits one record into its fields; false if a quoted field is still open
+    private static boolean parseCsv(CharSequence record, List<String> fields) {
+        fields.clear();
+        StringBuilder field = new StringBuilder();
+        boolean quoted = false;
+        for (int i = 0; i < record.length(); i++) {
+            char c = record.charAt(i);
+            if (quoted) {
+                if (c == '"') {
+                    if (i + 1 < record.length() && record.charAt(i + 1) == '"') {
+                        field.append('"');
+                        i++;
+                    } else {
+                        quoted = false;
+                    }
+                } else {
+                    field.append(c);
+                }
+            } else if (c == '"') {
+                quoted = true;
+            } else if (c == ',') {
+                fields.add(field.toString());
+                field.setLength(0);
+            } else {
+                field.append(c);
+            }
+        }
+        if (quoted) {
+            return false;
+        }
+        fields.add(field.toString());
+        return true;
+    }
+}
@@ -0,0 +1,153 @@
+package quickchatapp;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+// Background writer that group-commits stored messages: records queue up from any
+// thread and are handed to the sink in batches, so many messages share one write
+// and one sync. Each caller gets a future that completes once its batch is durable.
+public class BatchingMessageWriter<T> implements Closeable {
+
+    // Writes a whole batch of records, as durable as the store requires, before returning
+    public interface BatchSink<T> {
+        void write(List<T> records) throws IOException;
+    }
+
+    private static final class Pending<T> {
+        final T record;
+        final CompletableFuture<Void> done = new CompletableFuture<>();
+
+        Pending(T record) {
+            this.record = record;
+        }
+    }
+
+    private final BatchSink<T> sink;
+    private final BlockingQueue<Pending<T>> queue;
+    private final int maxBatchSize;
+    private final long maxLingerNanos;
+    private final Thread worker;
+    private volatile boolean closed = false;
+
+    public BatchingMessageWriter(BatchSink<T> sink, int queueCapacity, int maxBatchSize, long maxLingerMillis) {
+        if (queueCapacity < 1 || maxBatchSize < 1 || maxLingerMillis < 0) {
+            throw new IllegalArgumentException("Queue capacity and batch size must be positive, linger must not be negative.");
+        }
+        this.sink = sink;
+        this.queue = new ArrayBlockingQueue<>(queueCapacity);
+        this.maxBatchSize = maxBatchSize;
+        this.maxLingerNanos = TimeUnit.MILLISECONDS.toNanos(maxLingerMillis);
+        this.worker = new Thread(this::run, "message-batch-writer");
+        this.worker.setDaemon(true);
+        this.worker.start();
+    }
+
+    // Queues a record for the next batch, blocking while the queue is full
+    public CompletableFuture<Void> submit(T record) {
+        Pending<T> pending = new Pending<>(record);
+        if (closed) {
+            pending.done.completeExceptionally(new IllegalStateException("Writer is closed."));
+            return pending.done;
+        }
+        try {
+            queue.put(pending);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            pending.done.completeExceptionally(e);
+            return pending.done;
+        }
+        // Closed while we were waiting: the worker may already have exited
+        if (closed && queue.remove(pending)) {
+            pending.done.completeExceptionally(new IllegalStateException("Writer is closed."));
+        }
+        return pending.done;
+    }
+
+    private void run() {
+        List<Pending<T>> batch = new ArrayList<>(maxBatchSize);
+        while (!closed || !queue.isEmpty()) {
+            try {
+                Pending<T> first = queue.poll(100, TimeUnit.MILLISECONDS);
+                if (first == null) {
+                    continue;
+                }
+                batch.add(first);
+
+                // Linger for more records until the batch is full or the time is up
+                long deadline = System.nanoTime() + maxLingerNanos;
+                while (batch.size() < maxBatchSize) {
+                    queue.drainTo(batch, maxBatchSize - batch.size());
+                    long remaining = deadline - System.nanoTime();
+                    if (batch.size() >= maxBatchSize || remaining <= 0 || closed) {
+                        break;
+                    }
+                    Pending<T> next = queue.poll(remaining, TimeUnit.NANOSECONDS);
+                    if (next == null) {
+                        break;
+                    }
+                    batch.add(next);
+                }
+            } catch (InterruptedException e) {
+                closed = true;
+            }
+            if (!batch.isEmpty()) {
+                writeBatch(batch);
+                batch.clear();
+            }
+        }
+    }
+
+    private void writeBatch(List<Pending<T>> batch) {
+        List<T> records = new ArrayList<>(batch.size());
+        for (Pending<T> pending : batch) {
+            records.add(pending.record);
+        }
+        try {
+            sink.write(records);
+            for (Pending<T> pending : batch) {
+                pending.done.complete(null);
+            }
+        } catch (Throwable e) {
+            System.err.println("Error writing message batch: " + e.getMessage());
+            for (Pending<T> pending : batch) {
+                pending.done.completeExceptionally(e);
+            }
+            if (e instanceof Error) {
+                // The worker dies with it, so nothing queued after this batch would ever
+                // be written: the writer closes and fails those records too
+                closed = true;
+                failQueued(e);
+                throw (Error) e;
+            }
+        }
+    }
+
+    private void failQueued(Throwable cause) {
+        Pending<T> leftover;
+        while ((leftover = queue.poll()) != null) {
+            leftover.done.completeExceptionally(new IllegalStateException("Writer is closed.", cause));
+        }
+    }
+
+    public int getMaxBatchSize() {
+        return maxBatchSize;
+    }
+
+    // Stops accepting records, writes everything already queued and waits for the worker
+    @Override
+    public void close() {
+        closed = true;
+        try {
+            worker.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        failQueued(null);
+    }
+}
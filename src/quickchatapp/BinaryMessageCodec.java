@@ -0,0 +1,140 @@
+package quickchatapp;
+
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+// Compact binary layout for one stored message:
+//   varint  record length (bytes that follow)
+//   8 bytes messageID as a big-endian long; Long.MIN_VALUE instead flags an ID that is
+//           not the decimal form of a long (e.g. "N/A"), which follows as varint length
+//           + UTF-8 bytes
+//   varint  messageCount
+//   varint length + UTF-8 bytes for recipient, message, messageHash, status, timestamp
+public final class BinaryMessageCodec {
+    private static final long STRING_ID = Long.MIN_VALUE;
+
+    private BinaryMessageCodec() {
+    }
+
+    public static byte[] encode(MessageRecord record) {
+        byte[][] strings = {
+            utf8(record.getRecipient()), utf8(record.getMessage()), utf8(record.getMessageHash()),
+            utf8(record.getStatus()), utf8(record.getTimestamp())
+        };
+        long numericID = numericID(record.getMessageID());
+        byte[] stringID = numericID == STRING_ID ? utf8(record.getMessageID()) : null;
+        int bodyLength = 8 + varintSize(record.getMessageCount());
+        if (stringID != null) {
+            bodyLength += varintSize(stringID.length) + stringID.length;
+        }
+        for (byte[] s : strings) {
+            bodyLength += varintSize(s.length) + s.length;
+        }
+
+        ByteBuffer out = ByteBuffer.allocate(varintSize(bodyLength) + bodyLength);
+        putVarint(out, bodyLength);
+        out.putLong(numericID);
+        if (stringID != null) {
+            putVarint(out, stringID.length);
+            out.put(stringID);
+        }
+        putVarint(out, record.getMessageCount());
+        for (byte[] s : strings) {
+            putVarint(out, s.length);
+            out.put(s);
+        }
+        return out.array();
+    }
+
+    // Decodes the record at the buffer's position and advances past it,
+    // or returns null if the buffer ends before the record does
+    public static MessageRecord decode(ByteBuffer in) throws IOException {
+        int start = in.position();
+        try {
+            int bodyLength = getVarint(in);
+            if (in.remaining() < bodyLength) {
+                in.position(start);
+                return null;
+            }
+            int end = in.position() + bodyLength;
+            long numericID = in.getLong();
+            String messageID = numericID == STRING_ID ? getString(in) : String.valueOf(numericID);
+            int messageCount = getVarint(in);
+            String recipient = getString(in);
+            String message = getString(in);
+            String messageHash = getString(in);
+            String status = getString(in);
+            String timestamp = getString(in);
+            if (in.position() != end) {
+                throw new IOException("Corrupt binary record at position " + start);
+            }
+            return new MessageRecord(messageID, messageCount, recipient, message, messageHash, status, timestamp);
+        } catch (BufferUnderflowException e) {
+            in.position(start);
+            return null;
+        }
+    }
+
+    // The ID as a long if it reads back as the same text, otherwise STRING_ID
+    private static long numericID(String messageID) {
+        if (messageID == null) {
+            return STRING_ID;
+        }
+        try {
+            long id = Long.parseLong(messageID);
+            return id != STRING_ID && String.valueOf(id).equals(messageID) ? id : STRING_ID;
+        } catch (NumberFormatException e) {
+            return STRING_ID;
+        }
+    }
+
+    private static byte[] utf8(String text) {
+        return (text == null ? "" : text).getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static String getString(ByteBuffer in) throws IOException {
+        int length = getVarint(in);
+        if (length > in.remaining()) {
+            throw new IOException("Corrupt string length " + length);
+        }
+        if (in.hasArray()) {
+            String value = new String(in.array(), in.arrayOffset() + in.position(), length, StandardCharsets.UTF_8);
+            in.position(in.position() + length);
+            return value;
+        }
+        byte[] bytes = new byte[length];
+        in.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    static int varintSize(int value) {
+        int size = 1;
+        while ((value & ~0x7F) != 0) {
+            value >>>= 7;
+            size++;
+        }
+        return size;
+    }
+
+    static void putVarint(ByteBuffer out, int value) {
+        while ((value & ~0x7F) != 0) {
+            out.put((byte) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        out.put((byte) value);
+    }
+
+    static int getVarint(ByteBuffer in) throws IOException {
+        int value = 0;
+        for (int shift = 0; shift < 35; shift += 7) {
+            byte b = in.get();
+            value |= (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+        }
+        throw new IOException("Varint is too long");
+    }
+}
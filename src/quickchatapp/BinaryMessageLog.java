@@ -0,0 +1,211 @@
+package quickchatapp;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+
+// Append-only file of BinaryMessageCodec records, the binary counterpart of MessageLog.
+// Opening the log drops anything after the last record that reads back whole, so a
+// crash in the middle of an append loses that append and nothing before it.
+public class BinaryMessageLog implements Closeable {
+    private static final int READ_BUFFER_SIZE = 64 * 1024;
+
+    private final Path path;
+    private final FileChannel channel;
+    private final long truncatedBytes;
+    private long position;
+    // Guards position, as in MessageLog
+    private final ReentrantLock lock = new ReentrantLock();
+
+    public BinaryMessageLog(Path path) throws IOException {
+        this.path = path;
+        this.channel = FileChannel.open(path, StandardOpenOption.CREATE,
+                StandardOpenOption.READ, StandardOpenOption.WRITE);
+        long size = channel.size();
+        this.position = scan(0, size, (offset, record) -> { });
+        this.truncatedBytes = size - position;
+        if (truncatedBytes > 0) {
+            // Drop the torn tail so the next append follows the last intact record
+            channel.truncate(position);
+            channel.force(true);
+        }
+    }
+
+    // Appends one record and returns the file offset it was written at
+    public long append(MessageRecord record) throws IOException {
+        lock.lock();
+        try {
+            return write(ByteBuffer.wrap(BinaryMessageCodec.encode(record)));
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // Appends several records with one write and returns the offset of each
+    public long[] appendAll(List<MessageRecord> records) throws IOException {
+        lock.lock();
+        try {
+            byte[][] encoded = new byte[records.size()][];
+            long[] offsets = new long[records.size()];
+            int total = 0;
+            for (int i = 0; i < encoded.length; i++) {
+                encoded[i] = BinaryMessageCodec.encode(records.get(i));
+                offsets[i] = position + total;
+                total += encoded[i].length;
+            }
+            ByteBuffer buffer = ByteBuffer.allocate(total);
+            for (byte[] bytes : encoded) {
+                buffer.put(bytes);
+            }
+            buffer.flip();
+            write(buffer);
+            return offsets;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private long write(ByteBuffer buffer) throws IOException {
+        long offset = position;
+        while (buffer.hasRemaining()) {
+            position += channel.write(buffer, position);
+        }
+        return offset;
+    }
+
+    // Forces appended records to the storage device
+    public void sync() throws IOException {
+        channel.force(false);
+    }
+
+    // Reads every record from the start of the file, in the order they were appended
+    public void forEachRecord(Consumer<MessageRecord> action) throws IOException {
+        forEachRecordFrom(0, (offset, record) -> action.accept(record));
+    }
+
+    // Reads the records from a byte offset onwards together with the offset of each
+    public void forEachRecordFrom(long start, OffsetConsumer<MessageRecord> action) throws IOException {
+        long end = size();
+        long valid = scan(start, end, action);
+        if (valid < end) {
+            throw new IOException("Unreadable record at offset " + valid + " of " + path);
+        }
+    }
+
+    // Reads the records between start and end and returns the offset just past the last
+    // one that decoded whole, which is end unless a record there is cut short or corrupt
+    private long scan(long start, long end, OffsetConsumer<MessageRecord> action) throws IOException {
+        long filePosition = start;
+        // File offset of the first byte in the buffer
+        long bufferStart = start;
+        ByteBuffer buffer = ByteBuffer.allocate(READ_BUFFER_SIZE);
+        while (filePosition < end) {
+            if (buffer.remaining() > end - filePosition) {
+                buffer.limit(buffer.position() + (int) (end - filePosition));
+            }
+            int read = channel.read(buffer, filePosition);
+            if (read <= 0) {
+                break;
+            }
+            filePosition += read;
+            buffer.flip();
+            while (true) {
+                long offset = bufferStart + buffer.position();
+                MessageRecord record;
+                try {
+                    record = BinaryMessageCodec.decode(buffer);
+                } catch (IOException e) {
+                    return offset;
+                }
+                if (record == null) {
+                    break;
+                }
+                action.accept(offset, record);
+            }
+            bufferStart += buffer.position();
+            if (buffer.position() == 0 && buffer.limit() == buffer.capacity()) {
+                // One record is bigger than the buffer: grow it
+                ByteBuffer larger = ByteBuffer.allocate(buffer.capacity() * 2);
+                larger.put(buffer);
+                buffer = larger;
+            } else {
+                buffer.compact();
+            }
+        }
+        return bufferStart;
+    }
+
+    // Reads the single record that starts at the given offset
+    public MessageRecord readAt(long offset) throws IOException {
+        long size = size();
+        if (offset < 0 || offset >= size) {
+            throw new IOException("No record at offset " + offset);
+        }
+        ByteBuffer header = ByteBuffer.allocate((int) Math.min(5, size - offset));
+        channel.read(header, offset);
+        header.flip();
+        int bodyLength;
+        try {
+            bodyLength = BinaryMessageCodec.getVarint(header);
+        } catch (BufferUnderflowException e) {
+            bodyLength = -1;
+        }
+        if (bodyLength < 0 || offset + header.position() + bodyLength > size) {
+            // Not the start of a record, e.g. an offset from an index out of step with the log
+            throw new IOException("No record at offset " + offset);
+        }
+        ByteBuffer record = ByteBuffer.allocate(header.position() + bodyLength);
+        while (record.hasRemaining()) {
+            if (channel.read(record, offset + record.position()) <= 0) {
+                throw new IOException("Truncated record at offset " + offset);
+            }
+        }
+        record.flip();
+        MessageRecord decoded;
+        try {
+            decoded = BinaryMessageCodec.decode(record);
+        } catch (RuntimeException e) {
+            // Bytes from the middle of a record read as if they started one
+            throw new IOException("No record at offset " + offset, e);
+        }
+        if (decoded == null) {
+            throw new IOException("Truncated record at offset " + offset);
+        }
+        return decoded;
+    }
+
+    // Bytes of an incomplete or corrupt tail dropped when the log was opened
+    public long getTruncatedBytes() {
+        return truncatedBytes;
+    }
+
+    public long size() {
+        lock.lock();
+        try {
+            return position;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public Path getPath() {
+        return path;
+    }
+
+    @Override
+    public void close() throws IOException {
+        lock.lock();
+        try {
+            channel.close();
+        } finally {
+            lock.unlock();
+        }
+    }
+}
@@ -1,49 +1,857 @@
 package quickchatapp;
 
 import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
 import java.text.SimpleDateFormat;
 import java.util.Date;
 import java.util.ArrayList;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+import java.util.zip.CRC32C;
 
 public class JSONHandler {
     private static final String FILE_NAME = "messages.json";
+    private static final String LOG_FILE_NAME = "messages.jsonl";
+    private static final String BINARY_FILE_NAME = "messages.bin";
+    private static final String SEGMENT_DIR_NAME = "messages.segments";
+    private static final String WAL_FILE_NAME = "messages.wal";
+    // Which log records the current messages.json already holds; see checkpointWal
+    private static final String WAL_MARK_FILE_NAME = "messages.wal.mark";
+    private static final int MARK_CHECK_BYTES = 64 * 1024;
+    // Records the write-ahead log may hold before they are checkpointed into messages.json
+    private static final int WAL_CHECKPOINT_RECORDS = Integer.getInteger("quickchat.walCheckpointRecords", 4096);
+    // Size at which the active segment is sealed and a new one started
+    private static final long SEGMENT_BYTES = Long.getLong("quickchat.segmentBytes", 16L * 1024 * 1024);
+
+    // JSON_ARRAY appends to the messages.wal write-ahead log and periodically rewrites
+    // messages.json with the logged messages added,
+    // APPEND_LOG appends one JSON line per message to messages.jsonl,
+    // BINARY appends one BinaryMessageCodec record per message to messages.bin,
+    // SEGMENTED appends JSON lines to size-rotated segments in messages.segments
+    public enum StorageMode { JSON_ARRAY, APPEND_LOG, BINARY, SEGMENTED }
+
+    // STREAMING parses every record with MessageJsonReader, MAPPED memory-maps the file
+    // and decodes only the fields shown by getAllMessages
+    public enum ReadMode { STREAMING, MAPPED }
+
+    // How far a store goes before it returns (or, with batching, before its future completes):
+    //   NONE               writes reach the OS and nothing is ever forced, not even the
+    //                      rewritten messages.json before it replaces the old one
+    //   FLUSH              writes reach the OS, so they survive the application crashing but
+    //                      not the machine; rewritten files are forced before being swapped in
+    //   FSYNC_PER_BATCH    as FLUSH, and each batch (or single store) is forced to the device
+    //   FSYNC_PER_MESSAGE  as FLUSH, and every message is written and forced on its own
+    public enum Durability { NONE, FLUSH, FSYNC_PER_BATCH, FSYNC_PER_MESSAGE }
+
+    private static StorageMode storageMode = enumProperty("quickchat.storage", StorageMode.JSON_ARRAY);
+    private static ReadMode readMode = enumProperty("quickchat.read", ReadMode.STREAMING);
+    private static volatile Durability durability = enumProperty("quickchat.durability", Durability.FSYNC_PER_BATCH);
+    private static MessageLog messageLog;
+    private static BinaryMessageLog binaryLog;
+    private static SegmentedMessageLog segmentedLog;
+    private static MessageWal messageWal;
+    // Sequence number of the last log record known to be in messages.json, or -1
+    private static volatile long walCheckpointed = -1;
+    // messageID -> offset indexes for the two append-only formats
+    private static MessageIndex messageLogIndex;
+    private static MessageIndex binaryLogIndex;
+    private static volatile BatchingMessageWriter<MessageRecord> batchWriter;
+    private static boolean shutdownHookAdded = false;
+    // Directory the message files live in; the working directory unless configured
+    private static volatile Path dataDirectory = Paths.get(System.getProperty("quickchat.dataDir", ""));
+    // Serializes writers from different threads: the JSON array is read, extended and
+    // rewritten as a whole, and log appends must be indexed in the order they were made
+    private static final ReentrantLock writeLock = new ReentrantLock();
+    // Only one compaction runs at a time; compactAsync queues them on this thread
+    private static final ReentrantLock compactionLock = new ReentrantLock();
+    // Guards the open logs, the storage mode and the batching writer. Taken after
+    // compactionLock and writeLock. The three are locks rather than synchronized so that
+    // stores made from virtual threads do not pin their carrier thread during file I/O.
+    private static final ReentrantLock stateLock = new ReentrantLock();
+    private static final ExecutorService compactor = Executors.newSingleThreadExecutor(task -> {
+        Thread thread = new Thread(task, "message-compactor");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    // The constant named by a system property, case-insensitively. A typo falls back to
+    // the default with a warning instead of failing the class's initialization.
+    static <E extends Enum<E>> E enumProperty(String name, E fallback) {
+        String value = System.getProperty(name);
+        if (value == null) {
+            return fallback;
+        }
+        try {
+            return Enum.valueOf(fallback.getDeclaringClass(), value.trim().toUpperCase(Locale.ROOT));
+        } catch (IllegalArgumentException e) {
+            System.err.println("Unknown " + name + " \"" + value + "\", using " + fallback);
+            return fallback;
+        }
+    }
+
+    public static StorageMode getStorageMode() {
+        return storageMode;
+    }
+
+    public static void setStorageMode(StorageMode mode) {
+        stateLock.lock();
+        try {
+            storageMode = mode;
+        } finally {
+            stateLock.unlock();
+        }
+    }
+
+    public static Path getDataDirectory() {
+        return dataDirectory;
+    }
+
+    // Switches to message files in another directory; open logs are closed first.
+    // Takes writeLock before stateLock, the same order as writers that open a log.
+    public static void setDataDirectory(Path directory) {
+        writeLock.lock();
+        try {
+            closeLog();
+            dataDirectory = directory;
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    private static Path dataFile(String name) {
+        return dataDirectory.resolve(name);
+    }
+
+    public static ReadMode getReadMode() {
+        return readMode;
+    }
+
+    public static void setReadMode(ReadMode mode) {
+        readMode = mode;
+    }
+
+    public static Durability getDurability() {
+        return durability;
+    }
+
+    // Applies from the next write on, including batches already queued
+    public static void setDurability(Durability level) {
+        durability = level;
+    }
 
     public static void storeMessage(Message message) {
+        storeRecord(MessageRecord.of(message, currentTimestamp()));
+    }
+
+    private static void storeRecord(MessageRecord record) {
         try {
-            // Read existing messages
-            List<String> existingMessages = readAllMessages();
-            
-            // Create JSON object for new message
-            String messageJson = createMessageJSON(message);
-            
-            // Add new message to list
-            existingMessages.add(messageJson);
-            
-            // Write back to file
-            writeMessagesToFile(existingMessages);
-            
-            System.out.println("Message stored in JSON file: " + FILE_NAME);
-            
+            writeRecords(storageMode, List.of(record));
         } catch (IOException e) {
             System.err.println("Error storing message: " + e.getMessage());
         }
     }
 
-    private static String createMessageJSON(Message message) {
+    // Queues the message on the batching writer when it is enabled, otherwise stores it
+    // immediately. The future completes once the message has been written and synced.
+    public static CompletableFuture<Void> storeMessageAsync(Message message) {
+        // Snapshot now so later changes to the Message do not leak into the stored record
+        return submitRecord(MessageRecord.of(message, currentTimestamp()));
+    }
+
+    // Records that a message was deleted by storing a tombstone for its ID;
+    // compaction later drops the message and the tombstone from the archive
+    public static CompletableFuture<Void> deleteMessageAsync(Message message) {
+        return submitRecord(MessageRecord.tombstone(message, currentTimestamp()));
+    }
+
+    private static CompletableFuture<Void> submitRecord(MessageRecord record) {
+        BatchingMessageWriter<MessageRecord> writer = batchWriter;
+        if (writer == null) {
+            storeRecord(record);
+            return CompletableFuture.completedFuture(null);
+        }
+        return writer.submit(record);
+    }
+
+    // Starts a background writer that coalesces up to maxBatchSize pending messages,
+    // waiting at most maxLingerMillis for a batch to fill, into one write and one sync
+    public static void enableBatching(int queueCapacity, int maxBatchSize, long maxLingerMillis) {
+        BatchingMessageWriter<MessageRecord> previous;
+        stateLock.lock();
+        try {
+            StorageMode mode = storageMode;
+            // Swapped in one step, so concurrent calls never leave a writer unreferenced
+            previous = batchWriter;
+            batchWriter = new BatchingMessageWriter<>(records -> writeRecords(mode, records),
+                    queueCapacity, maxBatchSize, maxLingerMillis);
+            if (!shutdownHookAdded) {
+                Runtime.getRuntime().addShutdownHook(new Thread(JSONHandler::disableBatching, "message-batch-flush"));
+                shutdownHookAdded = true;
+            }
+        } finally {
+            stateLock.unlock();
+        }
+        // Closed outside stateLock, as in disableBatching
+        if (previous != null) {
+            previous.close();
+        }
+    }
+
+    // Flushes anything still queued and goes back to synchronous stores
+    public static void disableBatching() {
+        BatchingMessageWriter<MessageRecord> writer;
+        stateLock.lock();
+        try {
+            writer = batchWriter;
+            batchWriter = null;
+        } finally {
+            stateLock.unlock();
+        }
+        // Closed outside stateLock: the last batch may need it to open the log
+        if (writer != null) {
+            writer.close();
+        }
+    }
+
+    public static boolean isBatchingEnabled() {
+        return batchWriter != null;
+    }
+
+    private static void writeRecords(StorageMode mode, List<MessageRecord> records) throws IOException {
+        writeLock.lock();
+        try {
+            Durability level = durability;
+            String target = null;
+            if (level == Durability.FSYNC_PER_MESSAGE) {
+                for (MessageRecord record : records) {
+                    target = appendRecords(mode, List.of(record), true);
+                }
+            } else {
+                target = appendRecords(mode, records, level == Durability.FSYNC_PER_BATCH);
+            }
+            if (records.size() == 1) {
+                System.out.println("Message stored in: " + target);
+            } else {
+                System.out.println("Stored batch of " + records.size() + " messages in: " + target);
+            }
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    // Appends the records in the given mode, forcing them to the device if sync is set;
+    // returns the name of the file written
+    private static String appendRecords(StorageMode mode, List<MessageRecord> records, boolean sync) throws IOException {
+        String target;
+        switch (mode) {
+            case APPEND_LOG: {
+                IndexedLog<MessageLog> indexed = openIndexedLog();
+                MessageLog log = indexed.log;
+                List<String> lines = new ArrayList<>(records.size());
+                for (MessageRecord record : records) {
+                    lines.add(toLogLine(record));
+                }
+                long[] offsets = log.appendAll(lines);
+                indexRecords(indexed.index, records, offsets, log.size());
+                if (sync) {
+                    log.sync();
+                    indexed.index.sync();
+                }
+                target = LOG_FILE_NAME;
+                break;
+            }
+            case BINARY: {
+                IndexedLog<BinaryMessageLog> indexed = openIndexedBinaryLog();
+                BinaryMessageLog log = indexed.log;
+                long[] offsets = log.appendAll(records);
+                indexRecords(indexed.index, records, offsets, log.size());
+                if (sync) {
+                    log.sync();
+                    indexed.index.sync();
+                }
+                target = BINARY_FILE_NAME;
+                break;
+            }
+            case SEGMENTED: {
+                SegmentedMessageLog log = openSegmentedLog();
+                log.appendAll(records);
+                if (sync) {
+                    log.sync();
+                }
+                target = SEGMENT_DIR_NAME;
+                break;
+            }
+            default: {
+                // The log makes the messages durable; messages.json catches up at a checkpoint
+                MessageWal wal = openWal();
+                wal.appendAll(records);
+                if (sync) {
+                    wal.sync();
+                }
+                if (wal.size() >= WAL_CHECKPOINT_RECORDS) {
+                    try {
+                        checkpointWal(wal);
+                    } catch (IOException e) {
+                        // The records are safe in the log, so the store stands; the
+                        // checkpoint is tried again on the next store
+                        System.err.println("Error checkpointing " + WAL_FILE_NAME + ": " + e.getMessage());
+                    }
+                }
+                target = WAL_FILE_NAME;
+                break;
+            }
+        }
+        return target;
+    }
+
+    private static void indexRecords(MessageIndex index, List<MessageRecord> records, long[] offsets,
+                                     long indexedLength) throws IOException {
+        for (int i = 0; i < offsets.length; i++) {
+            long id = parseMessageID(records.get(i).getMessageID());
+            if (id > 0) {
+                index.put(id, offsets[i]);
+            }
+        }
+        index.setIndexedLength(indexedLength);
+    }
+
+    static long parseMessageID(String messageID) {
+        try {
+            return Long.parseLong(messageID);
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    // Looks up the newest stored record for a message ID, including messages from earlier runs.
+    // The append-only formats use the on-disk index (one probe plus one positioned read);
+    // JSON_ARRAY has no stable offsets and falls back to scanning messages.json and the
+    // records still only in the write-ahead log.
+    public static MessageRecord findMessageByID(String messageID) {
+        long id = parseMessageID(messageID);
+        if (id <= 0) {
+            return null;
+        }
+        try {
+            switch (storageMode) {
+                case APPEND_LOG: {
+                    IndexedLog<MessageLog> indexed = openIndexedLog();
+                    long offset = indexed.index.get(id);
+                    if (offset < 0) {
+                        return null;
+                    }
+                    MessageRecord record;
+                    try {
+                        record = new MessageJsonReader(new StringReader(indexed.log.readAt(offset))).next();
+                    } catch (IOException e) {
+                        record = null;
+                    }
+                    if (!isRecordOf(record, messageID)) {
+                        record = scanForNewest(indexed.index, id, messageID, action -> indexed.log.forEachRecordFrom(0,
+                                (at, line) -> {
+                                    if (line.contains(messageID)) {
+                                        parseLine(at, line, action);
+                                    }
+                                }));
+                    }
+                    return live(record);
+                }
+                case BINARY: {
+                    IndexedLog<BinaryMessageLog> indexed = openIndexedBinaryLog();
+                    long offset = indexed.index.get(id);
+                    if (offset < 0) {
+                        return null;
+                    }
+                    MessageRecord record;
+                    try {
+                        record = indexed.log.readAt(offset);
+                    } catch (IOException e) {
+                        record = null;
+                    }
+                    if (!isRecordOf(record, messageID)) {
+                        record = scanForNewest(indexed.index, id, messageID,
+                                action -> indexed.log.forEachRecordFrom(0, action));
+                    }
+                    return live(record);
+                }
+                case SEGMENTED:
+                    // The manifest's ID ranges narrow the search to a few segments
+                    return live(openSegmentedLog().findNewest(messageID));
+                default: {
+                    MessageRecord[] found = {null};
+                    forEachArrayRecord(record -> {
+                        if (record.getMessageID().equals(messageID)) {
+                            found[0] = record;
+                        }
+                    });
+                    return live(found[0]);
+                }
+            }
+        } catch (IOException e) {
+            System.err.println("Error reading message " + messageID + ": " + e.getMessage());
+            return null;
+        }
+    }
+
+    private static boolean isRecordOf(MessageRecord record, String messageID) {
+        return record != null && messageID.equals(record.getMessageID());
+    }
+
+    private interface RecordScan {
+        void forEach(OffsetConsumer<MessageRecord> action) throws IOException;
+    }
+
+    // The index only caches offsets. When the record at one is not the message asked for,
+    // the index is out of step with its log, so the log is scanned for the newest record
+    // of the message instead and the index is pointed at it for the next lookup.
+    private static MessageRecord scanForNewest(MessageIndex index, long id, String messageID, RecordScan scan)
+            throws IOException {
+        System.err.println("Index entry for message " + messageID + " does not match the log; scanning it");
+        long[] newestOffset = {-1};
+        MessageRecord[] newest = {null};
+        scan.forEach((offset, record) -> {
+            if (isRecordOf(record, messageID)) {
+                newestOffset[0] = offset;
+                newest[0] = record;
+            }
+        });
+        if (newest[0] != null) {
+            index.put(id, newestOffset[0]);
+        }
+        return newest[0];
+    }
+
+    private static void parseLine(long offset, String line, OffsetConsumer<MessageRecord> action) {
+        try {
+            action.accept(offset, new MessageJsonReader(new StringReader(line)).next());
+        } catch (IOException e) {
+            System.err.println("Skipping unreadable record at offset " + offset + ": " + e.getMessage());
+        }
+    }
+
+    // A message whose newest record is a tombstone has been deleted
+    private static MessageRecord live(MessageRecord record) {
+        return record == null || record.isDeleted() ? null : record;
+    }
+
+    // Rewrites the archive of the current storage mode keeping only the newest record
+    // for each messageID and dropping deleted messages. For the append logs the copy is
+    // made while stores continue; they are held up only while the few records appended
+    // in the meantime are carried over and the files are swapped.
+    // Returns the number of records removed.
+    public static int compact() throws IOException {
+        compactionLock.lock();
+        try {
+            switch (storageMode) {
+                case APPEND_LOG: {
+                    long cutoff;
+                    writeLock.lock();
+                    try {
+                        cutoff = openLog().size();
+                    } finally {
+                        writeLock.unlock();
+                    }
+                    return compactLog(new MessageLogCompactor(dataFile(LOG_FILE_NAME), dataFile(LOG_FILE_NAME + ".idx"),
+                            JSONHandler::scanLog, record -> (toLogLine(record) + "\n").getBytes(StandardCharsets.UTF_8)),
+                            cutoff, LOG_FILE_NAME);
+                }
+                case BINARY: {
+                    long cutoff;
+                    writeLock.lock();
+                    try {
+                        cutoff = openBinaryLog().size();
+                    } finally {
+                        writeLock.unlock();
+                    }
+                    return compactLog(new MessageLogCompactor(dataFile(BINARY_FILE_NAME), dataFile(BINARY_FILE_NAME + ".idx"),
+                            JSONHandler::scanBinaryLog, BinaryMessageCodec::encode),
+                            cutoff, BINARY_FILE_NAME);
+                }
+                case SEGMENTED: {
+                    // Only sealed segments are rewritten, so stores are not held up at all
+                    int removed = openSegmentedLog().compact();
+                    System.out.println("Compacted " + SEGMENT_DIR_NAME + ": removed " + removed + " records");
+                    return removed;
+                }
+                default:
+                    return compactArray();
+            }
+        } finally {
+            compactionLock.unlock();
+        }
+    }
+
+    // Runs compact() on a background thread
+    public static CompletableFuture<Integer> compactAsync() {
+        CompletableFuture<Integer> result = new CompletableFuture<>();
+        compactor.execute(() -> {
+            try {
+                result.complete(compact());
+            } catch (IOException | RuntimeException e) {
+                System.err.println("Error compacting messages: " + e.getMessage());
+                result.completeExceptionally(e);
+            }
+        });
+        return result;
+    }
+
+    private static int compactLog(MessageLogCompactor logCompactor, long cutoff, String target) throws IOException {
+        int removed;
+        try {
+            logCompactor.prepare(cutoff);
+            writeLock.lock();
+            try {
+                // The next store or lookup reopens the swapped-in log and index
+                closeLog();
+                removed = logCompactor.commit();
+            } finally {
+                writeLock.unlock();
+            }
+        } catch (IOException | RuntimeException e) {
+            logCompactor.abort();
+            throw e;
+        }
+        System.out.println("Compacted " + target + ": removed " + removed + " records");
+        return removed;
+    }
+
+    private static void scanLog(Path path, long start, OffsetConsumer<MessageRecord> action) throws IOException {
+        try (MessageLog log = new MessageLog(path)) {
+            log.forEachRecordFrom(start, (offset, line) -> {
+                try {
+                    MessageRecord record = new MessageJsonReader(new StringReader(line)).next();
+                    if (record != null) {
+                        action.accept(offset, record);
+                    }
+                } catch (IOException e) {
+                    // Unreadable records stop the compaction rather than being dropped
+                    throw new UncheckedIOException(new IOException("Unreadable record at offset " + offset, e));
+                }
+            });
+        }
+    }
+
+    private static void scanBinaryLog(Path path, long start, OffsetConsumer<MessageRecord> action) throws IOException {
+        try (BinaryMessageLog log = new BinaryMessageLog(path)) {
+            log.forEachRecordFrom(start, action);
+        }
+    }
+
+    // Compaction of messages.json is one more rewrite under the write lock, after a
+    // checkpoint, swapped in atomically
+    private static int compactArray() throws IOException {
+        writeLock.lock();
+        try {
+            if (hasArrayArchive()) {
+                checkpointWal(openWal());
+            }
+            Path file = dataFile(FILE_NAME);
+            if (!Files.exists(file)) {
+                return 0;
+            }
+            // Re-inserting moves a message to the position of its newest record
+            Map<String, MessageRecord> newest = new LinkedHashMap<>();
+            int[] total = {0};
+            MessageJsonReader.forEach(file, record -> {
+                newest.remove(record.getMessageID());
+                newest.put(record.getMessageID(), record);
+                total[0]++;
+            });
+            List<String> entries = new ArrayList<>(newest.size());
+            for (MessageRecord record : newest.values()) {
+                if (!record.isDeleted()) {
+                    entries.add(toArrayEntry(record));
+                }
+            }
+            Path tmp = dataFile(FILE_NAME + ".compact");
+            writeMessagesToFile(tmp, entries);
+            forceFile(tmp);
+            // Every checkpointed record is reflected in the compacted file
+            writeCheckpointMark(walCheckpointed, tmp);
+            // A snapshot taken while messages.json was still empty points at offset 0,
+            // where no bytes tell the rewritten file apart from the one it saw
+            Files.deleteIfExists(dataFile(MessageHistory.SNAPSHOT_FILE_NAME));
+            Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            int removed = total[0] - entries.size();
+            System.out.println("Compacted " + FILE_NAME + ": removed " + removed + " records");
+            return removed;
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    private static String currentTimestamp() {
+        return new SimpleDateFormat("yyyy-MM-dd HH:mm:ss").format(new Date());
+    }
+
+    // Pretty-printed entry for the messages.json array
+    static String toArrayEntry(MessageRecord record) {
         StringBuilder json = new StringBuilder();
         json.append("  {\n");
-        json.append("    \"messageID\": \"").append(escapeJSON(message.getMessageID())).append("\",\n");
-        json.append("    \"messageCount\": ").append(message.getMessageCount()).append(",\n");
-        json.append("    \"recipient\": \"").append(escapeJSON(message.getRecipient())).append("\",\n");
-        json.append("    \"message\": \"").append(escapeJSON(message.getMessage())).append("\",\n");
-        json.append("    \"messageHash\": \"").append(escapeJSON(message.getMessageHash())).append("\",\n");
-        json.append("    \"status\": \"").append(escapeJSON(message.getStatus())).append("\",\n");
-        json.append("    \"timestamp\": \"").append(new SimpleDateFormat("yyyy-MM-dd HH:mm:ss").format(new Date())).append("\"\n");
+        json.append("    \"messageID\": \"").append(escapeJSON(record.getMessageID())).append("\",\n");
+        json.append("    \"messageCount\": ").append(record.getMessageCount()).append(",\n");
+        json.append("    \"recipient\": \"").append(escapeJSON(record.getRecipient())).append("\",\n");
+        json.append("    \"message\": \"").append(escapeJSON(record.getMessage())).append("\",\n");
+        json.append("    \"messageHash\": \"").append(escapeJSON(record.getMessageHash())).append("\",\n");
+        json.append("    \"status\": \"").append(escapeJSON(record.getStatus())).append("\",\n");
+        json.append("    \"timestamp\": \"").append(escapeJSON(record.getTimestamp())).append("\"\n");
         json.append("  }");
         return json.toString();
     }
 
+    // Same fields as toArrayEntry, written as a single compact line for the log
+    static String toLogLine(MessageRecord record) {
+        StringBuilder json = new StringBuilder(128);
+        json.append("{\"messageID\":\"").append(escapeJSON(record.getMessageID()))
+            .append("\",\"messageCount\":").append(record.getMessageCount())
+            .append(",\"recipient\":\"").append(escapeJSON(record.getRecipient()))
+            .append("\",\"message\":\"").append(escapeJSON(record.getMessage()))
+            .append("\",\"messageHash\":\"").append(escapeJSON(record.getMessageHash()))
+            .append("\",\"status\":\"").append(escapeJSON(record.getStatus()))
+            .append("\",\"timestamp\":\"").append(escapeJSON(record.getTimestamp()))
+            .append("\"}");
+        return json.toString();
+    }
+
+    // A log and the index of its offsets, taken together under stateLock. A compaction
+    // closes and replaces both; a caller still holding the old pair gets an IOException
+    // from it instead of a null field or an index that belongs to another file.
+    private static final class IndexedLog<L> {
+        final L log;
+        final MessageIndex index;
+
+        IndexedLog(L log, MessageIndex index) {
+            this.log = log;
+            this.index = index;
+        }
+    }
+
+    private static MessageLog openLog() throws IOException {
+        return openIndexedLog().log;
+    }
+
+    // Opens the log on first use; an existing messages.json is copied into a new log
+    // once so that history written in JSON_ARRAY mode stays visible. The copy is written
+    // next to the log and moved into place, so a crash while copying leaves no log and
+    // the next start copies again.
+    private static IndexedLog<MessageLog> openIndexedLog() throws IOException {
+        stateLock.lock();
+        try {
+            if (messageLog == null) {
+                Path logPath = dataFile(LOG_FILE_NAME);
+                if (!Files.exists(logPath) && hasArrayArchive()) {
+                    Path seed = dataFile(LOG_FILE_NAME + ".seed");
+                    Files.deleteIfExists(seed);
+                    try (MessageLog log = new MessageLog(seed)) {
+                        List<String> lines = new ArrayList<>();
+                        forEachArrayRecord(record -> lines.add(toLogLine(record)));
+                        log.appendAll(lines);
+                    }
+                    forceFile(seed);
+                    Files.move(seed, logPath, StandardCopyOption.ATOMIC_MOVE);
+                }
+                messageLog = new MessageLog(logPath);
+                if (messageLog.getTruncatedBytes() > 0) {
+                    System.err.println("Discarded " + messageLog.getTruncatedBytes()
+                            + " bytes of an incomplete write at the end of " + LOG_FILE_NAME);
+                }
+                messageLogIndex = new MessageIndex(dataFile(LOG_FILE_NAME + ".idx"));
+                MessageLog log = messageLog;
+                catchUpIndex(messageLogIndex, log.size(), from -> log.forEachRecordFrom(from, (offset, line) ->
+                        indexLine(messageLogIndex, offset, line)));
+            }
+            return new IndexedLog<>(messageLog, messageLogIndex);
+        } finally {
+            stateLock.unlock();
+        }
+    }
+
+    private interface IndexScan {
+        void scanFrom(long offset) throws IOException;
+    }
+
+    // Indexes whatever the log gained since the index was last written,
+    // or rebuilds the index if the log is shorter than what it describes
+    private static void catchUpIndex(MessageIndex index, long logSize, IndexScan scan) throws IOException {
+        if (index.getIndexedLength() > logSize) {
+            index.clear();
+        }
+        if (index.getIndexedLength() < logSize) {
+            try {
+                scan.scanFrom(index.getIndexedLength());
+            } catch (UncheckedIOException e) {
+                throw e.getCause();
+            }
+            index.setIndexedLength(logSize);
+        }
+    }
+
+    private static void indexLine(MessageIndex index, long offset, String line) {
+        MessageRecord record;
+        try {
+            record = new MessageJsonReader(new StringReader(line)).next();
+        } catch (IOException e) {
+            System.err.println("Skipping unreadable record at offset " + offset + ": " + e.getMessage());
+            return;
+        }
+        if (record != null) {
+            indexRecord(index, offset, record);
+        }
+    }
+
+    private static void indexRecord(MessageIndex index, long offset, MessageRecord record) {
+        long id = parseMessageID(record.getMessageID());
+        if (id > 0) {
+            try {
+                index.put(id, offset);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+    }
+
+    private static BinaryMessageLog openBinaryLog() throws IOException {
+        return openIndexedBinaryLog().log;
+    }
+
+    // Binary counterpart of openIndexedLog, also seeded once from an existing messages.json
+    // through a file moved into place
+    private static IndexedLog<BinaryMessageLog> openIndexedBinaryLog() throws IOException {
+        stateLock.lock();
+        try {
+            if (binaryLog == null) {
+                Path binaryPath = dataFile(BINARY_FILE_NAME);
+                if (!Files.exists(binaryPath) && hasArrayArchive()) {
+                    Path seed = dataFile(BINARY_FILE_NAME + ".seed");
+                    Files.deleteIfExists(seed);
+                    try (BinaryMessageLog log = new BinaryMessageLog(seed)) {
+                        List<MessageRecord> records = new ArrayList<>();
+                        forEachArrayRecord(records::add);
+                        log.appendAll(records);
+                    }
+                    forceFile(seed);
+                    Files.move(seed, binaryPath, StandardCopyOption.ATOMIC_MOVE);
+                }
+                binaryLog = new BinaryMessageLog(binaryPath);
+                if (binaryLog.getTruncatedBytes() > 0) {
+                    System.err.println("Discarded " + binaryLog.getTruncatedBytes()
+                            + " bytes of an incomplete write at the end of " + BINARY_FILE_NAME);
+                }
+                binaryLogIndex = new MessageIndex(dataFile(BINARY_FILE_NAME + ".idx"));
+                BinaryMessageLog log = binaryLog;
+                catchUpIndex(binaryLogIndex, log.size(), from -> log.forEachRecordFrom(from, (offset, record) ->
+                        indexRecord(binaryLogIndex, offset, record)));
+            }
+            return new IndexedLog<>(binaryLog, binaryLogIndex);
+        } finally {
+            stateLock.unlock();
+        }
+    }
+
+    // Opens the segment directory on first use, seeded once from an existing messages.json
+    // through a directory moved into place
+    private static SegmentedMessageLog openSegmentedLog() throws IOException {
+        stateLock.lock();
+        try {
+            if (segmentedLog == null) {
+                Path directory = dataFile(SEGMENT_DIR_NAME);
+                if (!Files.exists(directory) && hasArrayArchive()) {
+                    Path seed = dataFile(SEGMENT_DIR_NAME + ".seed");
+                    if (Files.exists(seed)) {
+                        // Segment directories hold files only
+                        try (Stream<Path> files = Files.list(seed)) {
+                            for (Path file : (Iterable<Path>) files::iterator) {
+                                Files.delete(file);
+                            }
+                        }
+                        Files.delete(seed);
+                    }
+                    try (SegmentedMessageLog log = new SegmentedMessageLog(seed, SEGMENT_BYTES)) {
+                        List<MessageRecord> records = new ArrayList<>();
+                        forEachArrayRecord(records::add);
+                        log.appendAll(records);
+                        if (durability != Durability.NONE) {
+                            log.sync();
+                        }
+                    }
+                    Files.move(seed, directory, StandardCopyOption.ATOMIC_MOVE);
+                }
+                segmentedLog = new SegmentedMessageLog(directory, SEGMENT_BYTES);
+                if (segmentedLog.getTruncatedBytes() > 0) {
+                    System.err.println("Discarded " + segmentedLog.getTruncatedBytes()
+                            + " bytes of an incomplete write at the end of the active segment in " + SEGMENT_DIR_NAME);
+                }
+            }
+            return segmentedLog;
+        } finally {
+            stateLock.unlock();
+        }
+    }
+
+    // Removes sealed segments holding nothing newer than the timestamp ("yyyy-MM-dd HH:mm:ss").
+    // Only the SEGMENTED mode can drop history this way; returns the number of segments removed.
+    public static int removeSegmentsBefore(String timestamp) throws IOException {
+        if (storageMode != StorageMode.SEGMENTED) {
+            return 0;
+        }
+        return openSegmentedLog().removeSegmentsBefore(timestamp);
+    }
+
+    // Closes the append logs so the next store reopens them (used when switching files or in tests)
+    public static void closeLog() {
+        stateLock.lock();
+        try {
+            try {
+                if (messageLog != null) {
+                    messageLog.close();
+                }
+                if (binaryLog != null) {
+                    binaryLog.close();
+                }
+                if (messageLogIndex != null) {
+                    messageLogIndex.close();
+                }
+                if (binaryLogIndex != null) {
+                    binaryLogIndex.close();
+                }
+                if (segmentedLog != null) {
+                    segmentedLog.close();
+                }
+                if (messageWal != null) {
+                    // Leaves messages.json complete for whoever opens the directory next
+                    checkpointWal(messageWal);
+                    messageWal.close();
+                }
+            } catch (IOException e) {
+                System.err.println("Error closing message log: " + e.getMessage());
+            }
+            messageLog = null;
+            binaryLog = null;
+            messageLogIndex = null;
+            binaryLogIndex = null;
+            segmentedLog = null;
+            messageWal = null;
+        } finally {
+            stateLock.unlock();
+        }
+    }
+
     private static String escapeJSON(String text) {
         if (text == null) return "";
         return text.replace("\\", "\\\\")
@@ -55,46 +863,319 @@ public class JSONHandler {
                   .replace("\t", "\\t");
     }
 
-    private static List<String> readAllMessages() throws IOException {
-        List<String> messages = new ArrayList<>();
-        
-        File file = new File(FILE_NAME);
-        if (!file.exists()) {
-            return messages;
+    // Opens the write-ahead log on first use, recovering it. Records it still holds were
+    // stored before the last run ended without a checkpoint; they are read from the log
+    // like any other pending record until the next checkpoint.
+    private static MessageWal openWal() throws IOException {
+        stateLock.lock();
+        try {
+            if (messageWal == null) {
+                repairArrayFile();
+                MessageWal wal = new MessageWal(dataFile(WAL_FILE_NAME));
+                if (wal.getTruncatedBytes() > 0) {
+                    System.err.println("Discarded " + wal.getTruncatedBytes()
+                            + " bytes of an incomplete write at the end of " + WAL_FILE_NAME);
+                }
+                long checkpointed = readCheckpointMark(true);
+                if (checkpointed >= 0 && wal.lastSequence() <= checkpointed) {
+                    // A crash came after messages.json was swapped in but before the log
+                    // was emptied: everything logged is in messages.json already
+                    wal.checkpoint(log -> { });
+                }
+                if (wal.size() == 0) {
+                    // Numbering carries on even if messages.json was replaced since, so
+                    // a sequence number names one record for as long as the data lasts
+                    wal.continueAfter(Math.max(readCheckpointMark(false), 0));
+                }
+                walCheckpointed = checkpointed;
+                messageWal = wal;
+                if (wal.size() > 0) {
+                    System.out.println("Recovered " + wal.size() + " messages from " + WAL_FILE_NAME + " in "
+                            + wal.getRecoveryNanos() / 1_000_000 + " ms");
+                }
+            }
+            return messageWal;
+        } finally {
+            stateLock.unlock();
         }
-        
-        try (BufferedReader reader = new BufferedReader(new FileReader(file))) {
-            String line;
-            StringBuilder currentMessage = new StringBuilder();
-            boolean inMessage = false;
-            
-            while ((line = reader.readLine()) != null) {
-                line = line.trim();
-                
-                if (line.equals("[")) continue;
-                if (line.equals("]")) break;
-                
-                if (line.equals("{")) {
-                    inMessage = true;
-                    currentMessage = new StringBuilder();
-                    currentMessage.append("{\n");
-                } else if (line.equals("},") || line.equals("}")) {
-                    if (inMessage) {
-                        currentMessage.append("}");
-                        messages.add(currentMessage.toString());
-                        inMessage = false;
+    }
+
+    // Reads messages.json through once. If it is torn or damaged it is copied aside to
+    // messages.json.corrupt-<time> and replaced by the records before the damage, so one
+    // bad file does not fail every read and checkpoint after it. The mark no longer
+    // matches the new file, so the logged records are all added again at the next
+    // checkpoint; any that survived in messages.json are superseded by their copies.
+    private static void repairArrayFile() throws IOException {
+        Path file = dataFile(FILE_NAME);
+        if (!Files.exists(file)) {
+            return;
+        }
+        String problem;
+        try {
+            MessageJsonReader.forEach(file, record -> { });
+            return;
+        } catch (IOException e) {
+            problem = e.getMessage();
+        }
+        List<String> intact = new ArrayList<>();
+        try {
+            MessageJsonReader.forEach(file, record -> intact.add(toArrayEntry(record)));
+        } catch (IOException e) {
+            // Stops at the first record that does not parse
+        }
+        Path tmp = dataFile(FILE_NAME + ".repair");
+        writeMessagesToFile(tmp, intact);
+        forceFile(tmp);
+        Path quarantine = dataFile(FILE_NAME + ".corrupt-" + System.currentTimeMillis());
+        // Copied rather than moved, so messages.json exists at every point
+        Files.copy(file, quarantine);
+        Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        System.err.println("Error reading " + FILE_NAME + ": " + problem + "; kept the " + intact.size()
+                + " messages before it and moved the file to " + quarantine.getFileName());
+    }
+
+    // Recovers the write-ahead log of the data directory, if there is one. Called at
+    // startup; returns the number of intact records found in it.
+    public static int recover() throws IOException {
+        stateLock.lock();
+        try {
+            if (messageWal != null || !Files.exists(dataFile(WAL_FILE_NAME))) {
+                return 0;
+            }
+            return openWal().getRecoveredRecords();
+        } finally {
+            stateLock.unlock();
+        }
+    }
+
+    private static boolean hasArrayArchive() {
+        return Files.exists(dataFile(FILE_NAME)) || Files.exists(dataFile(WAL_FILE_NAME));
+    }
+
+    // messages.json opened together with the records still only in the write-ahead log.
+    // Both are taken while the log is locked, so a checkpoint cannot move records from
+    // one to the other in between; a checkpoint afterwards replaces messages.json under
+    // a new name and leaves the open file as it was.
+    private static final class ArrayView implements Closeable {
+        private final FileChannel json;
+        private final List<MessageRecord> pending;
+
+        ArrayView(FileChannel json, List<MessageRecord> pending) {
+            this.json = json;
+            this.pending = pending;
+        }
+
+        // Every record, from offset in messages.json on, then the pending ones
+        void forEach(long offset, Consumer<MessageRecord> action) throws IOException {
+            if (json != null) {
+                MessageJsonReader reader = new MessageJsonReader(
+                        Channels.newReader(json.position(offset), StandardCharsets.UTF_8));
+                MessageRecord record;
+                while ((record = reader.next()) != null) {
+                    action.accept(record);
+                }
+            }
+            pending.forEach(action);
+        }
+
+        void scan(MappedMessageScanner.SummaryHandler handler) throws IOException {
+            if (json != null) {
+                MappedMessageScanner.scan(json, handler);
+            }
+            for (MessageRecord record : pending) {
+                handler.accept(record.getMessageID(), record.getRecipient(), record.getStatus(), record.getTimestamp());
+            }
+        }
+
+        @Override
+        public void close() throws IOException {
+            if (json != null) {
+                json.close();
+            }
+        }
+    }
+
+    private static ArrayView openArrayView() throws IOException {
+        return openArrayView(-1);
+    }
+
+    // Leaves out the pending records up to sequence
+    private static ArrayView openArrayView(long sequence) throws IOException {
+        if (!hasArrayArchive()) {
+            return new ArrayView(null, List.of());
+        }
+        return openWal().capture(Math.max(walCheckpointed, sequence), pending -> {
+            Path file = dataFile(FILE_NAME);
+            FileChannel json = Files.exists(file) ? FileChannel.open(file, StandardOpenOption.READ) : null;
+            return new ArrayView(json, pending);
+        });
+    }
+
+    // Every record stored in JSON_ARRAY mode, oldest first
+    private static void forEachArrayRecord(Consumer<MessageRecord> action) throws IOException {
+        try (ArrayView view = openArrayView()) {
+            view.forEach(0, action);
+        }
+    }
+
+    // Writes messages.json plus the logged records it lacks to a new file and swaps it in;
+    // the log is emptied afterwards. Before the swap the mark file records the sequence
+    // number of the last logged record together with the size and the CRC32C of the end
+    // of the new messages.json. If a crash comes after the swap but before the log is
+    // emptied, the mark matches messages.json on the next start and the records up to
+    // that sequence number are not added a second time; if it comes before the swap,
+    // the mark does not match and every logged record is still added.
+    private static void checkpointWal(MessageWal wal) throws IOException {
+        wal.checkpoint(log -> {
+            List<String> logged = new ArrayList<>(log.size());
+            log.forEachRecordAfter(walCheckpointed, record -> logged.add(toArrayEntry(record)));
+            if (!logged.isEmpty()) {
+                Path file = dataFile(FILE_NAME);
+                Path tmp = dataFile(FILE_NAME + ".checkpoint");
+                appendToArrayFile(file, tmp, logged);
+                forceFile(tmp);
+                writeCheckpointMark(log.lastSequence(), tmp);
+                Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            }
+            walCheckpointed = log.lastSequence();
+        });
+    }
+
+    // Writes target as source with the entries added at the end of its array. The old
+    // entries are copied as bytes up to the last one's closing brace, without parsing
+    // them or holding them in memory; only the new entries are formatted.
+    private static void appendToArrayFile(Path source, Path target, List<String> entries) throws IOException {
+        StringBuilder tail = new StringBuilder();
+        for (String entry : entries) {
+            tail.append(",\n").append(entry);
+        }
+        tail.append("\n]");
+        try (FileChannel out = FileChannel.open(target, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            long keep = 0;
+            if (Files.exists(source)) {
+                try (FileChannel in = FileChannel.open(source, StandardOpenOption.READ)) {
+                    keep = endOfLastEntry(in);
+                    long copied = 0;
+                    while (copied < keep) {
+                        copied += in.transferTo(copied, keep - copied, out);
                     }
-                } else if (inMessage) {
-                    currentMessage.append(line).append("\n");
                 }
             }
+            if (keep == 0) {
+                // No entries yet: open the array in place of the first separator
+                out.write(ByteBuffer.wrap("[".getBytes(StandardCharsets.UTF_8)));
+                tail.deleteCharAt(0);
+            }
+            ByteBuffer bytes = ByteBuffer.wrap(tail.toString().getBytes(StandardCharsets.UTF_8));
+            while (bytes.hasRemaining()) {
+                out.write(bytes);
+            }
+        }
+    }
+
+    // Offset just past the closing brace of the last entry of the array in the channel,
+    // or 0 if the array is empty. Only the end of the file is read.
+    private static long endOfLastEntry(FileChannel channel) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(4096);
+        boolean closed = false;
+        long end = channel.size();
+        while (end > 0) {
+            long start = Math.max(0, end - buffer.capacity());
+            buffer.clear();
+            buffer.limit((int) (end - start));
+            while (buffer.hasRemaining()) {
+                if (channel.read(buffer, start + buffer.position()) <= 0) {
+                    throw new IOException("Cannot read " + FILE_NAME + " at offset " + (start + buffer.position()));
+                }
+            }
+            for (int i = buffer.limit() - 1; i >= 0; i--) {
+                byte b = buffer.get(i);
+                if (b == ' ' || b == '\n' || b == '\r' || b == '\t') {
+                    continue;
+                }
+                if (!closed && b == ']') {
+                    closed = true;
+                } else if (closed && b == '}') {
+                    return start + i + 1;
+                } else if (closed && b == '[') {
+                    return 0;
+                } else {
+                    throw new IOException(FILE_NAME + " does not end in an array of messages");
+                }
+            }
+            end = start;
+        }
+        if (closed) {
+            throw new IOException(FILE_NAME + " does not end in an array of messages");
+        }
+        // An empty file holds no array yet
+        return 0;
+    }
+
+    // Records that messages.json, about to be replaced by json, holds every logged
+    // record up to sequence
+    private static void writeCheckpointMark(long sequence, Path json) throws IOException {
+        if (sequence < 0) {
+            return;
+        }
+        long size = Files.size(json);
+        ByteBuffer mark = ByteBuffer.allocate(20).putLong(sequence).putLong(size).putInt(tailChecksum(json, size));
+        Path tmp = dataFile(WAL_MARK_FILE_NAME + ".tmp");
+        Files.write(tmp, mark.array());
+        forceFile(tmp);
+        Files.move(tmp, dataFile(WAL_MARK_FILE_NAME), StandardCopyOption.REPLACE_EXISTING,
+                StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    // The sequence number in the mark file, or -1 if there is none or, when matching,
+    // if it was not written for messages.json as it is now
+    private static long readCheckpointMark(boolean matching) throws IOException {
+        Path mark = dataFile(WAL_MARK_FILE_NAME);
+        Path file = dataFile(FILE_NAME);
+        if (!Files.exists(mark)) {
+            return -1;
+        }
+        ByteBuffer in = ByteBuffer.wrap(Files.readAllBytes(mark));
+        if (in.remaining() != 20) {
+            return -1;
+        }
+        long sequence = in.getLong();
+        long size = in.getLong();
+        int check = in.getInt();
+        if (matching && (!Files.exists(file) || Files.size(file) != size || tailChecksum(file, size) != check)) {
+            return -1;
+        }
+        return sequence;
+    }
+
+    // CRC32C of the last MARK_CHECK_BYTES of the first size bytes of the file
+    private static int tailChecksum(Path file, long size) throws IOException {
+        CRC32C crc = new CRC32C();
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            long from = Math.max(0, size - MARK_CHECK_BYTES);
+            ByteBuffer buffer = ByteBuffer.allocate((int) (size - from));
+            while (buffer.hasRemaining() && channel.read(buffer, from + buffer.position()) > 0) {
+            }
+            buffer.flip();
+            crc.update(buffer);
+        }
+        return (int) crc.getValue();
+    }
+
+    // Forces a rewritten file to the device before it replaces the original, unless
+    // durability is NONE
+    static void forceFile(Path path) throws IOException {
+        if (durability == Durability.NONE) {
+            return;
+        }
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.WRITE)) {
+            channel.force(true);
         }
-        
-        return messages;
     }
 
-    private static void writeMessagesToFile(List<String> messages) throws IOException {
-        try (FileWriter file = new FileWriter(FILE_NAME)) {
+    static void writeMessagesToFile(Path path, List<String> messages) throws IOException {
+        try (Writer file = Files.newBufferedWriter(path, StandardCharsets.UTF_8)) {
             file.write("[\n");
             
             for (int i = 0; i < messages.size(); i++) {
@@ -112,63 +1193,224 @@ public class JSONHandler {
 
     public static String getAllMessages() {
         try {
-            List<String> messages = readAllMessages();
-            if (messages.isEmpty()) {
-                return "No messages stored.";
-            }
-            
             StringBuilder sb = new StringBuilder();
             sb.append("Stored Messages:\n");
             sb.append("================\n");
-            
-            for (String messageJson : messages) {
-                // Simple parsing to extract key information
-                String[] lines = messageJson.split("\n");
-                String messageID = extractValue(lines, "messageID");
-                String recipient = extractValue(lines, "recipient");
-                String status = extractValue(lines, "status");
-                String timestamp = extractValue(lines, "timestamp");
-                
-                sb.append("ID: ").append(messageID)
-                  .append(" | To: ").append(recipient)
-                  .append(" | Status: ").append(status)
-                  .append(" | Time: ").append(timestamp)
-                  .append("\n");
+            int headerLength = sb.length();
+
+            if (storageMode == StorageMode.BINARY) {
+                openBinaryLog().forEachRecord(record -> appendSummary(sb, record.getMessageID(),
+                        record.getRecipient(), record.getStatus(), record.getTimestamp()));
+            } else if (storageMode == StorageMode.JSON_ARRAY) {
+                try (ArrayView view = openArrayView()) {
+                    if (readMode == ReadMode.MAPPED) {
+                        view.scan((messageID, recipient, status, timestamp) ->
+                                appendSummary(sb, messageID, recipient, status, timestamp));
+                    } else {
+                        // Records are parsed one at a time straight from the file
+                        view.forEach(0, record -> appendSummary(sb, record.getMessageID(),
+                                record.getRecipient(), record.getStatus(), record.getTimestamp()));
+                    }
+                }
+            } else if (readMode == ReadMode.MAPPED) {
+                for (Path path : currentJsonPaths()) {
+                    MappedMessageScanner.scan(path, (messageID, recipient, status, timestamp) ->
+                            appendSummary(sb, messageID, recipient, status, timestamp));
+                }
+            } else {
+                // JSON Lines can be split at any newline, so large files are parsed in parallel chunks
+                for (Path path : currentJsonPaths()) {
+                    ParallelReport.formatJsonLines(sb, path, (out, record) -> appendSummary(out, record.getMessageID(),
+                            record.getRecipient(), record.getStatus(), record.getTimestamp()));
+                }
+            }
+
+            if (sb.length() == headerLength) {
+                return "No messages stored.";
             }
             return sb.toString();
-            
+
         } catch (IOException e) {
             return "Error reading messages: " + e.getMessage();
         }
     }
 
-    private static String extractValue(String[] lines, String key) {
-        for (String line : lines) {
-            if (line.contains("\"" + key + "\":")) {
-                int start = line.indexOf(":") + 1;
-                String value = line.substring(start).trim();
-                if (value.startsWith("\"")) {
-                    value = value.substring(1, value.length() - 1);
+    // Cursor over every stored record of the current mode, oldest first
+    public static MessageCursor openCursor() throws IOException {
+        if (storageMode == StorageMode.BINARY) {
+            return MessageCursor.overBinaryFile(openBinaryLog().getPath());
+        }
+        if (storageMode == StorageMode.JSON_ARRAY) {
+            ArrayView view = openArrayView();
+            return MessageCursor.overJsonArray(view.json, view.pending);
+        }
+        return MessageCursor.overJsonFiles(currentJsonPaths());
+    }
+
+    // Up to limit stored records starting at record number offset. Reaching the offset
+    // means reading past the records before it; use openCursor to walk the whole archive.
+    public static List<MessageRecord> getMessagesPage(long offset, int limit) throws IOException {
+        try (MessageCursor cursor = openCursor()) {
+            cursor.skip(offset);
+            return cursor.next(limit);
+        }
+    }
+
+    // Same content as getAllMessages, written a page of records at a time
+    public static void writeAllMessages(Writer out) throws IOException {
+        StringBuilder sb = new StringBuilder();
+        boolean any = false;
+        try (MessageCursor cursor = openCursor()) {
+            List<MessageRecord> page;
+            while (!(page = cursor.next(1024)).isEmpty()) {
+                sb.setLength(0);
+                for (MessageRecord record : page) {
+                    appendSummary(sb, record.getMessageID(), record.getRecipient(), record.getStatus(), record.getTimestamp());
+                }
+                if (sb.length() == 0) {
+                    continue;
+                }
+                if (!any) {
+                    // Not before the first record shown, since tombstones alone show nothing
+                    out.write("Stored Messages:\n");
+                    out.write("================\n");
+                    any = true;
+                }
+                out.append(sb);
+            }
+        }
+        if (!any) {
+            out.write("No messages stored.");
+        }
+    }
+
+    // Files making up the archive of the current mode, oldest first. In JSON_ARRAY mode
+    // that is messages.json alone; see pendingRecordCount for the rest.
+    static List<Path> archiveFiles() throws IOException {
+        if (storageMode == StorageMode.BINARY) {
+            return List.of(openBinaryLog().getPath());
+        }
+        return currentJsonPaths();
+    }
+
+    // Every record in the archive of the current mode, oldest first. JSON Lines files
+    // (the append log and the segments) are parsed in parallel chunks; messages.json
+    // and the binary log can only be read front to back.
+    static List<MessageRecord> readArchive() throws IOException {
+        if (storageMode == StorageMode.APPEND_LOG || storageMode == StorageMode.SEGMENTED) {
+            return ParallelReport.readJsonLines(currentJsonPaths());
+        }
+        List<MessageRecord> records = new ArrayList<>();
+        try (MessageCursor cursor = openCursor()) {
+            List<MessageRecord> page;
+            while (!(page = cursor.next(4096)).isEmpty()) {
+                records.addAll(page);
+            }
+        }
+        return records;
+    }
+
+    // Each archive file of the current mode with the length written so far, oldest first.
+    // Taken under the write lock so that every length ends on a record boundary. In
+    // JSON_ARRAY mode the closing "\n]" of messages.json is left out, since the next
+    // checkpoint writes further records in its place.
+    static Map<Path, Long> archiveLengths() throws IOException {
+        writeLock.lock();
+        try {
+            Map<Path, Long> lengths = new LinkedHashMap<>();
+            for (Path file : archiveFiles()) {
+                long length = Files.exists(file) ? Files.size(file) : 0;
+                if (storageMode == StorageMode.JSON_ARRAY && length >= 2) {
+                    try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+                        ByteBuffer end = ByteBuffer.allocate(2);
+                        channel.read(end, length - 2);
+                        if (end.get(0) == '\n' && end.get(1) == ']') {
+                            length -= 2;
+                        }
+                    }
                 }
-                // Remove trailing comma if present
-                if (value.endsWith(",")) {
-                    value = value.substring(0, value.length() - 1);
+                lengths.put(file, length);
+            }
+            return lengths;
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    // Sequence number of the newest record in the JSON_ARRAY write-ahead log, which goes
+    // on across checkpoints; with archiveLengths it tells how far the archive has come.
+    // Always 0 in the other modes.
+    static long walSequence() throws IOException {
+        if (storageMode != StorageMode.JSON_ARRAY || !hasArrayArchive()) {
+            return 0;
+        }
+        writeLock.lock();
+        try {
+            return openWal().lastSequence();
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    // Reads, oldest first, the records of each archive file from its offset, which must
+    // start a record (or, in messages.json, the separator before one). In JSON_ARRAY mode
+    // the records still only in the write-ahead log follow, those after walSequence, and
+    // whether or not messages.json is one of the files.
+    static void forEachRecordAfter(Map<Path, Long> offsets, long walSequence, Consumer<MessageRecord> action)
+            throws IOException {
+        if (storageMode == StorageMode.JSON_ARRAY) {
+            Path file = dataFile(FILE_NAME);
+            try (ArrayView view = openArrayView(walSequence)) {
+                // Without an offset, messages.json has nothing new
+                long offset = offsets.getOrDefault(file, view.json == null ? 0 : view.json.size());
+                view.forEach(offset, action);
+            }
+            return;
+        }
+        for (Map.Entry<Path, Long> from : offsets.entrySet()) {
+            Path file = from.getKey();
+            if (!Files.exists(file)) {
+                continue;
+            }
+            if (storageMode == StorageMode.BINARY) {
+                scanBinaryLog(file, from.getValue(), (position, record) -> action.accept(record));
+                continue;
+            }
+            FileChannel channel = FileChannel.open(file, StandardOpenOption.READ);
+            try (MessageJsonReader reader = new MessageJsonReader(
+                    Channels.newReader(channel.position(from.getValue()), StandardCharsets.UTF_8))) {
+                MessageRecord record;
+                while ((record = reader.next()) != null) {
+                    action.accept(record);
                 }
-                return unescapeJSON(value);
             }
         }
-        return "N/A";
     }
 
-    private static String unescapeJSON(String text) {
-        return text.replace("\\\"", "\"")
-                  .replace("\\\\", "\\")
-                  .replace("\\n", "\n")
-                  .replace("\\r", "\r")
-                  .replace("\\t", "\t")
-                  .replace("\\b", "\b")
-                  .replace("\\f", "\f");
+    // JSON files holding the current mode's records, oldest first. For JSON_ARRAY this is
+    // messages.json without the records still in the write-ahead log; reads go through
+    // openArrayView instead.
+    private static List<Path> currentJsonPaths() throws IOException {
+        switch (storageMode) {
+            case APPEND_LOG:
+                return List.of(openLog().getPath());
+            case SEGMENTED:
+                return openSegmentedLog().segmentPaths();
+            default:
+                return List.of(dataFile(FILE_NAME));
+        }
     }
 
-   
-}
\ No newline at end of file
+    // Tombstones are left out, as findMessageByID leaves them out
+    private static void appendSummary(StringBuilder sb, String messageID, String recipient,
+                                      String status, String timestamp) {
+        if (MessageRecord.DELETED.equals(status)) {
+            return;
+        }
+        sb.append("ID: ").append(messageID)
+          .append(" | To: ").append(recipient)
+          .append(" | Status: ").append(status)
+          .append(" | Time: ").append(timestamp)
+          .append("\n");
+    }
+}
@@ -1,8 +1,5 @@
 package quickchatapp;
 
-import java.util.regex.Pattern;
-import java.util.regex.Matcher;
-
 public class Login {
     private String username;
     private String password;
@@ -59,43 +56,17 @@ public class Login {
     
     // Check if username meets requirements
     public boolean checkUserName() {
-        if (username == null) return false;
-        return username.contains("_") && username.length() <= 5;
+        return Validators.isValidUsername(username);
     }
     
     // Check if password meets complexity requirements
     public boolean checkPasswordComplexity() {
-        if (password == null || password.length() < 8) {
-            return false;
-        }
-        
-        boolean hasCapital = false;
-        boolean hasNumber = false;
-        boolean hasSpecialChar = false;
-        
-        for (char c : password.toCharArray()) {
-            if (Character.isUpperCase(c)) {
-                hasCapital = true;
-            } else if (Character.isDigit(c)) {
-                hasNumber = true;
-            } else if (!Character.isLetterOrDigit(c)) {
-                hasSpecialChar = true;
-            }
-        }
-        
-        return hasCapital && hasNumber && hasSpecialChar;
+        return Validators.isComplexPassword(password);
     }
     
-    // Check if cell phone number is correctly formatted
+    // Check if cell phone number is correctly formatted (+27 and nine digits)
     public boolean checkCellPhoneNumber() {
-        if (cellPhoneNumber == null) return false;
-        
-        // Regular expression to match South African cell phone numbers with international code
-        String regex = "^\\+27[0-9]{9}$";
-        Pattern pattern = Pattern.compile(regex);
-        Matcher matcher = pattern.matcher(cellPhoneNumber);
-        
-        return matcher.matches();
+        return Validators.isSouthAfricanCellNumber(cellPhoneNumber);
     }
     
     // Register a new user
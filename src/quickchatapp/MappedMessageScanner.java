@@ -0,0 +1,218 @@
+package quickchatapp;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+// Read path for large archives: memory-maps the message file and scans the raw bytes,
+// decoding only the four fields shown in the stored-messages view. Other values are
+// skipped without being copied or decoded. Works on the JSON array and the JSON Lines log.
+public class MappedMessageScanner {
+    // Files larger than this are mapped one window at a time
+    private static final long DEFAULT_WINDOW_SIZE = 64L * 1024 * 1024;
+    private static final String MISSING = "N/A";
+
+    private static final byte[] MESSAGE_ID = "messageID".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] RECIPIENT = "recipient".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] STATUS = "status".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] TIMESTAMP = "timestamp".getBytes(StandardCharsets.US_ASCII);
+
+    // Receives the displayed fields of each record, in file order
+    public interface SummaryHandler {
+        void accept(String messageID, String recipient, String status, String timestamp);
+    }
+
+    // Thrown when a record runs past the end of the current window
+    private static final class WindowExhausted extends RuntimeException {
+        private static final long serialVersionUID = 1L;
+
+        WindowExhausted() {
+            super(null, null, false, false);
+        }
+    }
+
+    private static final WindowExhausted WINDOW_EXHAUSTED = new WindowExhausted();
+
+    private final long windowSize;
+    private MappedByteBuffer buffer;
+    private int pos;
+
+    MappedMessageScanner(long windowSize) {
+        this.windowSize = windowSize;
+    }
+
+    // Scans every record in the file; a missing file has no records
+    public static void scan(Path path, SummaryHandler handler) throws IOException {
+        if (!Files.exists(path)) {
+            return;
+        }
+        new MappedMessageScanner(DEFAULT_WINDOW_SIZE).scanFile(path, handler);
+    }
+
+    // Scans every record of a file that is already open; the channel is left open
+    public static void scan(FileChannel channel, SummaryHandler handler) throws IOException {
+        new MappedMessageScanner(DEFAULT_WINDOW_SIZE).scanChannel(channel, handler);
+    }
+
+    void scanFile(Path path, SummaryHandler handler) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            scanChannel(channel, handler);
+        }
+    }
+
+    private void scanChannel(FileChannel channel, SummaryHandler handler) throws IOException {
+        long fileSize = channel.size();
+        long base = 0;
+        while (base < fileSize) {
+            long length = Math.min(windowSize, fileSize - base);
+            buffer = channel.map(FileChannel.MapMode.READ_ONLY, base, length);
+            boolean lastWindow = base + length == fileSize;
+            pos = 0;
+            int recordStart = 0;
+            try {
+                while (true) {
+                    recordStart = pos;
+                    if (!nextRecord(handler)) {
+                        break;
+                    }
+                }
+                if (lastWindow) {
+                    return;
+                }
+                // Only separators were left at the end of the window
+                base += length;
+            } catch (WindowExhausted e) {
+                if (lastWindow) {
+                    throw new IOException("Truncated record at offset " + (base + recordStart));
+                }
+                if (recordStart == 0) {
+                    throw new IOException("Record at offset " + base + " is larger than the scan window");
+                }
+                // Remap so the partial record starts the next window
+                base += recordStart;
+            }
+        }
+    }
+
+    // Parses one record; returns false when the window ends between records
+    private boolean nextRecord(SummaryHandler handler) throws IOException {
+        int b;
+        while (true) {
+            if (pos >= buffer.limit()) {
+                return false;
+            }
+            b = buffer.get(pos++);
+            if (b == '{') {
+                break;
+            }
+            if (b != '[' && b != ']' && b != ',' && !isWhitespace(b)) {
+                throw new IOException("Unexpected byte between records");
+            }
+        }
+
+        String messageID = MISSING;
+        String recipient = MISSING;
+        String status = MISSING;
+        String timestamp = MISSING;
+
+        b = skipWhitespace();
+        while (b != '}') {
+            if (b != '"') {
+                throw new IOException("Expected a field name");
+            }
+            int keyStart = pos;
+            int keyEnd = skipString();
+            if (skipWhitespace() != ':') {
+                throw new IOException("Expected ':' after field name");
+            }
+            b = skipWhitespace();
+            if (b == '"') {
+                int valueStart = pos;
+                int valueEnd = skipString();
+                if (keyEquals(keyStart, keyEnd, MESSAGE_ID)) {
+                    messageID = decode(valueStart, valueEnd);
+                } else if (keyEquals(keyStart, keyEnd, RECIPIENT)) {
+                    recipient = decode(valueStart, valueEnd);
+                } else if (keyEquals(keyStart, keyEnd, STATUS)) {
+                    status = decode(valueStart, valueEnd);
+                } else if (keyEquals(keyStart, keyEnd, TIMESTAMP)) {
+                    timestamp = decode(valueStart, valueEnd);
+                }
+            } else {
+                // Numbers and literals are never displayed, so just skip them
+                while (b != ',' && b != '}' && !isWhitespace(b)) {
+                    b = nextByte();
+                }
+                pos--;
+            }
+            b = skipWhitespace();
+            if (b == ',') {
+                b = skipWhitespace();
+            } else if (b != '}') {
+                throw new IOException("Expected ',' or '}' in record");
+            }
+        }
+        handler.accept(messageID, recipient, status, timestamp);
+        return true;
+    }
+
+    // Moves past a string whose opening quote was consumed; returns the index of the closing quote
+    private int skipString() {
+        while (true) {
+            int b = nextByte();
+            if (b == '\\') {
+                nextByte();
+            } else if (b == '"') {
+                return pos - 1;
+            }
+        }
+    }
+
+    private boolean keyEquals(int start, int end, byte[] key) {
+        if (end - start != key.length) {
+            return false;
+        }
+        for (int i = 0; i < key.length; i++) {
+            if (buffer.get(start + i) != key[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private String decode(int start, int end) throws IOException {
+        byte[] bytes = new byte[end - start];
+        buffer.get(start, bytes);
+        String raw = new String(bytes, StandardCharsets.UTF_8);
+        if (raw.indexOf('\\') < 0) {
+            return raw;
+        }
+        // Rare path: hand escaped values to the full reader
+        MessageRecord record = new MessageJsonReader(new StringReader("{\"messageID\":\"" + raw + "\"}")).next();
+        return record.getMessageID();
+    }
+
+    private int skipWhitespace() {
+        int b;
+        do {
+            b = nextByte();
+        } while (isWhitespace(b));
+        return b;
+    }
+
+    private int nextByte() {
+        if (pos >= buffer.limit()) {
+            throw WINDOW_EXHAUSTED;
+        }
+        return buffer.get(pos++);
+    }
+
+    private static boolean isWhitespace(int b) {
+        return b == ' ' || b == '\n' || b == '\r' || b == '\t';
+    }
+}
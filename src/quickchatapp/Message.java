@@ -1,8 +1,12 @@
 package quickchatapp;
 
-import java.util.Random;
-import java.util.ArrayList;
+import java.io.IOException;
+import java.io.Writer;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.stream.Stream;
 
 public class Message {
     private String messageID;
@@ -11,30 +15,108 @@ public class Message {
     private String message;
     private String messageHash;
     private String status; // "sent", "stored", "discarded"
-    private static int totalMessagesSent = 0;
-    private static int messageCounter = 0;
+    private volatile CompletableFuture<Void> persisted = CompletableFuture.completedFuture(null);
+    // Shared by every sender thread; the counter hands out unique counts, the adder only sums
+    private static final LongAdder totalMessagesSent = new LongAdder();
+    private static final AtomicInteger messageCounter = new AtomicInteger();
+    // Continued past the highest persisted ID once MessageHistory has loaded the archive
+    private static volatile MessageIdGenerator idGenerator = new StripedMessageIdGenerator(0,
+            StripedMessageIdGenerator.DEFAULT_BLOCK_SIZE);
     
-    // Arrays for storing messages as per requirements
-    private static List<Message> sentMessages = new ArrayList<>();
-    private static List<Message> disregardedMessages = new ArrayList<>();
-    private static List<Message> storedMessages = new ArrayList<>();
-    private static List<String> messageHashes = new ArrayList<>();
-    private static List<String> messageIDs = new ArrayList<>();
+    // Indexed store behind the message arrays required by the assignment
+    private static final MessageStore store = new MessageStore();
 
     public Message() {
         this.messageID = generateMessageID();
-        this.messageCount = ++messageCounter;
+        this.messageCount = messageCounter.incrementAndGet();
         this.status = "pending";
         
         // Add to messageIDs array
-        messageIDs.add(this.messageID);
+        store.registerID(this.messageID);
     }
 
-    // Generate random 10-digit message ID
+    // A message persisted by an earlier run, under its original ID and count
+    private Message(MessageRecord record) {
+        this.messageID = record.getMessageID();
+        this.messageCount = record.getMessageCount();
+        this.recipient = record.getRecipient();
+        this.message = record.getMessage();
+        this.messageHash = record.getMessageHash();
+        this.status = record.getStatus();
+    }
+
+    // Puts a persisted message back into the arrays, as sentMessage did when it was first
+    // sent or stored, without writing it again. A newer record of a message already in the
+    // arrays replaces it, and a tombstone removes it. The arrays are keyed by count, and
+    // earlier versions counted from 1 on every run, so a message whose count is already
+    // taken gets the next free one. Messages created afterwards are counted on from the
+    // highest count restored. Safe to call from several threads for different messages
+    // with different counts; the records of one message must be restored in order.
+    static Message restore(MessageRecord record) {
+        Message existing = store.findByID(record.getMessageID());
+        boolean wasSent = existing != null && store.isSent(existing);
+        if (existing != null) {
+            store.removeAllByHash(existing.getMessageHash());
+        }
+        if (record.isDeleted()) {
+            return null;
+        }
+        Message restored = new Message(record);
+        if (existing != null) {
+            restored.messageCount = existing.messageCount;
+        } else if (store.hasCount(restored.messageCount)) {
+            restored.messageCount = messageCounter.incrementAndGet();
+        }
+        messageCounter.accumulateAndGet(restored.messageCount, Math::max);
+        if (existing == null) {
+            store.registerID(restored.messageID);
+        }
+        store.registerHash(restored.messageHash);
+        if ("sent".equals(restored.status)) {
+            if (!wasSent) {
+                totalMessagesSent.increment();
+            }
+            store.add(MessageStore.Category.SENT, restored);
+        } else if ("stored".equals(restored.status)) {
+            store.add(MessageStore.Category.STORED, restored);
+        }
+        return restored;
+    }
+
+    // A persisted message that is not in the arrays yet; see MessageHistory
+    static Message fromRecord(MessageRecord record) {
+        return new Message(record);
+    }
+
+    // The highest message count handed out so far
+    static int getMessageCounter() {
+        return messageCounter.get();
+    }
+
+    // Counters saved with a snapshot: counting continues after messageCount and the
+    // snapshot's sent messages are added to the total
+    static void restoreCounters(int messageCount, long messagesSent) {
+        messageCounter.accumulateAndGet(messageCount, Math::max);
+        totalMessagesSent.add(messagesSent);
+    }
+
+    // Generate a unique 10-digit message ID
     private String generateMessageID() {
-        Random rand = new Random();
-        long id = 1000000000L + (long)(rand.nextDouble() * 9000000000L);
-        return String.valueOf(id);
+        return String.valueOf(idGenerator.nextId());
+    }
+
+    // Replaces the ID source for messages created from now on
+    public static void setIdGenerator(MessageIdGenerator generator) {
+        idGenerator = generator;
+    }
+
+    static MessageIdGenerator getIdGenerator() {
+        return idGenerator;
+    }
+
+    // New messages get IDs above highestID, the highest one found in the archive
+    static void continueIdsAfter(long highestID) {
+        idGenerator.continueAfter(highestID);
     }
 
     public boolean checkMessageID() {
@@ -42,14 +124,13 @@ public class Message {
     }
 
     public int checkRecipientCell(String recipient) {
-        // Check if number starts with international code and has proper length
-        if (recipient.startsWith("+") && recipient.length() <= 13 && recipient.length() >= 11) {
-            String numberPart = recipient.substring(1);
-            if (numberPart.matches("\\d+")) {
-                return 1; // Success
-            }
-        }
-        return 0; // Failure
+        return isValidRecipient(recipient) ? 1 : 0; // Success : Failure
+    }
+
+    // Same rule as checkRecipientCell, for callers that have no Message yet
+    public static boolean isValidRecipient(String recipient) {
+        // International code and 10 to 12 digits
+        return Validators.isValidRecipient(recipient);
     }
 
     public String createMessageHash() {
@@ -63,7 +144,7 @@ public class Message {
         String hash = firstTwo + ":" + messageCount + ":" + firstWord + lastWord;
         
         // Add to messageHashes array
-        messageHashes.add(hash);
+        store.registerHash(hash);
         
         return hash;
     }
@@ -71,24 +152,24 @@ public class Message {
     public String sentMessage(int choice) {
         switch (choice) {
             case 1: // Send Message
-                totalMessagesSent++;
+                totalMessagesSent.increment();
                 this.status = "sent";
                 // Add to sentMessages array
-                sentMessages.add(this);
-                // Store in JSON
-                JSONHandler.storeMessage(this);
+                store.add(MessageStore.Category.SENT, this);
+                // Store in JSON (queued when batching is enabled)
+                persisted = JSONHandler.storeMessageAsync(this);
                 return "Message successfully sent.";
             case 2: // Disregard Message
                 this.status = "discarded";
                 // Add to disregardedMessages array
-                disregardedMessages.add(this);
+                store.add(MessageStore.Category.DISREGARDED, this);
                 return "Message disregarded.";
             case 3: // Store Message
                 this.status = "stored";
                 // Add to storedMessages array
-                storedMessages.add(this);
-                // Store in JSON
-                JSONHandler.storeMessage(this);
+                store.add(MessageStore.Category.STORED, this);
+                // Store in JSON (queued when batching is enabled)
+                persisted = JSONHandler.storeMessageAsync(this);
                 return "Message successfully stored.";
             default:
                 return "Invalid option.";
@@ -104,14 +185,14 @@ public class Message {
     }
 
     public static int returnTotalMessages() {
-        return totalMessagesSent;
+        return totalMessagesSent.intValue();
     }
     
     // === ARRAY OPERATIONS AS PER REQUIREMENTS ===
     
     // 2a. Display sender and recipient of all sent messages
     public static String displaySentMessagesSendersRecipients() {
-        if (sentMessages.isEmpty()) {
+        if (store.count(MessageStore.Category.SENT) == 0) {
             return "No sent messages found.";
         }
         
@@ -119,27 +200,26 @@ public class Message {
         sb.append("Sent Messages - Senders & Recipients:\n");
         sb.append("=====================================\n");
         
-        for (Message msg : sentMessages) {
-            sb.append("To: ").append(msg.getRecipient())
-              .append(" | Message: ").append(msg.getMessage())
-              .append("\n");
+        for (Message msg : store.view(MessageStore.Category.SENT)) {
+            appendSenderRecipient(sb, msg);
         }
         return sb.toString();
     }
     
+    private static void appendSenderRecipient(StringBuilder sb, Message msg) {
+        sb.append("To: ").append(msg.getRecipient())
+          .append(" | Message: ").append(msg.getMessage())
+          .append("\n");
+    }
+    
     // 2b. Display the longest sent message
     public static String displayLongestSentMessage() {
-        if (sentMessages.isEmpty()) {
+        // Kept up to date by the store on every send and delete, so there is no scan
+        Message longest = store.statistics().longestSent();
+        if (longest == null) {
             return "No sent messages found.";
         }
         
-        Message longest = sentMessages.get(0);
-        for (Message msg : sentMessages) {
-            if (msg.getMessage().length() > longest.getMessage().length()) {
-                longest = msg;
-            }
-        }
-        
         return "Longest Sent Message:\n" +
                "Message: " + longest.getMessage() + "\n" +
                "Length: " + longest.getMessage().length() + " characters\n" +
@@ -148,23 +228,21 @@ public class Message {
     
     // 2c. Search for message ID and display recipient and message
     public static String searchMessageByID(String searchID) {
-        for (Message msg : sentMessages) {
-            if (msg.getMessageID().equals(searchID)) {
-                return "Message Found:\n" +
-                       "Message ID: " + msg.getMessageID() + "\n" +
-                       "Recipient: " + msg.getRecipient() + "\n" +
-                       "Message: " + msg.getMessage();
-            }
+        Message msg = store.findByID(searchID);
+        if (msg != null) {
+            return (store.isSent(msg) ? "Message Found:\n" : "Message Found (Stored):\n") +
+                   "Message ID: " + msg.getMessageID() + "\n" +
+                   "Recipient: " + msg.getRecipient() + "\n" +
+                   "Message: " + msg.getMessage();
         }
         
-        // Also check stored messages
-        for (Message msg : storedMessages) {
-            if (msg.getMessageID().equals(searchID)) {
-                return "Message Found (Stored):\n" +
-                       "Message ID: " + msg.getMessageID() + "\n" +
-                       "Recipient: " + msg.getRecipient() + "\n" +
-                       "Message: " + msg.getMessage();
-            }
+        // Fall back to messages persisted by earlier runs
+        MessageRecord archived = JSONHandler.findMessageByID(searchID);
+        if (archived != null) {
+            return "Message Found (Archive):\n" +
+                   "Message ID: " + archived.getMessageID() + "\n" +
+                   "Recipient: " + archived.getRecipient() + "\n" +
+                   "Message: " + archived.getMessage();
         }
         
         return "No message found with ID: " + searchID;
@@ -172,21 +250,8 @@ public class Message {
     
     // 2d. Search for all messages sent to a particular recipient
     public static String searchMessagesByRecipient(String recipient) {
-        List<Message> foundMessages = new ArrayList<>();
-        
-        // Check sent messages
-        for (Message msg : sentMessages) {
-            if (msg.getRecipient().equals(recipient)) {
-                foundMessages.add(msg);
-            }
-        }
-        
-        // Check stored messages
-        for (Message msg : storedMessages) {
-            if (msg.getRecipient().equals(recipient)) {
-                foundMessages.add(msg);
-            }
-        }
+        // Sent messages first, then stored ones
+        List<Message> foundMessages = store.findByRecipient(recipient);
         
         if (foundMessages.isEmpty()) {
             return "No messages found for recipient: " + recipient;
@@ -197,33 +262,28 @@ public class Message {
         sb.append("==========================\n");
         
         for (Message msg : foundMessages) {
-            sb.append("Message: ").append(msg.getMessage())
-              .append(" | Status: ").append(msg.getStatus())
-              .append(" | ID: ").append(msg.getMessageID())
-              .append("\n");
+            appendRecipientMatch(sb, msg);
         }
         
         return sb.toString();
     }
     
+    private static void appendRecipientMatch(StringBuilder sb, Message msg) {
+        sb.append("Message: ").append(msg.getMessage())
+          .append(" | Status: ").append(msg.getStatus())
+          .append(" | ID: ").append(msg.getMessageID())
+          .append("\n");
+    }
+    
     // 2e. Delete a message using message hash
     public static String deleteMessageByHash(String hash) {
-        // Search in sent messages
-        for (int i = 0; i < sentMessages.size(); i++) {
-            if (sentMessages.get(i).getMessageHash().equals(hash)) {
-                Message removed = sentMessages.remove(i);
-                messageHashes.remove(hash);
-                return "Message successfully deleted: " + removed.getMessage();
-            }
-        }
-        
-        // Search in stored messages
-        for (int i = 0; i < storedMessages.size(); i++) {
-            if (storedMessages.get(i).getMessageHash().equals(hash)) {
-                Message removed = storedMessages.remove(i);
-                messageHashes.remove(hash);
-                return "Message successfully deleted: " + removed.getMessage();
-            }
+        // Removed from sent messages and, if it was stored before it was sent, from stored
+        // messages too: the tombstone deletes the message as a whole on the next start
+        Message removed = store.removeAllByHash(hash);
+        if (removed != null) {
+            // Tombstone in the archive so the deletion survives a restart
+            removed.persisted = JSONHandler.deleteMessageAsync(removed);
+            return "Message successfully deleted: " + removed.getMessage();
         }
         
         return "No message found with hash: " + hash;
@@ -231,7 +291,7 @@ public class Message {
     
     // 2f. Display report with full details of all sent messages
     public static String displayFullReport() {
-        if (sentMessages.isEmpty()) {
+        if (store.count(MessageStore.Category.SENT) == 0) {
             return "No sent messages to display in report.";
         }
         
@@ -239,75 +299,137 @@ public class Message {
         sb.append("FULL MESSAGE REPORT\n");
         sb.append("===================\n\n");
         
-        for (Message msg : sentMessages) {
-            sb.append("Message ID: ").append(msg.getMessageID()).append("\n");
-            sb.append("Message Hash: ").append(msg.getMessageHash()).append("\n");
-            sb.append("Recipient: ").append(msg.getRecipient()).append("\n");
-            sb.append("Message: ").append(msg.getMessage()).append("\n");
-            sb.append("Status: ").append(msg.getStatus()).append("\n");
-            sb.append("----------------------------------------\n");
-        }
+        // Large reports are formatted in chunks on a ForkJoinPool, in the same order
+        List<Message> sent = store.list(MessageStore.Category.SENT);
+        ParallelReport.formatList(sb, sent, Message::appendReportEntry);
         
-        sb.append("\nTotal Sent Messages: ").append(sentMessages.size());
+        sb.append("\nTotal Sent Messages: ").append(sent.size());
         return sb.toString();
     }
     
+    private static void appendReportEntry(StringBuilder sb, Message msg) {
+        sb.append("Message ID: ").append(msg.getMessageID()).append("\n");
+        sb.append("Message Hash: ").append(msg.getMessageHash()).append("\n");
+        sb.append("Recipient: ").append(msg.getRecipient()).append("\n");
+        sb.append("Message: ").append(msg.getMessage()).append("\n");
+        sb.append("Status: ").append(msg.getStatus()).append("\n");
+        sb.append("----------------------------------------\n");
+    }
+    
+    // === STREAMING AND PAGED VARIANTS ===
+    // The reports above build one String; these walk the messages lazily so a large
+    // history can be shown a page at a time or written out in bounded memory.
+    
+    // Up to limit sent messages from position offset, in the order they were created
+    public static List<Message> getSentMessagesPage(int offset, int limit) {
+        return store.page(MessageStore.Category.SENT, offset, limit);
+    }
+    
+    public static Stream<Message> streamSentMessages() {
+        return store.stream(MessageStore.Category.SENT);
+    }
+    
+    // Same content as displaySentMessagesSendersRecipients, written message by message
+    public static void writeSentMessagesSendersRecipients(Writer out) throws IOException {
+        if (store.count(MessageStore.Category.SENT) == 0) {
+            out.write("No sent messages found.");
+            return;
+        }
+        out.write("Sent Messages - Senders & Recipients:\n");
+        out.write("=====================================\n");
+        StringBuilder sb = new StringBuilder();
+        for (Message msg : store.view(MessageStore.Category.SENT)) {
+            sb.setLength(0);
+            appendSenderRecipient(sb, msg);
+            out.append(sb);
+        }
+    }
+    
+    // Same content as searchMessagesByRecipient, written message by message
+    public static void writeMessagesByRecipient(String recipient, Writer out) throws IOException {
+        List<Message> foundMessages = store.findByRecipient(recipient);
+        if (foundMessages.isEmpty()) {
+            out.write("No messages found for recipient: " + recipient);
+            return;
+        }
+        out.write("Messages for " + recipient + ":\n");
+        out.write("==========================\n");
+        StringBuilder sb = new StringBuilder();
+        for (Message msg : foundMessages) {
+            sb.setLength(0);
+            appendRecipientMatch(sb, msg);
+            out.append(sb);
+        }
+    }
+    
+    // Same content as displayFullReport, written message by message
+    public static void writeFullReport(Writer out) throws IOException {
+        if (store.count(MessageStore.Category.SENT) == 0) {
+            out.write("No sent messages to display in report.");
+            return;
+        }
+        out.write("FULL MESSAGE REPORT\n");
+        out.write("===================\n\n");
+        StringBuilder sb = new StringBuilder();
+        int written = 0;
+        for (Message msg : store.view(MessageStore.Category.SENT)) {
+            sb.setLength(0);
+            appendReportEntry(sb, msg);
+            out.append(sb);
+            written++;
+        }
+        out.write("\nTotal Sent Messages: " + written);
+    }
+    
     // Method to populate arrays with test data
     public static void populateWithTestData() {
         // Clear existing data
-        sentMessages.clear();
-        disregardedMessages.clear();
-        storedMessages.clear();
-        messageHashes.clear();
-        messageIDs.clear();
+        store.clear();
         
         // Test Data Message 1
         Message msg1 = new Message();
         msg1.setRecipient("+2783457896");
         msg1.setMessage("Did you get the cake?");
         msg1.setStatus("sent");
-        sentMessages.add(msg1);
-        messageHashes.add(msg1.getMessageHash());
+        store.add(MessageStore.Category.SENT, msg1);
         
         // Test Data Message 2
         Message msg2 = new Message();
         msg2.setRecipient("+27838884567");
         msg2.setMessage("Where are you? You are late! I have asked you to be on time.");
         msg2.setStatus("stored");
-        storedMessages.add(msg2);
-        messageHashes.add(msg2.getMessageHash());
+        store.add(MessageStore.Category.STORED, msg2);
         
         // Test Data Message 3
         Message msg3 = new Message();
         msg3.setRecipient("+27834484567");
         msg3.setMessage("Yohoooo, I am at your gate.");
         msg3.setStatus("disregarded");
-        disregardedMessages.add(msg3);
-        messageHashes.add(msg3.getMessageHash());
+        store.add(MessageStore.Category.DISREGARDED, msg3);
         
         // Test Data Message 4
         Message msg4 = new Message();
         msg4.setRecipient("0838884567");
         msg4.setMessage("It is dinner time!");
         msg4.setStatus("sent");
-        sentMessages.add(msg4);
-        messageHashes.add(msg4.getMessageHash());
+        store.add(MessageStore.Category.SENT, msg4);
         
         // Test Data Message 5
         Message msg5 = new Message();
         msg5.setRecipient("+2783884567");
         msg5.setMessage("Ok, I am leaving without you.");
         msg5.setStatus("stored");
-        storedMessages.add(msg5);
-        messageHashes.add(msg5.getMessageHash());
+        store.add(MessageStore.Category.STORED, msg5);
     }
     
-    // Getters for arrays (for testing)
-    public static List<Message> getSentMessages() { return sentMessages; }
-    public static List<Message> getDisregardedMessages() { return disregardedMessages; }
-    public static List<Message> getStoredMessages() { return storedMessages; }
-    public static List<String> getMessageHashes() { return messageHashes; }
-    public static List<String> getMessageIDs() { return messageIDs; }
+    // Getters for arrays (for testing); these return snapshots of the store
+    public static List<Message> getSentMessages() { return store.list(MessageStore.Category.SENT); }
+    public static List<Message> getDisregardedMessages() { return store.list(MessageStore.Category.DISREGARDED); }
+    public static List<Message> getStoredMessages() { return store.list(MessageStore.Category.STORED); }
+    public static List<String> getMessageHashes() { return store.hashes(); }
+    public static List<String> getMessageIDs() { return store.ids(); }
+    public static MessageStore getStore() { return store; }
+    public static MessageStatistics getStatistics() { return store.statistics(); }
 
     // Getters and Setters
     public String getMessageID() { return messageID; }
@@ -321,5 +443,7 @@ public class Message {
     }
     public String getMessageHash() { return messageHash; }
     public String getStatus() { return status; }
+    // Completes when the last send/store of this message is durable on disk
+    public CompletableFuture<Void> whenPersisted() { return persisted; }
     public void setStatus(String status) { this.status = status; }
 }
@@ -0,0 +1,79 @@
+package quickchatapp;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+
+// Command-line tool to move a message archive between the JSON and binary formats:
+//   java -cp QuickChatApp.jar quickchatapp.MessageArchiveConverter import messages.json messages.bin
+//   java -cp QuickChatApp.jar quickchatapp.MessageArchiveConverter export messages.bin messages.json
+// import accepts both the messages.json array and the messages.jsonl log.
+public class MessageArchiveConverter {
+
+    public static void main(String[] args) {
+        if (args.length != 3 || !(args[0].equals("import") || args[0].equals("export"))) {
+            System.err.println("Usage: MessageArchiveConverter import <messages.json|messages.jsonl> <messages.bin>");
+            System.err.println("       MessageArchiveConverter export <messages.bin> <messages.json>");
+            System.exit(2);
+        }
+        try {
+            Path source = Paths.get(args[1]);
+            Path target = Paths.get(args[2]);
+            int converted = args[0].equals("import") ? jsonToBinary(source, target) : binaryToJson(source, target);
+            System.out.println("Converted " + converted + " messages from " + source + " to " + target);
+        } catch (IOException e) {
+            System.err.println("Error converting messages: " + e.getMessage());
+            System.exit(1);
+        }
+    }
+
+    // Writes every record of a JSON archive to a new binary file
+    public static int jsonToBinary(Path json, Path binary) throws IOException {
+        if (!Files.exists(json)) {
+            throw new IOException("File not found: " + json);
+        }
+        Files.deleteIfExists(binary);
+        int count = 0;
+        try (MessageJsonReader reader = new MessageJsonReader(Files.newBufferedReader(json, StandardCharsets.UTF_8));
+             BinaryMessageLog log = new BinaryMessageLog(binary)) {
+            MessageRecord record;
+            while ((record = reader.next()) != null) {
+                log.append(record);
+                count++;
+            }
+            log.sync();
+        }
+        return count;
+    }
+
+    // Writes every record of a binary file as a messages.json array
+    public static int binaryToJson(Path binary, Path json) throws IOException {
+        if (!Files.exists(binary)) {
+            throw new IOException("File not found: " + binary);
+        }
+        int[] count = {0};
+        try (BinaryMessageLog log = new BinaryMessageLog(binary);
+             Writer out = Files.newBufferedWriter(json, StandardCharsets.UTF_8)) {
+            out.write("[\n");
+            log.forEachRecord(record -> {
+                try {
+                    if (count[0] > 0) {
+                        out.write(",\n");
+                    }
+                    out.write(JSONHandler.toArrayEntry(record));
+                    count[0]++;
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+            out.write(count[0] > 0 ? "\n]" : "]");
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+        return count[0];
+    }
+}
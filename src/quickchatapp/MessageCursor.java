@@ -0,0 +1,187 @@
+package quickchatapp;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+
+// Forward-only reader over stored messages that hands them out a page at a time.
+// Only the current page and one read buffer are held in memory, so callers can walk
+// an archive of any size. Records appended while the cursor is open may or may not
+// be seen; each page is in storage order.
+public abstract class MessageCursor implements Closeable {
+
+    // Up to limit further records; an empty list once the archive is exhausted
+    public abstract List<MessageRecord> next(int limit) throws IOException;
+
+    // Skips up to count records; returns how many were skipped
+    public long skip(long count) throws IOException {
+        long skipped = 0;
+        while (skipped < count) {
+            List<MessageRecord> page = next((int) Math.min(count - skipped, 1024));
+            if (page.isEmpty()) {
+                break;
+            }
+            skipped += page.size();
+        }
+        return skipped;
+    }
+
+    // JSON array or JSON Lines files, read one after another
+    public static MessageCursor overJsonFiles(List<Path> files) {
+        return new JsonCursor(files);
+    }
+
+    // An open messages.json (or null if there is none) followed by records that are not
+    // in it yet; the cursor closes the channel
+    public static MessageCursor overJsonArray(FileChannel json, List<MessageRecord> pending) {
+        return new ArrayCursor(json, pending);
+    }
+
+    // A binary log written by BinaryMessageLog
+    public static MessageCursor overBinaryFile(Path file) throws IOException {
+        return new BinaryCursor(file);
+    }
+
+    private static final class JsonCursor extends MessageCursor {
+        private final Iterator<Path> files;
+        private MessageJsonReader reader;
+
+        JsonCursor(List<Path> files) {
+            this.files = new ArrayList<>(files).iterator();
+        }
+
+        @Override
+        public List<MessageRecord> next(int limit) throws IOException {
+            List<MessageRecord> page = new ArrayList<>(Math.min(limit, 1024));
+            while (page.size() < limit) {
+                if (reader == null) {
+                    if (!files.hasNext()) {
+                        break;
+                    }
+                    Path file = files.next();
+                    if (Files.exists(file)) {
+                        reader = new MessageJsonReader(Files.newBufferedReader(file, StandardCharsets.UTF_8));
+                    }
+                    continue;
+                }
+                MessageRecord record = reader.next();
+                if (record == null) {
+                    reader.close();
+                    reader = null;
+                } else {
+                    page.add(record);
+                }
+            }
+            return page;
+        }
+
+        @Override
+        public void close() throws IOException {
+            if (reader != null) {
+                reader.close();
+                reader = null;
+            }
+        }
+    }
+
+    private static final class ArrayCursor extends MessageCursor {
+        private MessageJsonReader reader;
+        private final Iterator<MessageRecord> pending;
+
+        ArrayCursor(FileChannel json, List<MessageRecord> pending) {
+            this.reader = json == null ? null : new MessageJsonReader(Channels.newReader(json, StandardCharsets.UTF_8));
+            this.pending = pending.iterator();
+        }
+
+        @Override
+        public List<MessageRecord> next(int limit) throws IOException {
+            List<MessageRecord> page = new ArrayList<>(Math.min(limit, 1024));
+            while (page.size() < limit) {
+                if (reader != null) {
+                    MessageRecord record = reader.next();
+                    if (record != null) {
+                        page.add(record);
+                        continue;
+                    }
+                    reader.close();
+                    reader = null;
+                }
+                if (!pending.hasNext()) {
+                    break;
+                }
+                page.add(pending.next());
+            }
+            return page;
+        }
+
+        @Override
+        public void close() throws IOException {
+            if (reader != null) {
+                reader.close();
+                reader = null;
+            }
+        }
+    }
+
+    private static final class BinaryCursor extends MessageCursor {
+        private final FileChannel channel;
+        private ByteBuffer buffer = ByteBuffer.allocate(64 * 1024).flip();
+        private long filePosition;
+
+        BinaryCursor(Path file) throws IOException {
+            this.channel = Files.exists(file) ? FileChannel.open(file, StandardOpenOption.READ) : null;
+        }
+
+        @Override
+        public List<MessageRecord> next(int limit) throws IOException {
+            List<MessageRecord> page = new ArrayList<>(Math.min(limit, 1024));
+            while (channel != null && page.size() < limit) {
+                MessageRecord record = BinaryMessageCodec.decode(buffer);
+                if (record != null) {
+                    page.add(record);
+                    continue;
+                }
+                if (!fill()) {
+                    // A record still being appended is left for a later page
+                    break;
+                }
+            }
+            return page;
+        }
+
+        // Reads more of the file after the unread bytes; false at the end of the file
+        private boolean fill() throws IOException {
+            buffer.compact();
+            if (!buffer.hasRemaining()) {
+                // One record is bigger than the buffer: grow it
+                ByteBuffer larger = ByteBuffer.allocate(buffer.capacity() * 2);
+                buffer.flip();
+                larger.put(buffer);
+                buffer = larger;
+            }
+            int read = channel.read(buffer, filePosition);
+            buffer.flip();
+            if (read <= 0) {
+                return false;
+            }
+            filePosition += read;
+            return true;
+        }
+
+        @Override
+        public void close() throws IOException {
+            if (channel != null) {
+                channel.close();
+            }
+        }
+    }
+}
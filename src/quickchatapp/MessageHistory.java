@@ -0,0 +1,418 @@
+package quickchatapp;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.zip.CRC32C;
+
+// Loads the messages persisted by earlier runs into the in-memory store at startup, so
+// searches, reports and deletes see them as well as the messages sent since.
+//
+// Parsing the whole archive grows with the history, so the store is also saved now and
+// then to messages.snapshot, a binary image of every message in it together with
+// Message's counters and the archive position it reflects. A restart loads the image and
+// replays only the records written after that position. The snapshot is used only if the
+// archive still starts with what it saw (same files, each at least as long as recorded,
+// and the same bytes just before each recorded length); otherwise, e.g. after a
+// compaction, the archive is parsed in full. The layout:
+//   4 bytes  "QCS4"
+//   UTF      storage mode
+//   4 bytes  message counter, then 8 bytes messages sent and 8 bytes the highest
+//            message ID in use
+//   8 bytes  sequence number of the newest write-ahead log record (JSON_ARRAY only)
+//   4 bytes  file count, then per file: UTF name, 8 bytes length, 4 bytes CRC32C of the
+//            up to 64 KB before that length
+//   4 bytes  entry count, then per entry: 1 byte category and a BinaryMessageCodec record;
+//            a message in both sent and stored messages has an entry for each
+public final class MessageHistory {
+    static final String SNAPSHOT_FILE_NAME = "messages.snapshot";
+    private static final int MAGIC = 0x51435334;
+    private static final int CHECK_BYTES = 64 * 1024;
+
+    // What one load did
+    public static final class Result {
+        private final int loaded;
+        private final int replayed;
+        private final int staleRecords;
+        private final boolean fromSnapshot;
+        private final long elapsedNanos;
+
+        Result(int loaded, int replayed, int staleRecords, boolean fromSnapshot, long elapsedNanos) {
+            this.loaded = loaded;
+            this.replayed = replayed;
+            this.staleRecords = staleRecords;
+            this.fromSnapshot = fromSnapshot;
+            this.elapsedNanos = elapsedNanos;
+        }
+
+        // Sent and stored messages in the store once loading finished
+        public int getLoaded() { return loaded; }
+        // Archive records applied on top of the snapshot
+        public int getReplayed() { return replayed; }
+        // Records read that a compaction would drop: superseded ones and deletions. After
+        // a snapshot only the replayed records are counted.
+        public int getStaleRecords() { return staleRecords; }
+        public boolean isFromSnapshot() { return fromSnapshot; }
+        public long getElapsedNanos() { return elapsedNanos; }
+
+        @Override
+        public String toString() {
+            String source = fromSnapshot
+                    ? SNAPSHOT_FILE_NAME + " and " + replayed + " newer records"
+                    : "the archive";
+            return String.format(Locale.ROOT, "Loaded %d messages from %s in %.0f ms",
+                    loaded, source, elapsedNanos / 1e6);
+        }
+    }
+
+    private static final ReentrantLock snapshotLock = new ReentrantLock();
+    private static ScheduledExecutorService scheduler;
+    private static ScheduledFuture<?> periodic;
+    // Archive position the last snapshot was taken at; no new snapshot until it changes
+    private static Map<Path, Long> lastSnapshotLengths;
+    private static long lastSnapshotWalSequence;
+    // Highest message ID found by the last load; new IDs are handed out above it
+    private static volatile long highestLoadedID;
+
+    private MessageHistory() {
+    }
+
+    // Loads the archive of the current storage mode and data directory into Message's store
+    public static Result load() throws IOException {
+        long start = System.nanoTime();
+        Map<Path, Long> lengths = JSONHandler.archiveLengths();
+        Tail tail = readSnapshot(snapshotFile(), lengths);
+        if (tail != null) {
+            int before = storedMessages();
+            int[] replayed = {0};
+            // In archive order, so a later record of a message replaces an earlier one
+            JSONHandler.forEachRecordAfter(tail.offsets, tail.walSequence, record -> {
+                Message.restore(record);
+                seenID(record);
+                replayed[0]++;
+            });
+            Message.continueIdsAfter(highestLoadedID);
+            int loaded = storedMessages();
+            // Replayed records that added no message replaced or deleted one
+            int stale = Math.max(0, replayed[0] - (loaded - before));
+            return new Result(loaded, replayed[0], stale, true, System.nanoTime() - start);
+        }
+        List<MessageRecord> records = JSONHandler.readArchive();
+        for (MessageRecord record : records) {
+            seenID(record);
+        }
+        Message.continueIdsAfter(highestLoadedID);
+        List<MessageRecord> live = uniqueCounts(newestLive(records));
+        // The store takes adds from many threads; no two messages share a count by now
+        live.parallelStream().forEach(Message::restore);
+        return new Result(storedMessages(), 0, records.size() - live.size(), false, System.nanoTime() - start);
+    }
+
+    // Deleted messages count too: their records stay in the archive until a compaction
+    private static void seenID(MessageRecord record) {
+        long id = JSONHandler.parseMessageID(record.getMessageID());
+        if (id > highestLoadedID) {
+            highestLoadedID = id;
+        }
+    }
+
+    private static int storedMessages() {
+        MessageStore store = Message.getStore();
+        return store.count(MessageStore.Category.SENT) + store.count(MessageStore.Category.STORED);
+    }
+
+    private static Path snapshotFile() {
+        return JSONHandler.getDataDirectory().resolve(SNAPSHOT_FILE_NAME);
+    }
+
+    // Re-inserting moves a message to the position of its newest record
+    private static List<MessageRecord> newestLive(List<MessageRecord> records) {
+        Map<String, MessageRecord> newest = new LinkedHashMap<>();
+        for (MessageRecord record : records) {
+            newest.remove(record.getMessageID());
+            newest.put(record.getMessageID(), record);
+        }
+        List<MessageRecord> live = new ArrayList<>(newest.size());
+        for (MessageRecord record : newest.values()) {
+            if (!record.isDeleted()) {
+                live.add(record);
+            }
+        }
+        return live;
+    }
+
+    // Archives written before counts carried on across runs repeat them. The store is
+    // keyed by count, so repeats (and counts already in the store) are given new counts
+    // after the highest one here; the first message with a count keeps it.
+    private static List<MessageRecord> uniqueCounts(List<MessageRecord> records) {
+        MessageStore store = Message.getStore();
+        int next = Message.getMessageCounter();
+        for (MessageRecord record : records) {
+            next = Math.max(next, record.getMessageCount());
+        }
+        Set<Integer> used = new HashSet<>();
+        List<MessageRecord> unique = new ArrayList<>(records.size());
+        for (MessageRecord record : records) {
+            if (used.add(record.getMessageCount()) && !store.hasCount(record.getMessageCount())) {
+                unique.add(record);
+            } else {
+                unique.add(record.withMessageCount(++next));
+            }
+        }
+        return unique;
+    }
+
+    // Saves the store, unless the archive has not changed since the last snapshot.
+    // Returns true if a snapshot was written.
+    public static boolean snapshot() throws IOException {
+        snapshotLock.lock();
+        try {
+            // The position is taken before the store is read. Every record up to it was
+            // applied to the store before it was written, so the image has it; changes
+            // made while the store is read may be in both and are replayed again, which
+            // restore tolerates.
+            Map<Path, Long> lengths = JSONHandler.archiveLengths();
+            long walSequence = JSONHandler.walSequence();
+            if (lengths.equals(lastSnapshotLengths) && walSequence == lastSnapshotWalSequence) {
+                return false;
+            }
+            writeSnapshot(snapshotFile(), lengths, walSequence);
+            lastSnapshotLengths = lengths;
+            lastSnapshotWalSequence = walSequence;
+            return true;
+        } finally {
+            snapshotLock.unlock();
+        }
+    }
+
+    // Takes a snapshot now and then every intervalSeconds on a background thread
+    public static void startPeriodicSnapshots(long intervalSeconds) {
+        snapshotLock.lock();
+        try {
+            stopPeriodicSnapshots();
+            if (scheduler == null) {
+                scheduler = Executors.newSingleThreadScheduledExecutor(task -> {
+                    Thread thread = new Thread(task, "message-snapshot");
+                    thread.setDaemon(true);
+                    return thread;
+                });
+            }
+            periodic = scheduler.scheduleWithFixedDelay(() -> {
+                try {
+                    snapshot();
+                } catch (IOException | RuntimeException e) {
+                    System.err.println("Error writing " + SNAPSHOT_FILE_NAME + ": " + e.getMessage());
+                }
+            }, 0, intervalSeconds, TimeUnit.SECONDS);
+        } finally {
+            snapshotLock.unlock();
+        }
+    }
+
+    public static void stopPeriodicSnapshots() {
+        snapshotLock.lock();
+        try {
+            if (periodic != null) {
+                periodic.cancel(false);
+                periodic = null;
+            }
+        } finally {
+            snapshotLock.unlock();
+        }
+    }
+
+    // Written next to the archive, forced to the device and swapped in, so a crash never
+    // leaves half a snapshot
+    private static void writeSnapshot(Path snapshot, Map<Path, Long> lengths, long walSequence) throws IOException {
+        Path tmp = snapshot.resolveSibling(SNAPSHOT_FILE_NAME + ".tmp");
+        MessageStore store = Message.getStore();
+        List<Message> sent = store.list(MessageStore.Category.SENT);
+        List<Message> stored = store.list(MessageStore.Category.STORED);
+        List<Message> disregarded = store.list(MessageStore.Category.DISREGARDED);
+        // Read after the messages, so no message has a count above it
+        int messageCounter = Message.getMessageCounter();
+        long highestID = highestLoadedID;
+        for (List<Message> messages : List.of(sent, stored, disregarded)) {
+            for (Message message : messages) {
+                highestID = Math.max(highestID, JSONHandler.parseMessageID(message.getMessageID()));
+            }
+        }
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(
+                Files.newOutputStream(tmp), 64 * 1024))) {
+            out.writeInt(MAGIC);
+            out.writeUTF(JSONHandler.getStorageMode().name());
+            out.writeInt(messageCounter);
+            out.writeLong(Message.returnTotalMessages());
+            out.writeLong(highestID);
+            out.writeLong(walSequence);
+            out.writeInt(lengths.size());
+            for (Map.Entry<Path, Long> file : lengths.entrySet()) {
+                out.writeUTF(file.getKey().getFileName().toString());
+                out.writeLong(file.getValue());
+                out.writeInt(checkBytes(file.getKey(), file.getValue()));
+            }
+            out.writeInt(sent.size() + stored.size() + disregarded.size());
+            writeEntries(out, MessageStore.Category.SENT, sent);
+            writeEntries(out, MessageStore.Category.STORED, stored);
+            writeEntries(out, MessageStore.Category.DISREGARDED, disregarded);
+        }
+        JSONHandler.forceFile(tmp);
+        Files.move(tmp, snapshot, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    private static void writeEntries(DataOutputStream out, MessageStore.Category category, List<Message> messages)
+            throws IOException {
+        for (Message message : messages) {
+            out.writeByte(category.ordinal());
+            out.write(BinaryMessageCodec.encode(MessageRecord.of(message, "")));
+        }
+    }
+
+    // CRC32C of the up to CHECK_BYTES bytes before length
+    private static int checkBytes(Path file, long length) throws IOException {
+        CRC32C crc = new CRC32C();
+        if (length > 0 && Files.exists(file)) {
+            try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+                long from = Math.max(0, length - CHECK_BYTES);
+                ByteBuffer buffer = ByteBuffer.allocate((int) (length - from));
+                while (buffer.hasRemaining() && channel.read(buffer, from + buffer.position()) > 0) {
+                }
+                buffer.flip();
+                crc.update(buffer);
+            }
+        }
+        return (int) crc.getValue();
+    }
+
+    // Where the archive continues after a snapshot: each file to replay and the offset to
+    // replay it from, and in JSON_ARRAY mode the last write-ahead log record it has
+    private static final class Tail {
+        final Map<Path, Long> offsets = new LinkedHashMap<>();
+        long walSequence;
+    }
+
+    // Restores the snapshot into the store and returns where the archive continues after
+    // it. Returns null, leaving the store alone, if there is no usable snapshot for the
+    // archive as it is now.
+    private static Tail readSnapshot(Path snapshot, Map<Path, Long> lengths) {
+        if (!Files.exists(snapshot)) {
+            return null;
+        }
+        Tail tail = new Tail();
+        List<Path> files = new ArrayList<>(lengths.keySet());
+        try (FileChannel channel = FileChannel.open(snapshot, StandardOpenOption.READ)) {
+            ByteBuffer in = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            if (in.getInt() != MAGIC || !JSONHandler.getStorageMode().name().equals(getUTF(in))) {
+                return null;
+            }
+            int messageCounter = in.getInt();
+            long messagesSent = in.getLong();
+            long highestID = in.getLong();
+            tail.walSequence = in.getLong();
+            if (tail.walSequence > JSONHandler.walSequence()) {
+                // The log was numbered afresh, so its records cannot be told apart
+                return null;
+            }
+            int fileCount = in.getInt();
+            if (fileCount < 0 || fileCount > files.size()) {
+                return null;
+            }
+            for (int i = 0; i < fileCount; i++) {
+                String name = getUTF(in);
+                long length = in.getLong();
+                int check = in.getInt();
+                Path file = files.get(i);
+                if (!file.getFileName().toString().equals(name) || lengths.get(file) < length
+                        || checkBytes(file, length) != check) {
+                    return null;
+                }
+                if (lengths.get(file) > length) {
+                    tail.offsets.put(file, length);
+                }
+            }
+            // Files started after the snapshot, e.g. new segments, are replayed whole
+            for (int i = fileCount; i < files.size(); i++) {
+                tail.offsets.put(files.get(i), 0L);
+            }
+            int count = in.getInt();
+            if (count < 0 || count > in.remaining()) {
+                throw new IOException("Bad entry count " + count);
+            }
+            MessageStore.Category[] categories = MessageStore.Category.values();
+            byte[] entryCategories = new byte[count];
+            List<MessageRecord> records = new ArrayList<>(count);
+            for (int i = 0; i < count; i++) {
+                entryCategories[i] = in.get();
+                MessageRecord record = BinaryMessageCodec.decode(in);
+                if (record == null || entryCategories[i] < 0 || entryCategories[i] >= categories.length) {
+                    throw new IOException("Corrupt entry " + i);
+                }
+                records.add(record);
+            }
+            restoreEntries(records, entryCategories, categories);
+            Message.restoreCounters(messageCounter, messagesSent);
+            highestLoadedID = Math.max(highestLoadedID, highestID);
+            return tail;
+        } catch (IOException | RuntimeException e) {
+            System.err.println("Ignoring unreadable " + SNAPSHOT_FILE_NAME + ": " + e.getMessage());
+            return null;
+        }
+    }
+
+    private static void restoreEntries(List<MessageRecord> records, byte[] entryCategories,
+                                       MessageStore.Category[] categories) {
+        MessageStore store = Message.getStore();
+        // Entries of one message share one Message, as they did when the snapshot was taken
+        Map<String, Message> shared = new HashMap<>();
+        List<Message> entries = new ArrayList<>(records.size());
+        MessageStore.Category[] placed = new MessageStore.Category[records.size()];
+        for (int i = 0; i < records.size(); i++) {
+            MessageRecord record = records.get(i);
+            entries.add(shared.computeIfAbsent(record.getMessageID(), id -> Message.fromRecord(record)));
+            placed[i] = categories[entryCategories[i]];
+        }
+        // At startup the store is empty and is filled in one go
+        if (store.restoreAll(entries, placed)) {
+            return;
+        }
+        Set<Message> registered = Collections.newSetFromMap(new IdentityHashMap<>());
+        for (int i = 0; i < entries.size(); i++) {
+            Message message = entries.get(i);
+            if (registered.add(message)) {
+                store.registerID(message.getMessageID());
+                store.registerHash(message.getMessageHash());
+            }
+            store.add(placed[i], message);
+        }
+    }
+
+    private static String getUTF(ByteBuffer in) {
+        int length = in.getShort() & 0xFFFF;
+        byte[] bytes = new byte[length];
+        in.get(bytes);
+        // writeUTF's modified UTF-8 equals UTF-8 for the names and modes written here
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,13 @@
+package quickchatapp;
+
+// Source of message IDs. IDs must be unique and have 10 digits (see Message.checkMessageID).
+@FunctionalInterface
+public interface MessageIdGenerator {
+    long nextId();
+
+    // Makes every ID handed out from now on greater than id. Called at startup with the
+    // highest ID already persisted, so a new run never reuses one; generators that cannot
+    // guarantee that ignore it.
+    default void continueAfter(long id) {
+    }
+}
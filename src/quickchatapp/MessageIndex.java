@@ -0,0 +1,233 @@
+package quickchatapp;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.locks.ReentrantLock;
+
+// Persistent messageID -> log offset index. The file is an open-addressing hash table
+// that is memory-mapped, so a lookup is a single probe sequence in the mapping no matter
+// how large the archive is. Re-storing an ID overwrites its offset, so the newest record wins.
+//
+// Layout: 32-byte header (magic, capacity, size, indexed log length), then
+// capacity slots of 16 bytes (messageID, offset). An ID of 0 marks an empty slot.
+public final class MessageIndex implements Closeable {
+    private static final int MAGIC = 0x51434958; // "QCIX"
+    private static final int HEADER_SIZE = 32;
+    private static final int SLOT_SIZE = 16;
+    private static final int INITIAL_CAPACITY = 1024;
+    private static final double MAX_LOAD = 0.7;
+    // Slot positions are int offsets into one mapping, which caps the table at 2^26 slots (about 47M messages)
+    private static final int MAX_CAPACITY = 1 << 26;
+
+    private final Path path;
+    private FileChannel channel;
+    private MappedByteBuffer map;
+    private int capacity;
+    private int size;
+    // Guards the table and its mapping
+    private final ReentrantLock lock = new ReentrantLock();
+
+    public MessageIndex(Path path) throws IOException {
+        this.path = path;
+        if (Files.exists(path) && Files.size(path) >= HEADER_SIZE) {
+            open();
+            if (map.getInt(0) != MAGIC) {
+                close();
+                Files.delete(path);
+                create(path, INITIAL_CAPACITY);
+                open();
+            }
+        } else {
+            create(path, INITIAL_CAPACITY);
+            open();
+        }
+    }
+
+    private static void create(Path file, int capacity) throws IOException {
+        try (FileChannel ch = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING,
+                StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            MappedByteBuffer header = ch.map(FileChannel.MapMode.READ_WRITE, 0, HEADER_SIZE + (long) capacity * SLOT_SIZE);
+            header.putInt(0, MAGIC);
+            header.putInt(4, capacity);
+            header.putInt(8, 0);
+            header.putLong(16, 0L);
+        }
+    }
+
+    private void open() throws IOException {
+        channel = FileChannel.open(path, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        map = channel.map(FileChannel.MapMode.READ_WRITE, 0, channel.size());
+        capacity = map.getInt(4);
+        size = map.getInt(8);
+    }
+
+    // Records the offset of the newest record for a message ID
+    public void put(long messageID, long offset) throws IOException {
+        lock.lock();
+        try {
+            if (messageID == 0) {
+                throw new IllegalArgumentException("Message ID 0 cannot be indexed.");
+            }
+            checkOpen();
+            if (size + 1 > capacity * MAX_LOAD) {
+                grow();
+            }
+            int slot = findSlot(messageID);
+            if (map.getLong(slotPosition(slot)) == 0) {
+                size++;
+                map.putInt(8, size);
+            }
+            map.putLong(slotPosition(slot), messageID);
+            map.putLong(slotPosition(slot) + 8, offset);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // Returns the offset of the newest record for the ID, or -1 if it was never indexed
+    public long get(long messageID) throws IOException {
+        lock.lock();
+        try {
+            checkOpen();
+            int slot = findSlot(messageID);
+            return map.getLong(slotPosition(slot)) == messageID ? map.getLong(slotPosition(slot) + 8) : -1;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // Length of the log that has been indexed; anything after it still has to be scanned
+    public long getIndexedLength() throws IOException {
+        lock.lock();
+        try {
+            checkOpen();
+            return map.getLong(16);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public void setIndexedLength(long length) throws IOException {
+        lock.lock();
+        try {
+            checkOpen();
+            map.putLong(16, length);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public int size() {
+        lock.lock();
+        try {
+            return size;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // Drops every entry, e.g. when the log it describes was replaced
+    public void clear() throws IOException {
+        lock.lock();
+        try {
+            close();
+            create(path, INITIAL_CAPACITY);
+            open();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // Flushes the mapping to the storage device
+    public void sync() {
+        lock.lock();
+        try {
+            map.force();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private int findSlot(long messageID) {
+        int mask = capacity - 1;
+        int slot = (int) (mix(messageID) & mask);
+        while (true) {
+            long key = map.getLong(slotPosition(slot));
+            if (key == 0 || key == messageID) {
+                return slot;
+            }
+            slot = (slot + 1) & mask;
+        }
+    }
+
+    private static long mix(long key) {
+        key ^= key >>> 33;
+        key *= 0xff51afd7ed558ccdL;
+        key ^= key >>> 33;
+        return key;
+    }
+
+    private static int slotPosition(int slot) {
+        return HEADER_SIZE + slot * SLOT_SIZE;
+    }
+
+    // Rehashes into a table twice the size and swaps it in
+    private void grow() throws IOException {
+        Path tmp = path.resolveSibling(path.getFileName() + ".tmp");
+        if (capacity >= MAX_CAPACITY) {
+            throw new IOException("Message index is full");
+        }
+        int newCapacity = capacity * 2;
+        create(tmp, newCapacity);
+        try (FileChannel ch = FileChannel.open(tmp, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            MappedByteBuffer target = ch.map(FileChannel.MapMode.READ_WRITE, 0, ch.size());
+            int mask = newCapacity - 1;
+            for (int i = 0; i < capacity; i++) {
+                long key = map.getLong(slotPosition(i));
+                if (key == 0) {
+                    continue;
+                }
+                int slot = (int) (mix(key) & mask);
+                while (target.getLong(slotPosition(slot)) != 0) {
+                    slot = (slot + 1) & mask;
+                }
+                target.putLong(slotPosition(slot), key);
+                target.putLong(slotPosition(slot) + 8, map.getLong(slotPosition(i) + 8));
+            }
+            target.putInt(8, size);
+            target.putLong(16, map.getLong(16));
+            target.force();
+        }
+        close();
+        Files.move(tmp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        open();
+    }
+
+    // A compaction may close the index while a lookup that fetched it is still running
+    private void checkOpen() throws IOException {
+        if (map == null) {
+            throw new ClosedChannelException();
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        lock.lock();
+        try {
+            if (channel != null) {
+                channel.close();
+                channel = null;
+                map = null;
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+}
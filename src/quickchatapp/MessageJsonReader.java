@@ -0,0 +1,219 @@
+package quickchatapp;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.function.Consumer;
+
+// Single-pass streaming reader for stored messages. Works on both the messages.json
+// array and the JSON Lines log: it skips array brackets, commas and any whitespace
+// between records and parses each object straight into a MessageRecord, so the
+// file is never held in memory and record layout does not matter.
+public class MessageJsonReader implements Closeable {
+    private static final String MISSING = "N/A";
+
+    private final Reader in;
+    private final char[] buffer = new char[8192];
+    private int pos = 0;
+    private int limit = 0;
+    // Reused for keys and values so that parsing a record allocates only its field strings
+    private final StringBuilder token = new StringBuilder(64);
+
+    public MessageJsonReader(Reader in) {
+        this.in = in;
+    }
+
+    // Reads every record in the file; a missing file has no records
+    public static void forEach(Path path, Consumer<MessageRecord> action) throws IOException {
+        if (!Files.exists(path)) {
+            return;
+        }
+        try (MessageJsonReader reader = new MessageJsonReader(Files.newBufferedReader(path, StandardCharsets.UTF_8))) {
+            MessageRecord record;
+            while ((record = reader.next()) != null) {
+                action.accept(record);
+            }
+        }
+    }
+
+    // Returns the next record, or null at the end of the input
+    public MessageRecord next() throws IOException {
+        int c;
+        // Skip everything between records: whitespace, '[', ']' and ','
+        while ((c = read()) != -1 && c != '{') {
+            if (!Character.isWhitespace(c) && c != '[' && c != ']' && c != ',') {
+                throw new IOException("Unexpected character '" + (char) c + "' between records");
+            }
+        }
+        if (c == -1) {
+            return null;
+        }
+        return readObject();
+    }
+
+    private MessageRecord readObject() throws IOException {
+        String messageID = MISSING;
+        int messageCount = 0;
+        String recipient = MISSING;
+        String message = MISSING;
+        String messageHash = MISSING;
+        String status = MISSING;
+        String timestamp = MISSING;
+
+        int c = skipWhitespace();
+        if (c == '}') {
+            return new MessageRecord(messageID, messageCount, recipient, message, messageHash, status, timestamp);
+        }
+        while (true) {
+            if (c != '"') {
+                throw new IOException("Expected a field name but found '" + (char) c + "'");
+            }
+            readString();
+            // Identify the key without turning it into a String
+            int field = fieldOf(token);
+            if (skipWhitespace() != ':') {
+                throw new IOException("Expected ':' after field name");
+            }
+            String value = readValue();
+            switch (field) {
+                case 0: messageID = value; break;
+                case 1: messageCount = parseCount(value); break;
+                case 2: recipient = value; break;
+                case 3: message = value; break;
+                case 4: messageHash = value; break;
+                case 5: status = value; break;
+                case 6: timestamp = value; break;
+                default: break; // Unknown fields are ignored
+            }
+            c = skipWhitespace();
+            if (c == '}') {
+                break;
+            }
+            if (c != ',') {
+                throw new IOException("Expected ',' or '}' in record");
+            }
+            c = skipWhitespace();
+        }
+        return new MessageRecord(messageID, messageCount, recipient, message, messageHash, status, timestamp);
+    }
+
+    private static int fieldOf(CharSequence key) {
+        switch (key.length()) {
+            case 6: return equals(key, "status") ? 5 : -1;
+            case 7: return equals(key, "message") ? 3 : -1;
+            case 9: return equals(key, "messageID") ? 0 : equals(key, "recipient") ? 2 : equals(key, "timestamp") ? 6 : -1;
+            case 11: return equals(key, "messageHash") ? 4 : -1;
+            case 12: return equals(key, "messageCount") ? 1 : -1;
+            default: return -1;
+        }
+    }
+
+    private static boolean equals(CharSequence a, String b) {
+        if (a.length() != b.length()) {
+            return false;
+        }
+        for (int i = 0; i < b.length(); i++) {
+            if (a.charAt(i) != b.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static int parseCount(String value) {
+        try {
+            return Integer.parseInt(value);
+        } catch (NumberFormatException e) {
+            return 0;
+        }
+    }
+
+    // Reads a string, number or literal value; null becomes "N/A"
+    private String readValue() throws IOException {
+        int c = skipWhitespace();
+        if (c == '"') {
+            readString();
+            return token.toString();
+        }
+        if (c == '{' || c == '[') {
+            throw new IOException("Nested values are not supported in message records");
+        }
+        token.setLength(0);
+        while (c != -1 && c != ',' && c != '}' && !Character.isWhitespace(c)) {
+            token.append((char) c);
+            c = read();
+        }
+        if (c != -1) {
+            pos--; // Leave the delimiter for the caller
+        }
+        return equals(token, "null") ? MISSING : token.toString();
+    }
+
+    // Reads the rest of a string whose opening quote was consumed into token
+    private void readString() throws IOException {
+        token.setLength(0);
+        while (true) {
+            int c = read();
+            if (c == -1) {
+                throw new IOException("Unterminated string");
+            }
+            if (c == '"') {
+                return;
+            }
+            if (c == '\\') {
+                int e = read();
+                switch (e) {
+                    case '"': token.append('"'); break;
+                    case '\\': token.append('\\'); break;
+                    case '/': token.append('/'); break;
+                    case 'b': token.append('\b'); break;
+                    case 'f': token.append('\f'); break;
+                    case 'n': token.append('\n'); break;
+                    case 'r': token.append('\r'); break;
+                    case 't': token.append('\t'); break;
+                    case 'u':
+                        int code = 0;
+                        for (int i = 0; i < 4; i++) {
+                            int digit = Character.digit(read(), 16);
+                            if (digit < 0) {
+                                throw new IOException("Invalid unicode escape");
+                            }
+                            code = code * 16 + digit;
+                        }
+                        token.append((char) code);
+                        break;
+                    default:
+                        throw new IOException("Invalid escape sequence");
+                }
+            } else {
+                token.append((char) c);
+            }
+        }
+    }
+
+    private int skipWhitespace() throws IOException {
+        int c;
+        do {
+            c = read();
+        } while (c != -1 && Character.isWhitespace(c));
+        return c;
+    }
+
+    private int read() throws IOException {
+        if (pos == limit) {
+            limit = in.read(buffer, 0, buffer.length);
+            pos = 0;
+            if (limit <= 0) {
+                limit = 0;
+                return -1;
+            }
+        }
+        return buffer[pos++];
+    }
+
+    @Override
+    public void close() throws IOException {
+        in.close();
+    }
+}
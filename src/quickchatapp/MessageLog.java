@@ -0,0 +1,206 @@
+package quickchatapp;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+
+// Append-only message log in JSON Lines format: one compact JSON record per line.
+// A store is a single positioned write at the end of the file, so its cost does
+// not depend on how many messages are already in the log. Opening the log drops
+// anything after the last newline, so a crash in the middle of an append loses that
+// append instead of gluing the next one onto it.
+public class MessageLog implements Closeable {
+    private final Path path;
+    private final FileChannel channel;
+    private final long truncatedBytes;
+    private long position;
+    // Guards position. A lock rather than synchronized, so that a writer on a virtual
+    // thread does not pin its carrier thread while it waits for the file
+    private final ReentrantLock lock = new ReentrantLock();
+
+    public MessageLog(Path path) throws IOException {
+        this.path = path;
+        this.channel = FileChannel.open(path, StandardOpenOption.CREATE,
+                StandardOpenOption.READ, StandardOpenOption.WRITE);
+        long size = channel.size();
+        this.position = endOfLastLine(size);
+        this.truncatedBytes = size - position;
+        if (truncatedBytes > 0) {
+            channel.truncate(position);
+            channel.force(true);
+        }
+    }
+
+    // Offset just past the last '\n' before size, or 0 if there is none
+    private long endOfLastLine(long size) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(4096);
+        long end = size;
+        while (end > 0) {
+            long start = Math.max(0, end - buffer.capacity());
+            buffer.clear();
+            buffer.limit((int) (end - start));
+            while (buffer.hasRemaining()) {
+                if (channel.read(buffer, start + buffer.position()) <= 0) {
+                    throw new IOException("Cannot read " + path + " at offset " + (start + buffer.position()));
+                }
+            }
+            for (int i = buffer.limit() - 1; i >= 0; i--) {
+                if (buffer.get(i) == '\n') {
+                    return start + i + 1;
+                }
+            }
+            end = start;
+        }
+        return 0;
+    }
+
+    // Appends one record and returns the file offset it was written at
+    public long append(String record) throws IOException {
+        lock.lock();
+        try {
+            byte[] bytes = (record + "\n").getBytes(StandardCharsets.UTF_8);
+            ByteBuffer buffer = ByteBuffer.wrap(bytes);
+            long offset = position;
+            while (buffer.hasRemaining()) {
+                position += channel.write(buffer, position);
+            }
+            return offset;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // Appends several records with one write and returns the offset of each
+    public long[] appendAll(List<String> records) throws IOException {
+        lock.lock();
+        try {
+            long[] offsets = new long[records.size()];
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            for (int i = 0; i < offsets.length; i++) {
+                offsets[i] = position + bytes.size();
+                bytes.writeBytes((records.get(i) + "\n").getBytes(StandardCharsets.UTF_8));
+            }
+            ByteBuffer buffer = ByteBuffer.wrap(bytes.toByteArray());
+            long writeAt = position;
+            while (buffer.hasRemaining()) {
+                writeAt += channel.write(buffer, writeAt);
+            }
+            position = writeAt;
+            return offsets;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // Forces appended records to the storage device
+    public void sync() throws IOException {
+        channel.force(false);
+    }
+
+    // Reads every record from the start of the log, in the order they were appended
+    public void forEachRecord(Consumer<String> action) throws IOException {
+        if (!Files.exists(path)) {
+            return;
+        }
+        try (BufferedReader reader = Files.newBufferedReader(path, StandardCharsets.UTF_8)) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (!line.isBlank()) {
+                    action.accept(line);
+                }
+            }
+        }
+    }
+
+    // Reads the records from a byte offset onwards together with the offset of each
+    public void forEachRecordFrom(long start, OffsetConsumer<String> action) throws IOException {
+        long end = size();
+        long filePosition = start;
+        long lineStart = start;
+        ByteBuffer buffer = ByteBuffer.allocate(64 * 1024);
+        ByteArrayOutputStream line = new ByteArrayOutputStream();
+        while (filePosition < end) {
+            buffer.clear();
+            buffer.limit((int) Math.min(buffer.capacity(), end - filePosition));
+            int read = channel.read(buffer, filePosition);
+            if (read <= 0) {
+                break;
+            }
+            buffer.flip();
+            for (int i = 0; i < read; i++) {
+                byte b = buffer.get(i);
+                if (b == '\n') {
+                    if (line.size() > 0) {
+                        action.accept(lineStart, line.toString(StandardCharsets.UTF_8));
+                    }
+                    line.reset();
+                    lineStart = filePosition + i + 1;
+                } else {
+                    line.write(b);
+                }
+            }
+            filePosition += read;
+        }
+    }
+
+    // Reads the single record that starts at the given offset
+    public String readAt(long offset) throws IOException {
+        ByteArrayOutputStream line = new ByteArrayOutputStream();
+        ByteBuffer buffer = ByteBuffer.allocate(512);
+        long filePosition = offset;
+        while (true) {
+            buffer.clear();
+            int read = channel.read(buffer, filePosition);
+            if (read <= 0) {
+                break;
+            }
+            for (int i = 0; i < read; i++) {
+                byte b = buffer.get(i);
+                if (b == '\n') {
+                    return line.toString(StandardCharsets.UTF_8);
+                }
+                line.write(b);
+            }
+            filePosition += read;
+        }
+        if (line.size() == 0) {
+            throw new IOException("No record at offset " + offset);
+        }
+        return line.toString(StandardCharsets.UTF_8);
+    }
+
+    // Bytes of an unterminated last line dropped when the log was opened
+    public long getTruncatedBytes() {
+        return truncatedBytes;
+    }
+
+    public long size() {
+        lock.lock();
+        try {
+            return position;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public Path getPath() {
+        return path;
+    }
+
+    @Override
+    public void close() throws IOException {
+        lock.lock();
+        try {
+            channel.close();
+        } finally {
+            lock.unlock();
+        }
+    }
+}
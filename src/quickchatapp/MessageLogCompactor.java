@@ -0,0 +1,151 @@
+package quickchatapp;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.HashMap;
+import java.util.Map;
+
+// Rewrites an append-only message log keeping only the newest record for each messageID
+// and dropping messages whose newest record is a tombstone. prepare() does the expensive
+// part on a side file while stores keep appending to the live log; commit() then copies
+// only the records appended since, and swaps the copy and its index in with atomic renames.
+public class MessageLogCompactor {
+
+    // Reads one log format: every record from an offset onwards, with the offset of each
+    public interface RecordScanner {
+        void scan(Path log, long start, OffsetConsumer<MessageRecord> action) throws IOException;
+    }
+
+    // Serializes one record in the same format, including any separator
+    public interface RecordEncoder {
+        byte[] encode(MessageRecord record) throws IOException;
+    }
+
+    private final Path log;
+    private final Path index;
+    private final Path compacted;
+    private final Path compactedIndex;
+    private final RecordScanner scanner;
+    private final RecordEncoder encoder;
+    private long cutoff = -1;
+    private int recordsBefore;
+    private int recordsKept;
+    private long written;
+
+    public MessageLogCompactor(Path log, Path index, RecordScanner scanner, RecordEncoder encoder) {
+        this.log = log;
+        this.index = index;
+        this.compacted = log.resolveSibling(log.getFileName() + ".compact");
+        this.compactedIndex = index.resolveSibling(index.getFileName() + ".compact");
+        this.scanner = scanner;
+        this.encoder = encoder;
+    }
+
+    // Compacts the records before cutoff (a record boundary in the live log) into a side
+    // file. Only reads the live log, so appends can continue while this runs.
+    public void prepare(long cutoff) throws IOException {
+        // First pass: where the newest record of each message starts
+        Map<String, Long> newest = new HashMap<>();
+        recordsBefore = 0;
+        scan(log, 0, (offset, record) -> {
+            if (offset < cutoff) {
+                newest.put(record.getMessageID(), offset);
+                recordsBefore++;
+            }
+        });
+
+        // Second pass: copy those records, indexing them at their new offsets
+        Files.deleteIfExists(compactedIndex);
+        recordsKept = 0;
+        try (FileChannel channel = FileChannel.open(compacted, StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE);
+             MessageIndex newIndex = new MessageIndex(compactedIndex)) {
+            OutputStream out = new BufferedOutputStream(Channels.newOutputStream(channel), 64 * 1024);
+            written = 0;
+            scan(log, 0, (offset, record) -> {
+                if (offset >= cutoff || offset != newest.get(record.getMessageID()) || record.isDeleted()) {
+                    return;
+                }
+                try {
+                    byte[] bytes = encoder.encode(record);
+                    out.write(bytes);
+                    indexRecord(newIndex, written, record);
+                    written += bytes.length;
+                    recordsKept++;
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+            out.flush();
+            channel.force(true);
+            newIndex.setIndexedLength(written);
+            newIndex.sync();
+        }
+        this.cutoff = cutoff;
+    }
+
+    // Appends what the live log gained since prepare() and swaps the compacted log in.
+    // The caller must stop appends and close the live log and its index first.
+    // Returns the number of records that were removed.
+    public int commit() throws IOException {
+        if (cutoff < 0) {
+            throw new IllegalStateException("prepare() has not been run.");
+        }
+        long compactedLength = Files.size(compacted);
+        try (FileChannel source = FileChannel.open(log, StandardOpenOption.READ);
+             FileChannel target = FileChannel.open(compacted, StandardOpenOption.WRITE, StandardOpenOption.APPEND)) {
+            long end = source.size();
+            long position = cutoff;
+            while (position < end) {
+                position += source.transferTo(position, end - position, target);
+            }
+            target.force(true);
+        }
+        try (MessageIndex newIndex = new MessageIndex(compactedIndex)) {
+            scan(compacted, compactedLength, (offset, record) -> indexRecord(newIndex, offset, record));
+            newIndex.setIndexedLength(Files.size(compacted));
+            newIndex.sync();
+        }
+        // Without an index file the next open rebuilds it, so a crash between the
+        // renames never leaves an index that describes the other log
+        Files.deleteIfExists(index);
+        Files.move(compacted, log, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        Files.move(compactedIndex, index, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        cutoff = -1;
+        return recordsBefore - recordsKept;
+    }
+
+    // Drops the side files of a compaction that will not be committed
+    public void abort() throws IOException {
+        Files.deleteIfExists(compacted);
+        Files.deleteIfExists(compactedIndex);
+        cutoff = -1;
+    }
+
+    private void scan(Path file, long start, OffsetConsumer<MessageRecord> action) throws IOException {
+        try {
+            scanner.scan(file, start, action);
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+    }
+
+    private static void indexRecord(MessageIndex index, long offset, MessageRecord record) {
+        long id = JSONHandler.parseMessageID(record.getMessageID());
+        if (id > 0) {
+            try {
+                index.put(id, offset);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+    }
+}
@@ -0,0 +1,242 @@
+package quickchatapp;
+
+import java.io.Closeable;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+// Three-stage pipeline for sending many messages: validate -> hash -> persist. Each stage
+// has its own worker threads and takes its input from a bounded queue, so validation and
+// hashing of later messages overlap with the writes of earlier ones. A full queue blocks
+// the stage (or caller) feeding it, which keeps a slow disk from letting work pile up in
+// memory. With more than one worker in a stage, messages can finish out of input order.
+//
+//   validate  recipient and length checks, as in the Send Message window
+//   hash      creates the Message, which assigns its ID and computes its hash
+//   persist   sentMessage(choice): adds it to the store and to the archive
+public class MessagePipeline implements Closeable {
+    static final int MAX_MESSAGE_LENGTH = 250;
+
+    // Told about each record that fails validation, on a validate worker thread
+    public interface RejectionListener {
+        void rejected(long sequence, String problem);
+    }
+
+    private static final class Item {
+        final long sequence;
+        final String recipient;
+        final String text;
+        final int choice;
+        Message message;
+
+        Item(long sequence, String recipient, String text, int choice) {
+            this.sequence = sequence;
+            this.recipient = recipient;
+            this.text = text;
+            this.choice = choice;
+        }
+    }
+
+    // Passed down the pipeline, one per worker, to stop it
+    private static final Item END = new Item(-1, null, null, 0);
+
+    private interface StageWork {
+        // Returns the item for the next stage, or null if it goes no further
+        Item process(Item item) throws InterruptedException;
+    }
+
+    // Worker threads of one stage; the last one to stop ends the next stage
+    private final class Stage {
+        final BlockingQueue<Item> input;
+        final List<Thread> workers = new ArrayList<>();
+        final AtomicInteger running;
+
+        Stage(String name, int threads, int queueCapacity, StageWork work, Stage next) {
+            if (threads < 1) {
+                throw new IllegalArgumentException("Every stage needs at least one worker.");
+            }
+            this.input = new ArrayBlockingQueue<>(queueCapacity);
+            this.running = new AtomicInteger(threads);
+            for (int i = 0; i < threads; i++) {
+                Thread worker = new Thread(() -> run(work, next), "message-" + name + "-" + i);
+                worker.setDaemon(true);
+                workers.add(worker);
+            }
+        }
+
+        void start() {
+            workers.forEach(Thread::start);
+        }
+
+        private void run(StageWork work, Stage next) {
+            try {
+                Item item;
+                while ((item = input.take()) != END) {
+                    Item result;
+                    try {
+                        result = work.process(item);
+                    } catch (RuntimeException e) {
+                        System.err.println("Error processing message: " + e.getMessage());
+                        failed.increment();
+                        continue;
+                    }
+                    if (result != null && next != null) {
+                        next.input.put(result);
+                    }
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } finally {
+                // However the worker stops, even on an interrupt or an Error, the next stage
+                // is ended once the last one has, or close() would wait on it for ever
+                if (running.decrementAndGet() == 0 && next != null) {
+                    for (int i = 0; i < next.workers.size(); i++) {
+                        putUninterruptibly(next.input, END);
+                    }
+                }
+            }
+        }
+
+        private void putUninterruptibly(BlockingQueue<Item> queue, Item item) {
+            boolean interrupted = false;
+            while (true) {
+                try {
+                    queue.put(item);
+                    break;
+                } catch (InterruptedException e) {
+                    interrupted = true;
+                }
+            }
+            if (interrupted) {
+                Thread.currentThread().interrupt();
+            }
+        }
+
+        void join() throws InterruptedException {
+            for (Thread worker : workers) {
+                worker.join();
+            }
+        }
+    }
+
+    private final Stage validate;
+    private final Stage hash;
+    private final Stage persist;
+    private final RejectionListener rejectionListener;
+    // Last write queued by each persist worker; the batching writer completes writes in
+    // queue order, so once these are done every earlier write is too
+    private final CompletableFuture<?>[] lastPersisted;
+    private final LongAdder submitted = new LongAdder();
+    private final LongAdder rejected = new LongAdder();
+    private final LongAdder accepted = new LongAdder();
+    private final LongAdder failed = new LongAdder();
+    private long nextSequence;
+    private volatile boolean closed;
+
+    public MessagePipeline(int validators, int hashers, int persisters, int queueCapacity) {
+        this(validators, hashers, persisters, queueCapacity, (sequence, problem) -> { });
+    }
+
+    public MessagePipeline(int validators, int hashers, int persisters, int queueCapacity,
+                           RejectionListener rejectionListener) {
+        this.rejectionListener = rejectionListener;
+        this.lastPersisted = new CompletableFuture<?>[persisters];
+        for (int i = 0; i < persisters; i++) {
+            lastPersisted[i] = CompletableFuture.completedFuture(null);
+        }
+        AtomicInteger persistWorker = new AtomicInteger();
+        ThreadLocal<Integer> persistSlot = ThreadLocal.withInitial(persistWorker::getAndIncrement);
+
+        persist = new Stage("persist", persisters, queueCapacity, item -> {
+            item.message.sentMessage(item.choice);
+            lastPersisted[persistSlot.get()] = item.message.whenPersisted().exceptionally(ex -> {
+                failed.increment();
+                return null;
+            });
+            accepted.increment();
+            return null;
+        }, null);
+        hash = new Stage("hash", hashers, queueCapacity, item -> {
+            Message message = new Message();
+            message.setRecipient(item.recipient);
+            message.setMessage(item.text);
+            item.message = message;
+            return item;
+        }, persist);
+        validate = new Stage("validate", validators, queueCapacity, item -> {
+            String problem = validate(item.recipient, item.text);
+            if (problem != null) {
+                rejected.increment();
+                rejectionListener.rejected(item.sequence, problem);
+                return null;
+            }
+            return item;
+        }, hash);
+
+        persist.start();
+        hash.start();
+        validate.start();
+    }
+
+    // Why the message cannot be sent, or null if it can
+    public static String validate(String recipient, String text) {
+        if (recipient == null || !Message.isValidRecipient(recipient)) {
+            return "invalid phone number " + recipient;
+        }
+        if (text == null || text.isEmpty()) {
+            return "empty message";
+        }
+        if (text.length() > MAX_MESSAGE_LENGTH) {
+            return "message exceeds " + MAX_MESSAGE_LENGTH + " characters";
+        }
+        return null;
+    }
+
+    // Queues a message to be sent (choice 1) or stored (choice 3), blocking while the
+    // first stage is full. Sequence numbers are only used to report rejections.
+    public void submit(long sequence, String recipient, String text, int choice) throws InterruptedException {
+        if (closed) {
+            throw new IllegalStateException("Pipeline is closed.");
+        }
+        submitted.increment();
+        validate.input.put(new Item(sequence, recipient, text, choice));
+    }
+
+    // Same as submit, numbering messages in the order they are submitted from this thread
+    public void submit(String recipient, String text, int choice) throws InterruptedException {
+        submit(++nextSequence, recipient, text, choice);
+    }
+
+    // Stops taking messages, lets every stage drain and waits until all accepted
+    // messages are written. Must be called from the thread that submits.
+    @Override
+    public void close() {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        try {
+            for (int i = 0; i < validate.workers.size(); i++) {
+                validate.input.put(END);
+            }
+            validate.join();
+            hash.join();
+            persist.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return;
+        }
+        CompletableFuture.allOf(lastPersisted).join();
+    }
+
+    public long getSubmitted() { return submitted.sum(); }
+    public long getRejected() { return rejected.sum(); }
+    // Messages that reached the store; some of them may have failed to save
+    public long getAccepted() { return accepted.sum(); }
+    // Messages that could not be processed or saved
+    public long getFailed() { return failed.sum(); }
+}
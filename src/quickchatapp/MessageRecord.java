@@ -0,0 +1,56 @@
+package quickchatapp;
+
+// A persisted message as read back from storage: the fields written by JSONHandler
+// plus the time it was stored. Fields missing from a record are "N/A".
+public final class MessageRecord {
+    // Status of a tombstone: the record that marks a message as deleted
+    public static final String DELETED = "deleted";
+
+    private final String messageID;
+    private final int messageCount;
+    private final String recipient;
+    private final String message;
+    private final String messageHash;
+    private final String status;
+    private final String timestamp;
+
+    public MessageRecord(String messageID, int messageCount, String recipient, String message,
+                         String messageHash, String status, String timestamp) {
+        this.messageID = messageID;
+        this.messageCount = messageCount;
+        this.recipient = recipient;
+        this.message = message;
+        this.messageHash = messageHash;
+        this.status = status;
+        this.timestamp = timestamp;
+    }
+
+    // Snapshot of a Message as it is being stored
+    public static MessageRecord of(Message message, String timestamp) {
+        return new MessageRecord(message.getMessageID(), message.getMessageCount(), message.getRecipient(),
+                message.getMessage(), message.getMessageHash(), message.getStatus(), timestamp);
+    }
+
+    // Tombstone for a deleted message; it replaces every earlier record with the same ID
+    public static MessageRecord tombstone(Message message, String timestamp) {
+        return new MessageRecord(message.getMessageID(), message.getMessageCount(), message.getRecipient(),
+                "", message.getMessageHash(), DELETED, timestamp);
+    }
+
+    // The same record under another message count
+    public MessageRecord withMessageCount(int count) {
+        return new MessageRecord(messageID, count, recipient, message, messageHash, status, timestamp);
+    }
+
+    public boolean isDeleted() {
+        return DELETED.equals(status);
+    }
+
+    public String getMessageID() { return messageID; }
+    public int getMessageCount() { return messageCount; }
+    public String getRecipient() { return recipient; }
+    public String getMessage() { return message; }
+    public String getMessageHash() { return messageHash; }
+    public String getStatus() { return status; }
+    public String getTimestamp() { return timestamp; }
+}
@@ -0,0 +1,81 @@
+package quickchatapp;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+
+// Handles each inbound message as its own task: validate, create the Message, send or
+// store it, and wait until it is durable. In VIRTUAL mode every task gets a virtual
+// thread, so thousands of messages can wait on the disk at once without thousands of
+// platform threads; the persist path (JSONHandler and the logs) uses ReentrantLocks, not
+// synchronized, so those waits do not pin carrier threads. PLATFORM mode runs the same
+// tasks on a fixed pool of platform threads. At most maxInFlight messages are handled at
+// a time; send blocks the caller beyond that.
+public class MessageSendExecutor implements AutoCloseable {
+
+    public enum Mode { VIRTUAL, PLATFORM }
+
+    private final Mode mode;
+    private final ExecutorService executor;
+    private final Semaphore inFlight;
+
+    // platformThreads is only used in PLATFORM mode
+    public MessageSendExecutor(Mode mode, int platformThreads, int maxInFlight) {
+        if (platformThreads < 1 || maxInFlight < 1) {
+            throw new IllegalArgumentException("Thread count and in-flight limit must be positive.");
+        }
+        this.mode = mode;
+        this.executor = mode == Mode.VIRTUAL
+                ? Executors.newVirtualThreadPerTaskExecutor()
+                : Executors.newFixedThreadPool(platformThreads);
+        this.inFlight = new Semaphore(maxInFlight);
+    }
+
+    public Mode getMode() {
+        return mode;
+    }
+
+    // Sends (choice 1) or stores (choice 3) a message. The future completes with the
+    // Message once it is on disk, or exceptionally with an IllegalArgumentException
+    // if it fails validation.
+    public CompletableFuture<Message> send(String recipient, String text, int choice) throws InterruptedException {
+        inFlight.acquire();
+        CompletableFuture<Message> result = new CompletableFuture<>();
+        try {
+            executor.execute(() -> {
+                try {
+                    result.complete(handle(recipient, text, choice));
+                } catch (RuntimeException e) {
+                    result.completeExceptionally(e);
+                } finally {
+                    inFlight.release();
+                }
+            });
+        } catch (RuntimeException e) {
+            inFlight.release();
+            throw e;
+        }
+        return result;
+    }
+
+    private static Message handle(String recipient, String text, int choice) {
+        String problem = MessagePipeline.validate(recipient, text);
+        if (problem != null) {
+            throw new IllegalArgumentException(problem);
+        }
+        Message message = new Message();
+        message.setRecipient(recipient);
+        message.setMessage(text);
+        message.sentMessage(choice);
+        // Blocking here is what this executor is for: a virtual thread just unmounts
+        message.whenPersisted().join();
+        return message;
+    }
+
+    // Waits for every message already handed to send
+    @Override
+    public void close() {
+        executor.close();
+    }
+}
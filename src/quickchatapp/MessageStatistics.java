@@ -0,0 +1,172 @@
+package quickchatapp;
+
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+// Aggregates over the message store, updated as messages are added and removed so that
+// reading one is O(1) (the longest message O(log n)) instead of a scan. MessageStore calls
+// added/removed while holding the message's stripe lock, so the updates for one message
+// never interleave. The length and recipient are recorded when a message is added, and
+// those recorded values are taken back out when it is removed.
+public class MessageStatistics {
+
+    // What was counted for one message in one category
+    private static final class Entry {
+        final int length;
+        final String recipient;
+
+        Entry(int length, String recipient) {
+            this.length = length;
+            this.recipient = recipient;
+        }
+    }
+
+    private static final class CategoryStats {
+        final Map<Integer, Entry> entries = new ConcurrentHashMap<>();
+        final AtomicInteger count = new AtomicInteger();
+        final LongAdder totalLength = new LongAdder();
+    }
+
+    private final Map<MessageStore.Category, CategoryStats> categories = new EnumMap<>(MessageStore.Category.class);
+    // Sent messages ordered by length, longest last; see lengthKey
+    private final ConcurrentSkipListMap<Long, Message> sentByLength = new ConcurrentSkipListMap<>();
+    // Sent and stored messages per recipient
+    private final Map<String, AtomicInteger> byRecipient = new ConcurrentHashMap<>();
+
+    public MessageStatistics() {
+        for (MessageStore.Category category : MessageStore.Category.values()) {
+            categories.put(category, new CategoryStats());
+        }
+    }
+
+    // Longer messages sort later and, of equal lengths, the earlier message sorts later,
+    // so the last key is the first longest message as the original scan picked it
+    private static long lengthKey(int length, int messageCount) {
+        return ((long) length << 32) | (Integer.MAX_VALUE - messageCount);
+    }
+
+    private static int lengthOf(Message message) {
+        return message.getMessage() == null ? 0 : message.getMessage().length();
+    }
+
+    // The message is now in the category; replaces what was counted for it there before
+    void added(MessageStore.Category category, Message message) {
+        CategoryStats stats = categories.get(category);
+        Entry entry = new Entry(lengthOf(message), message.getRecipient());
+        Entry previous = stats.entries.put(message.getMessageCount(), entry);
+        if (previous != null) {
+            uncount(category, stats, message, previous);
+        }
+        stats.count.incrementAndGet();
+        stats.totalLength.add(entry.length);
+        if (category == MessageStore.Category.SENT) {
+            sentByLength.put(lengthKey(entry.length, message.getMessageCount()), message);
+        }
+        if (category != MessageStore.Category.DISREGARDED && entry.recipient != null) {
+            byRecipient.computeIfAbsent(entry.recipient, r -> new AtomicInteger()).incrementAndGet();
+        }
+    }
+
+    // The message has left the category
+    void removed(MessageStore.Category category, Message message) {
+        CategoryStats stats = categories.get(category);
+        Entry entry = stats.entries.remove(message.getMessageCount());
+        if (entry != null) {
+            uncount(category, stats, message, entry);
+        }
+    }
+
+    private void uncount(MessageStore.Category category, CategoryStats stats, Message message, Entry entry) {
+        stats.count.decrementAndGet();
+        stats.totalLength.add(-entry.length);
+        if (category == MessageStore.Category.SENT) {
+            sentByLength.remove(lengthKey(entry.length, message.getMessageCount()), message);
+        }
+        if (category != MessageStore.Category.DISREGARDED && entry.recipient != null) {
+            byRecipient.computeIfPresent(entry.recipient, (r, count) -> count.decrementAndGet() == 0 ? null : count);
+        }
+    }
+
+    // Bulk counterpart of added for statistics that are still empty, called by
+    // MessageStore.restoreAll: entries.get(i) is in entryCategories[i]. The sums are
+    // added once per category instead of once per message.
+    void restoreAll(List<Message> entries, MessageStore.Category[] entryCategories) {
+        int[] counts = new int[categories.size()];
+        long[] totals = new long[categories.size()];
+        for (int i = 0; i < entries.size(); i++) {
+            Message message = entries.get(i);
+            MessageStore.Category category = entryCategories[i];
+            CategoryStats stats = categories.get(category);
+            Entry entry = new Entry(lengthOf(message), message.getRecipient());
+            Entry previous = stats.entries.put(message.getMessageCount(), entry);
+            if (previous != null) {
+                // A repeated count replaces the entry counted before, as in added
+                uncount(category, stats, message, previous);
+            }
+            counts[category.ordinal()]++;
+            totals[category.ordinal()] += entry.length;
+            if (category == MessageStore.Category.SENT) {
+                sentByLength.put(lengthKey(entry.length, message.getMessageCount()), message);
+            }
+            if (category != MessageStore.Category.DISREGARDED && entry.recipient != null) {
+                byRecipient.computeIfAbsent(entry.recipient, r -> new AtomicInteger()).incrementAndGet();
+            }
+        }
+        for (MessageStore.Category category : MessageStore.Category.values()) {
+            CategoryStats stats = categories.get(category);
+            stats.count.addAndGet(counts[category.ordinal()]);
+            stats.totalLength.add(totals[category.ordinal()]);
+        }
+    }
+
+    void clear() {
+        for (CategoryStats stats : categories.values()) {
+            stats.entries.clear();
+            stats.count.set(0);
+            stats.totalLength.reset();
+        }
+        sentByLength.clear();
+        byRecipient.clear();
+    }
+
+    // The longest sent message (the earliest one if several are equally long), or null
+    public Message longestSent() {
+        Map.Entry<Long, Message> last = sentByLength.lastEntry();
+        return last == null ? null : last.getValue();
+    }
+
+    public int count(MessageStore.Category category) {
+        return categories.get(category).count.get();
+    }
+
+    // Characters in all messages of the category
+    public long totalLength(MessageStore.Category category) {
+        return categories.get(category).totalLength.sum();
+    }
+
+    // Mean message length in characters; 0 for an empty category
+    public double averageLength(MessageStore.Category category) {
+        CategoryStats stats = categories.get(category);
+        int count = stats.count.get();
+        return count == 0 ? 0 : (double) stats.totalLength.sum() / count;
+    }
+
+    // Sent and stored messages addressed to the recipient
+    public int countForRecipient(String recipient) {
+        AtomicInteger count = byRecipient.get(recipient);
+        return count == null ? 0 : count.get();
+    }
+
+    // Snapshot of the sent and stored message count per recipient
+    public Map<String, Integer> recipientCounts() {
+        Map<String, Integer> counts = new HashMap<>();
+        byRecipient.forEach((recipient, count) -> counts.put(recipient, count.get()));
+        return counts;
+    }
+}
@@ -0,0 +1,350 @@
+package quickchatapp;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.stream.Stream;
+
+// In-memory message store behind Message's static array operations, safe for many
+// producer threads. Each category is a lock-free skip list ordered by messageCount
+// (the order messages were created in), and the ID, hash and recipient indexes are
+// concurrent hash maps, so searches and deletes are O(1) (or O(matches)).
+// Changes to one message are serialized on one of a fixed set of striped locks,
+// so threads working on different messages rarely wait for each other.
+public class MessageStore {
+
+    public enum Category { SENT, STORED, DISREGARDED }
+
+    private static final int STRIPES = 64;
+
+    private final Map<Integer, Message> sent = new ConcurrentSkipListMap<>();
+    private final Map<Integer, Message> stored = new ConcurrentSkipListMap<>();
+    private final Map<Integer, Message> disregarded = new ConcurrentSkipListMap<>();
+    // Skip list sizes are O(n), so the counts are kept separately
+    private final AtomicInteger sentCount = new AtomicInteger();
+    private final AtomicInteger storedCount = new AtomicInteger();
+    private final AtomicInteger disregardedCount = new AtomicInteger();
+
+    // Indexes over sent and stored messages, the ones that can be searched and deleted
+    private final Map<String, Message> byID = new ConcurrentHashMap<>();
+    private final Map<String, Message> byHash = new ConcurrentHashMap<>();
+    private final Map<String, Map<Integer, Message>> byRecipient = new ConcurrentHashMap<>();
+
+    // Every hash and ID handed out, as tracked by the original arrays: in the order they
+    // were registered, repeats included. Hashes are keyed by a registration sequence, and
+    // hashSequences holds each hash's sequences oldest first, so removing a hash drops its
+    // first occurrence, like ArrayList.remove did, in O(log n). A hash's sequences are
+    // only touched inside compute on hashSequences, which keeps them in order.
+    private final ConcurrentSkipListMap<Long, String> messageHashes = new ConcurrentSkipListMap<>();
+    private final Map<String, ArrayDeque<Long>> hashSequences = new ConcurrentHashMap<>();
+    private final AtomicLong hashSequence = new AtomicLong();
+    private final Queue<String> messageIDs = new ConcurrentLinkedQueue<>();
+
+    private final ReentrantLock[] locks = new ReentrantLock[STRIPES];
+
+    // Kept up to date under the same locks by add, the removals and clear
+    private final MessageStatistics statistics = new MessageStatistics();
+
+    public MessageStore() {
+        for (int i = 0; i < STRIPES; i++) {
+            locks[i] = new ReentrantLock();
+        }
+    }
+
+    private ReentrantLock lockFor(Message message) {
+        return locks[message.getMessageCount() & (STRIPES - 1)];
+    }
+
+    public void registerID(String messageID) {
+        messageIDs.add(messageID);
+    }
+
+    public void registerHash(String messageHash) {
+        hashSequences.compute(messageHash, (hash, sequences) -> {
+            // Most hashes are registered once, so the deque starts at its smallest
+            ArrayDeque<Long> updated = sequences != null ? sequences : new ArrayDeque<>(1);
+            long sequence = hashSequence.incrementAndGet();
+            updated.addLast(sequence);
+            messageHashes.put(sequence, hash);
+            return updated;
+        });
+    }
+
+    // Drops the first registration of the hash, if there is one
+    private void unregisterHash(String messageHash) {
+        hashSequences.computeIfPresent(messageHash, (hash, sequences) -> {
+            messageHashes.remove(sequences.pollFirst());
+            return sequences.isEmpty() ? null : sequences;
+        });
+    }
+
+    public void add(Category category, Message message) {
+        ReentrantLock lock = lockFor(message);
+        lock.lock();
+        try {
+            if (categoryMap(category).put(message.getMessageCount(), message) == null) {
+                categoryCount(category).incrementAndGet();
+            }
+            statistics.added(category, message);
+            if (category == Category.DISREGARDED) {
+                return;
+            }
+            byID.put(message.getMessageID(), message);
+            if (message.getMessageHash() != null) {
+                byHash.put(message.getMessageHash(), message);
+            }
+            if (message.getRecipient() != null) {
+                byRecipient.compute(message.getRecipient(), (recipient, messages) -> {
+                    Map<Integer, Message> updated = messages != null ? messages : new ConcurrentSkipListMap<>();
+                    updated.put(message.getMessageCount(), message);
+                    return updated;
+                });
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // Bulk counterpart of registerID, registerHash and add, for filling an empty store as
+    // loading a snapshot does: entries.get(i) goes into entryCategories[i], and a message
+    // listed under several categories is registered once, at its first entry. Every
+    // stripe lock is held throughout, as in clear, so the maps are filled directly, with
+    // no per-message locking or compute. Returns false, changing nothing, if the store
+    // is not empty.
+    boolean restoreAll(List<Message> entries, Category[] entryCategories) {
+        for (ReentrantLock lock : locks) {
+            lock.lock();
+        }
+        try {
+            if (sentCount.get() + storedCount.get() + disregardedCount.get() > 0
+                    || !messageHashes.isEmpty() || !messageIDs.isEmpty()) {
+                return false;
+            }
+            List<String> registeredIDs = new ArrayList<>(entries.size());
+            Set<Message> registered = Collections.newSetFromMap(new IdentityHashMap<>(entries.size()));
+            for (int i = 0; i < entries.size(); i++) {
+                Message message = entries.get(i);
+                Category category = entryCategories[i];
+                if (categoryMap(category).put(message.getMessageCount(), message) == null) {
+                    categoryCount(category).incrementAndGet();
+                }
+                if (registered.add(message)) {
+                    registeredIDs.add(message.getMessageID());
+                    if (message.getMessageHash() != null) {
+                        long sequence = hashSequence.incrementAndGet();
+                        messageHashes.put(sequence, message.getMessageHash());
+                        hashSequences.computeIfAbsent(message.getMessageHash(), hash -> new ArrayDeque<>(1))
+                                .addLast(sequence);
+                    }
+                }
+                if (category == Category.DISREGARDED) {
+                    continue;
+                }
+                byID.put(message.getMessageID(), message);
+                if (message.getMessageHash() != null) {
+                    byHash.put(message.getMessageHash(), message);
+                }
+                if (message.getRecipient() != null) {
+                    byRecipient.computeIfAbsent(message.getRecipient(), recipient -> new ConcurrentSkipListMap<>())
+                            .put(message.getMessageCount(), message);
+                }
+            }
+            messageIDs.addAll(registeredIDs);
+            statistics.restoreAll(entries, entryCategories);
+            return true;
+        } finally {
+            for (ReentrantLock lock : locks) {
+                lock.unlock();
+            }
+        }
+    }
+
+    // Sent or stored message with this ID, or null
+    public Message findByID(String messageID) {
+        return byID.get(messageID);
+    }
+
+    // Whether a message in any category already has this count
+    public boolean hasCount(int messageCount) {
+        return sent.containsKey(messageCount) || stored.containsKey(messageCount)
+                || disregarded.containsKey(messageCount);
+    }
+
+    public boolean isSent(Message message) {
+        return sent.get(message.getMessageCount()) == message;
+    }
+
+    // Sent and stored messages for a recipient: sent ones first, each in creation order
+    public List<Message> findByRecipient(String recipient) {
+        Map<Integer, Message> matches = byRecipient.get(recipient);
+        if (matches == null) {
+            return Collections.emptyList();
+        }
+        List<Message> found = new ArrayList<>();
+        for (Message msg : matches.values()) {
+            if (sent.get(msg.getMessageCount()) == msg) {
+                found.add(msg);
+            }
+        }
+        for (Message msg : matches.values()) {
+            if (stored.get(msg.getMessageCount()) == msg) {
+                found.add(msg);
+            }
+        }
+        return found;
+    }
+
+    // Removes the message with this hash from sent (or, failing that, stored) messages
+    public Message removeByHash(String messageHash) {
+        return remove(messageHash, false);
+    }
+
+    // Removes the message with this hash from sent and from stored messages alike, as
+    // deleting or replacing a message as a whole needs; null if it was in neither
+    public Message removeAllByHash(String messageHash) {
+        return remove(messageHash, true);
+    }
+
+    private Message remove(String messageHash, boolean fromBoth) {
+        Message message = byHash.get(messageHash);
+        if (message == null) {
+            return null;
+        }
+        ReentrantLock lock = lockFor(message);
+        lock.lock();
+        try {
+            // The hash is re-checked because a message's text can change after it was indexed
+            if (!messageHash.equals(message.getMessageHash())) {
+                return null;
+            }
+            boolean removed = false;
+            if (sent.remove(message.getMessageCount(), message)) {
+                sentCount.decrementAndGet();
+                statistics.removed(Category.SENT, message);
+                removed = true;
+            }
+            if ((fromBoth || !removed) && stored.remove(message.getMessageCount(), message)) {
+                storedCount.decrementAndGet();
+                statistics.removed(Category.STORED, message);
+                removed = true;
+            }
+            if (!removed) {
+                return null;
+            }
+            if (sent.get(message.getMessageCount()) != message && stored.get(message.getMessageCount()) != message) {
+                // Only once the message has left both sent and stored messages
+                unregisterHash(messageHash);
+                byHash.remove(messageHash, message);
+                byID.remove(message.getMessageID(), message);
+                byRecipient.computeIfPresent(message.getRecipient(), (recipient, messages) -> {
+                    messages.remove(message.getMessageCount(), message);
+                    return messages.isEmpty() ? null : messages;
+                });
+            }
+            return message;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public MessageStatistics statistics() {
+        return statistics;
+    }
+
+    // Read-only view of a category in creation order; safe to iterate while other threads add
+    public Collection<Message> view(Category category) {
+        return Collections.unmodifiableCollection(categoryMap(category).values());
+    }
+
+    public int count(Category category) {
+        return categoryCount(category).get();
+    }
+
+    // Up to limit messages of a category from position offset, in creation order.
+    // Walks past the first offset messages, so pages are cheap near the start.
+    public List<Message> page(Category category, int offset, int limit) {
+        List<Message> page = new ArrayList<>(Math.min(limit, 1024));
+        int position = 0;
+        for (Message message : categoryMap(category).values()) {
+            if (page.size() >= limit) {
+                break;
+            }
+            if (position++ >= offset) {
+                page.add(message);
+            }
+        }
+        return page;
+    }
+
+    // Lazily evaluated stream over a category in creation order
+    public Stream<Message> stream(Category category) {
+        return categoryMap(category).values().stream();
+    }
+
+    // Snapshots in list form, as exposed by the original arrays
+    public List<Message> list(Category category) {
+        return new ArrayList<>(categoryMap(category).values());
+    }
+
+    public List<String> hashes() {
+        return new ArrayList<>(messageHashes.values());
+    }
+
+    public List<String> ids() {
+        return new ArrayList<>(messageIDs);
+    }
+
+    // Not atomic with respect to concurrent adds; meant for resetting test data
+    public void clear() {
+        for (ReentrantLock lock : locks) {
+            lock.lock();
+        }
+        try {
+            sent.clear();
+            stored.clear();
+            disregarded.clear();
+            sentCount.set(0);
+            storedCount.set(0);
+            disregardedCount.set(0);
+            byID.clear();
+            byHash.clear();
+            byRecipient.clear();
+            messageHashes.clear();
+            hashSequences.clear();
+            messageIDs.clear();
+            statistics.clear();
+        } finally {
+            for (ReentrantLock lock : locks) {
+                lock.unlock();
+            }
+        }
+    }
+
+    private Map<Integer, Message> categoryMap(Category category) {
+        switch (category) {
+            case SENT: return sent;
+            case STORED: return stored;
+            default: return disregarded;
+        }
+    }
+
+    private AtomicInteger categoryCount(Category category) {
+        switch (category) {
+            case SENT: return sentCount;
+            case STORED: return storedCount;
+            default: return disregardedCount;
+        }
+    }
+}
@@ -0,0 +1,200 @@
+package quickchatapp;
+
+import javax.swing.SwingWorker;
+import javax.swing.table.AbstractTableModel;
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+
+// Table model that loads its rows a page at a time. Only the first page is read when the
+// table opens; further pages are read when the table asks for a row near the end of what
+// has been loaded, so the row count grows as the user scrolls. Those pages are read on a
+// SwingWorker thread and added on the EDT; the model itself must be used on the EDT.
+// The model holds an open source, so it is never serialized although Swing's table
+// models are Serializable.
+public class MessageTableModel<T> extends AbstractTableModel implements Closeable {
+    private static final long serialVersionUID = 1L;
+    static final int PAGE_SIZE = 256;
+
+    // Supplies rows in display order, a page at a time
+    public interface RowSource<T> extends Closeable {
+        // Up to limit further rows; an empty list once there are no more
+        List<T> next(int limit) throws IOException;
+
+        @Override
+        default void close() throws IOException {
+        }
+    }
+
+    // The value shown in one column for a row
+    public interface Column<T> {
+        Object value(T row);
+    }
+
+    private final transient RowSource<T> source;
+    private final String[] columnNames;
+    private final transient List<Column<T>> columns;
+    private final transient List<T> rows = new ArrayList<>();
+    private boolean exhausted;
+    private boolean loadPending;
+
+    private MessageTableModel(RowSource<T> source, String[] columnNames, List<Column<T>> columns) {
+        if (columnNames.length != columns.size()) {
+            throw new IllegalArgumentException("Every column needs a name.");
+        }
+        this.source = source;
+        this.columnNames = columnNames.clone();
+        this.columns = List.copyOf(columns);
+    }
+
+    // A model over the source with its first page already read
+    public static <T> MessageTableModel<T> open(RowSource<T> source, String[] columnNames, List<Column<T>> columns) {
+        MessageTableModel<T> model = new MessageTableModel<>(source, columnNames, columns);
+        model.loadPage();
+        return model;
+    }
+
+    // Every record in the archive, as listed by JSONHandler.getAllMessages
+    public static MessageTableModel<MessageRecord> storedMessages() throws IOException {
+        MessageCursor cursor = JSONHandler.openCursor();
+        RowSource<MessageRecord> source = new RowSource<MessageRecord>() {
+            @Override
+            public List<MessageRecord> next(int limit) throws IOException {
+                // Tombstones are left out, so a page is read on until it has a row to show
+                List<MessageRecord> page = new ArrayList<>();
+                List<MessageRecord> read;
+                while (page.isEmpty() && !(read = cursor.next(limit)).isEmpty()) {
+                    for (MessageRecord record : read) {
+                        if (!record.isDeleted()) {
+                            page.add(record);
+                        }
+                    }
+                }
+                return page;
+            }
+
+            @Override
+            public void close() throws IOException {
+                cursor.close();
+            }
+        };
+        return open(source,
+                new String[] {"ID", "Recipient", "Status", "Timestamp"},
+                List.of(MessageRecord::getMessageID, MessageRecord::getRecipient,
+                        MessageRecord::getStatus, MessageRecord::getTimestamp));
+    }
+
+    // Sent messages in the order they were created
+    public static MessageTableModel<Message> sentMessages() {
+        Iterator<Message> sent = Message.streamSentMessages().iterator();
+        RowSource<Message> source = limit -> {
+            List<Message> page = new ArrayList<>(Math.min(limit, PAGE_SIZE));
+            while (page.size() < limit && sent.hasNext()) {
+                page.add(sent.next());
+            }
+            return page;
+        };
+        return open(source,
+                new String[] {"To", "Message"},
+                List.of(Message::getRecipient, Message::getMessage));
+    }
+
+    @Override
+    public int getRowCount() {
+        return rows.size();
+    }
+
+    @Override
+    public int getColumnCount() {
+        return columns.size();
+    }
+
+    @Override
+    public String getColumnName(int column) {
+        return columnNames[column];
+    }
+
+    @Override
+    public Object getValueAt(int rowIndex, int columnIndex) {
+        if (rowIndex >= rows.size() - PAGE_SIZE / 4 && !exhausted && !loadPending) {
+            // The table is painting rows near the end: read the next page in the background
+            loadPending = true;
+            new SwingWorker<List<T>, Void>() {
+                @Override
+                protected List<T> doInBackground() throws IOException {
+                    return source.next(PAGE_SIZE);
+                }
+
+                @Override
+                protected void done() {
+                    try {
+                        addPage(get());
+                    } catch (InterruptedException | ExecutionException e) {
+                        System.err.println("Error loading messages: " + e.getMessage());
+                        addPage(List.of());
+                    }
+                }
+            }.execute();
+        }
+        return columns.get(columnIndex).value(rows.get(rowIndex));
+    }
+
+    // True once every row of the source has been loaded
+    public boolean isComplete() {
+        return exhausted;
+    }
+
+    // Reads the next page of rows on the calling thread, if any; returns how many were added
+    public int loadPage() {
+        if (exhausted || loadPending) {
+            // A page being read in the background has the source to itself
+            return 0;
+        }
+        List<T> page;
+        try {
+            page = source.next(PAGE_SIZE);
+        } catch (IOException e) {
+            System.err.println("Error loading messages: " + e.getMessage());
+            page = List.of();
+        }
+        return addPage(page);
+    }
+
+    private int addPage(List<T> page) {
+        loadPending = false;
+        if (exhausted) {
+            // Closed while the page was being read: close left the source to us
+            closeSource();
+            return 0;
+        }
+        if (page.isEmpty()) {
+            close();
+            return 0;
+        }
+        int first = rows.size();
+        rows.addAll(page);
+        fireTableRowsInserted(first, rows.size() - 1);
+        return page.size();
+    }
+
+    // While a page is being read in the background the source stays open, and the
+    // worker closes it when it is done
+    @Override
+    public void close() {
+        exhausted = true;
+        if (!loadPending) {
+            closeSource();
+        }
+    }
+
+    private void closeSource() {
+        try {
+            source.close();
+        } catch (IOException e) {
+            System.err.println("Error closing messages: " + e.getMessage());
+        }
+    }
+}
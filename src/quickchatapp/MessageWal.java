@@ -0,0 +1,302 @@
+package quickchatapp;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+import java.util.zip.CRC32C;
+
+// Write-ahead log for the JSON_ARRAY archive. Stores append here instead of rewriting
+// messages.json; a checkpoint later folds the logged records into messages.json and
+// empties the log. Each record is framed as
+//   4 bytes  payload length
+//   8 bytes  sequence number, one more than the record before it
+//   4 bytes  CRC32C of the sequence number and the payload
+//   payload  the message in BinaryMessageCodec form
+// Opening the log recovers it: records are read from the start until one is cut short,
+// fails its checksum or is out of sequence, and the file is truncated there, so a crash
+// in the middle of an append loses that append and nothing before it. Sequence numbers
+// let the owner tell which records a checkpoint already covered (see continueAfter).
+public class MessageWal implements Closeable {
+    static final int HEADER_BYTES = 16;
+    private static final int MAX_PAYLOAD_BYTES = 16 * 1024 * 1024;
+    private static final int READ_BUFFER_SIZE = 64 * 1024;
+
+    // Moves the logged records somewhere durable before the log is emptied
+    public interface Checkpoint {
+        void apply(MessageWal wal) throws IOException;
+    }
+
+    // Works on the logged records while no append or checkpoint can change them
+    public interface Capture<T> {
+        T apply(List<MessageRecord> records) throws IOException;
+    }
+
+    private interface RecordAction {
+        void accept(long sequence, ByteBuffer payload) throws IOException;
+    }
+
+    private final Path path;
+    private final FileChannel channel;
+    private final CRC32C crc = new CRC32C();
+    private final int recoveredRecords;
+    private final long truncatedBytes;
+    private final long recoveryNanos;
+    private long position;
+    private int records;
+    private long lastSequence;
+    // Guards position, the record count, the sequence and the checksum
+    private final ReentrantLock lock = new ReentrantLock();
+
+    public MessageWal(Path path) throws IOException {
+        long start = System.nanoTime();
+        this.path = path;
+        this.channel = FileChannel.open(path, StandardOpenOption.CREATE,
+                StandardOpenOption.READ, StandardOpenOption.WRITE);
+        long size = channel.size();
+        position = scan((sequence, payload) -> {
+            records++;
+            lastSequence = sequence;
+        });
+        truncatedBytes = size - position;
+        if (truncatedBytes > 0) {
+            // Drop the torn tail so the next append follows the last intact record
+            channel.truncate(position);
+            channel.force(true);
+        }
+        recoveredRecords = records;
+        recoveryNanos = System.nanoTime() - start;
+    }
+
+    // Appends the records with one write and returns the sequence number of the last one
+    public long appendAll(List<MessageRecord> batch) throws IOException {
+        lock.lock();
+        try {
+            byte[][] payloads = new byte[batch.size()][];
+            int total = 0;
+            for (int i = 0; i < payloads.length; i++) {
+                payloads[i] = BinaryMessageCodec.encode(batch.get(i));
+                total += HEADER_BYTES + payloads[i].length;
+            }
+            ByteBuffer buffer = ByteBuffer.allocate(total);
+            long sequence = lastSequence;
+            for (byte[] payload : payloads) {
+                sequence++;
+                buffer.putInt(payload.length).putLong(sequence).putInt(checksum(sequence, ByteBuffer.wrap(payload)));
+                buffer.put(payload);
+            }
+            buffer.flip();
+            long start = position;
+            try {
+                while (buffer.hasRemaining()) {
+                    position += channel.write(buffer, position);
+                }
+            } catch (IOException e) {
+                // Cut off a partial write so that later appends are not stranded behind it
+                position = start;
+                channel.truncate(start);
+                throw e;
+            }
+            records += payloads.length;
+            lastSequence = sequence;
+            return sequence;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // Forces appended records to the storage device
+    public void sync() throws IOException {
+        channel.force(false);
+    }
+
+    // Reads every logged record, oldest first
+    public void forEachRecord(Consumer<MessageRecord> action) throws IOException {
+        forEachRecordAfter(0, action);
+    }
+
+    // Reads the logged records with a sequence number above sequence, oldest first
+    public void forEachRecordAfter(long sequence, Consumer<MessageRecord> action) throws IOException {
+        lock.lock();
+        try {
+            scan((recordSequence, payload) -> {
+                if (recordSequence <= sequence) {
+                    return;
+                }
+                MessageRecord record = BinaryMessageCodec.decode(payload);
+                if (record == null) {
+                    throw new IOException("Corrupt record " + recordSequence + " in " + path);
+                }
+                action.accept(record);
+            });
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // Runs action on the records after sequence. Neither appends nor checkpoints happen
+    // meanwhile, so whatever else the action opens matches the records it is given.
+    public <T> T capture(long sequence, Capture<T> action) throws IOException {
+        lock.lock();
+        try {
+            List<MessageRecord> records = new ArrayList<>();
+            forEachRecordAfter(sequence, records::add);
+            return action.apply(records);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // Numbers the next append after sequence, if it is not already past it. Used when the
+    // records up to sequence were checkpointed by an earlier run, so numbering goes on
+    // from there even though the log was emptied. A log still holding records must
+    // already be past sequence, or its numbering would have a gap.
+    public void continueAfter(long sequence) {
+        lock.lock();
+        try {
+            if (records > 0 && lastSequence < sequence) {
+                throw new IllegalStateException("Log ends at record " + lastSequence + ", before " + sequence);
+            }
+            lastSequence = Math.max(lastSequence, sequence);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // Sequence number of the newest record appended, or the one continueAfter set
+    public long lastSequence() {
+        lock.lock();
+        try {
+            return lastSequence;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // Runs the checkpoint and, once it has returned, empties the log. Appends wait
+    // meanwhile, so no record can slip in between the two. Sequence numbers carry on.
+    public void checkpoint(Checkpoint action) throws IOException {
+        lock.lock();
+        try {
+            if (records == 0) {
+                return;
+            }
+            action.apply(this);
+            channel.truncate(0);
+            channel.force(true);
+            position = 0;
+            records = 0;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private int checksum(long sequence, ByteBuffer payload) {
+        crc.reset();
+        ByteBuffer header = ByteBuffer.allocate(8).putLong(sequence);
+        header.flip();
+        crc.update(header);
+        crc.update(payload);
+        return (int) crc.getValue();
+    }
+
+    // Walks the intact records from the start of the file and returns the offset just
+    // past the last one
+    private long scan(RecordAction action) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(READ_BUFFER_SIZE);
+        buffer.limit(0);
+        long readPosition = 0;
+        long previous = -1;
+        while (true) {
+            // Make sure the header, and then the whole record, is in the buffer
+            int needed = HEADER_BYTES;
+            int length = -1;
+            while (true) {
+                if (buffer.remaining() < needed) {
+                    if (buffer.capacity() < needed) {
+                        ByteBuffer larger = ByteBuffer.allocate(Math.max(needed, buffer.capacity() * 2));
+                        larger.put(buffer);
+                        buffer = larger;
+                    } else {
+                        buffer.compact();
+                    }
+                    while (buffer.hasRemaining()) {
+                        int read = channel.read(buffer, readPosition);
+                        if (read <= 0) {
+                            break;
+                        }
+                        readPosition += read;
+                    }
+                    buffer.flip();
+                    if (buffer.remaining() < needed) {
+                        return readPosition - buffer.remaining();
+                    }
+                }
+                if (length >= 0) {
+                    break;
+                }
+                length = buffer.getInt(buffer.position());
+                if (length < 1 || length > MAX_PAYLOAD_BYTES) {
+                    return readPosition - buffer.remaining();
+                }
+                needed = HEADER_BYTES + length;
+            }
+            int start = buffer.position();
+            long sequence = buffer.getLong(start + 4);
+            int expected = buffer.getInt(start + 12);
+            ByteBuffer payload = buffer.duplicate();
+            payload.limit(start + HEADER_BYTES + length).position(start + HEADER_BYTES);
+            if ((previous >= 0 && sequence != previous + 1) || checksum(sequence, payload.duplicate()) != expected) {
+                return readPosition - buffer.remaining();
+            }
+            action.accept(sequence, payload);
+            buffer.position(start + HEADER_BYTES + length);
+            previous = sequence;
+        }
+    }
+
+    // Records in the log, waiting for the next checkpoint
+    public int size() {
+        lock.lock();
+        try {
+            return records;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // Intact records found when the log was opened
+    public int getRecoveredRecords() {
+        return recoveredRecords;
+    }
+
+    // Bytes of torn or corrupt tail cut off when the log was opened
+    public long getTruncatedBytes() {
+        return truncatedBytes;
+    }
+
+    // Time spent checking and truncating the log when it was opened
+    public long getRecoveryNanos() {
+        return recoveryNanos;
+    }
+
+    public Path getPath() {
+        return path;
+    }
+
+    @Override
+    public void close() throws IOException {
+        lock.lock();
+        try {
+            channel.close();
+        } finally {
+            lock.unlock();
+        }
+    }
+}
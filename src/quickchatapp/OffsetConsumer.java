@@ -0,0 +1,7 @@
+package quickchatapp;
+
+// Receives a record together with the file offset it starts at
+@FunctionalInterface
+public interface OffsetConsumer<T> {
+    void accept(long offset, T record);
+}
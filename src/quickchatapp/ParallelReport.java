@@ -0,0 +1,294 @@
+package quickchatapp;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+// Builds large reports on a ForkJoinPool. The input (an in-memory list, or a JSON Lines
+// file split at line boundaries) is divided in halves until the pieces are small, each
+// piece is formatted into its own StringBuilder, and the pieces are appended in input
+// order, so the output is identical to the sequential loop. Inputs below one chunk,
+// or a parallelism of 1, take the sequential path. The same file splitting is used to
+// read whole archives into memory at startup.
+public final class ParallelReport {
+    // Formats one item of the report
+    public interface Formatter<T> {
+        void append(StringBuilder sb, T item);
+    }
+
+    // What each file chunk produces: a StringBuilder for reports, a list for reading
+    private interface Piece<P> {
+        P create();
+        void add(P piece, MessageRecord record);
+    }
+
+    static final int LIST_CHUNK = 4096;
+    static final long FILE_CHUNK = 4L * 1024 * 1024;
+
+    private static volatile ForkJoinPool pool = createPool(
+            Integer.getInteger("quickchat.reportParallelism", Runtime.getRuntime().availableProcessors()));
+
+    private ParallelReport() {
+    }
+
+    private static ForkJoinPool createPool(int parallelism) {
+        return parallelism > 1 ? new ForkJoinPool(parallelism) : null;
+    }
+
+    // Number of threads used for reports; 1 formats everything on the calling thread
+    public static synchronized void setParallelism(int parallelism) {
+        if (parallelism < 1) {
+            throw new IllegalArgumentException("Parallelism must be at least 1.");
+        }
+        ForkJoinPool old = pool;
+        pool = createPool(parallelism);
+        if (old != null) {
+            old.shutdown();
+        }
+    }
+
+    public static int getParallelism() {
+        ForkJoinPool current = pool;
+        return current == null ? 1 : current.getParallelism();
+    }
+
+    public static <T> void formatList(StringBuilder out, List<T> items, Formatter<T> formatter) {
+        ForkJoinPool current = pool;
+        if (current == null || items.size() <= LIST_CHUNK) {
+            for (T item : items) {
+                formatter.append(out, item);
+            }
+            return;
+        }
+        for (StringBuilder piece : current.invoke(new ListChunk<>(items, 0, items.size(), formatter))) {
+            out.append(piece);
+        }
+    }
+
+    // Formats every record of a JSON Lines file (the append log or a segment)
+    public static void formatJsonLines(StringBuilder out, Path file, Formatter<MessageRecord> formatter)
+            throws IOException {
+        if (!Files.exists(file)) {
+            return;
+        }
+        Piece<StringBuilder> piece = new Piece<StringBuilder>() {
+            @Override
+            public StringBuilder create() {
+                return new StringBuilder();
+            }
+
+            @Override
+            public void add(StringBuilder sb, MessageRecord record) {
+                formatter.append(sb, record);
+            }
+        };
+        for (StringBuilder formatted : readPieces(List.of(file), piece)) {
+            out.append(formatted);
+        }
+    }
+
+    // Every record of the JSON Lines files in file order; with more than one thread,
+    // the files and the chunks of large files are parsed at the same time
+    public static List<MessageRecord> readJsonLines(List<Path> files) throws IOException {
+        Piece<List<MessageRecord>> piece = new Piece<List<MessageRecord>>() {
+            @Override
+            public List<MessageRecord> create() {
+                return new ArrayList<>();
+            }
+
+            @Override
+            public void add(List<MessageRecord> records, MessageRecord record) {
+                records.add(record);
+            }
+        };
+        List<MessageRecord> records = new ArrayList<>();
+        for (List<MessageRecord> chunk : readPieces(files, piece)) {
+            records.addAll(chunk);
+        }
+        return records;
+    }
+
+    private static <P> List<P> readPieces(List<Path> files, Piece<P> piece) throws IOException {
+        ForkJoinPool current = pool;
+        List<FileChannel> channels = new ArrayList<>();
+        try {
+            List<FileChunk<P>> chunks = new ArrayList<>();
+            for (Path file : files) {
+                if (Files.exists(file)) {
+                    FileChannel channel = FileChannel.open(file, StandardOpenOption.READ);
+                    channels.add(channel);
+                    chunks.add(new FileChunk<>(channel, 0, channel.size(), piece));
+                }
+            }
+            List<P> pieces = new ArrayList<>();
+            if (current == null) {
+                for (FileChunk<P> chunk : chunks) {
+                    P whole = piece.create();
+                    readRange(whole, chunk.channel, chunk.start, chunk.end, piece);
+                    pieces.add(whole);
+                }
+                return pieces;
+            }
+            for (FileChunk<P> chunk : chunks) {
+                current.execute(chunk);
+            }
+            for (FileChunk<P> chunk : chunks) {
+                pieces.addAll(chunk.join());
+            }
+            return pieces;
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        } finally {
+            for (FileChannel channel : channels) {
+                channel.close();
+            }
+        }
+    }
+
+    // ForkJoinTask is Serializable, but these tasks never leave the pool that runs them
+    private static final class ListChunk<T> extends RecursiveTask<List<StringBuilder>> {
+        private static final long serialVersionUID = 1L;
+        private final transient List<T> items;
+        private final int from;
+        private final int to;
+        private final transient Formatter<T> formatter;
+
+        ListChunk(List<T> items, int from, int to, Formatter<T> formatter) {
+            this.items = items;
+            this.from = from;
+            this.to = to;
+            this.formatter = formatter;
+        }
+
+        @Override
+        protected List<StringBuilder> compute() {
+            if (to - from <= LIST_CHUNK) {
+                StringBuilder sb = new StringBuilder();
+                for (int i = from; i < to; i++) {
+                    formatter.append(sb, items.get(i));
+                }
+                List<StringBuilder> pieces = new ArrayList<>();
+                pieces.add(sb);
+                return pieces;
+            }
+            int mid = (from + to) >>> 1;
+            ListChunk<T> left = new ListChunk<>(items, from, mid, formatter);
+            left.fork();
+            List<StringBuilder> right = new ListChunk<>(items, mid, to, formatter).compute();
+            List<StringBuilder> pieces = left.join();
+            pieces.addAll(right);
+            return pieces;
+        }
+    }
+
+    // A byte range of the file that starts at the beginning of a line
+    private static final class FileChunk<P> extends RecursiveTask<List<P>> {
+        private static final long serialVersionUID = 1L;
+        private final transient FileChannel channel;
+        private final long start;
+        private final long end;
+        private final transient Piece<P> piece;
+
+        FileChunk(FileChannel channel, long start, long end, Piece<P> piece) {
+            this.channel = channel;
+            this.start = start;
+            this.end = end;
+            this.piece = piece;
+        }
+
+        @Override
+        protected List<P> compute() {
+            try {
+                long mid = end - start > FILE_CHUNK ? nextLineStart(channel, (start + end) >>> 1, end) : end;
+                if (mid >= end) {
+                    P whole = piece.create();
+                    readRange(whole, channel, start, end, piece);
+                    List<P> pieces = new ArrayList<>();
+                    pieces.add(whole);
+                    return pieces;
+                }
+                FileChunk<P> left = new FileChunk<>(channel, start, mid, piece);
+                left.fork();
+                List<P> right = new FileChunk<>(channel, mid, end, piece).compute();
+                List<P> pieces = left.join();
+                pieces.addAll(right);
+                return pieces;
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+    }
+
+    // Offset just after the first newline at or after position, or end if there is none
+    private static long nextLineStart(FileChannel channel, long position, long end) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(4096);
+        while (position < end) {
+            buffer.clear();
+            int read = channel.read(buffer, position);
+            if (read <= 0) {
+                break;
+            }
+            for (int i = 0; i < read; i++) {
+                if (buffer.get(i) == '\n') {
+                    return Math.min(position + i + 1, end);
+                }
+            }
+            position += read;
+        }
+        return end;
+    }
+
+    private static <P> void readRange(P out, FileChannel channel, long start, long end,
+                                      Piece<P> piece) throws IOException {
+        try (MessageJsonReader reader = new MessageJsonReader(new InputStreamReader(
+                new RangeInputStream(channel, start, end), StandardCharsets.UTF_8))) {
+            MessageRecord record;
+            while ((record = reader.next()) != null) {
+                piece.add(out, record);
+            }
+        }
+    }
+
+    // Positional reads of [start, end); the channel is shared by all chunks and not closed here
+    private static final class RangeInputStream extends InputStream {
+        private final FileChannel channel;
+        private long position;
+        private final long end;
+
+        RangeInputStream(FileChannel channel, long start, long end) {
+            this.channel = channel;
+            this.position = start;
+            this.end = end;
+        }
+
+        @Override
+        public int read() throws IOException {
+            byte[] one = new byte[1];
+            return read(one, 0, 1) < 0 ? -1 : one[0] & 0xFF;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            if (position >= end) {
+                return -1;
+            }
+            int wanted = (int) Math.min(len, end - position);
+            int read = channel.read(ByteBuffer.wrap(b, off, wanted), position);
+            if (read > 0) {
+                position += read;
+            }
+            return read;
+        }
+    }
+}
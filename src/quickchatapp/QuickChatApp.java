@@ -3,9 +3,13 @@ package quickchatapp;
 import javax.swing.*;
 import java.awt.*;
 import java.awt.event.*;
-import java.util.regex.Pattern;
+import java.io.IOException;
 
 public class QuickChatApp {
+    // Compact at startup only once at least this many stale records have built up and
+    // they outnumber the live messages; otherwise the rewrite costs more than it saves
+    private static final int COMPACT_MIN_STALE_RECORDS = 1000;
+
     private String username;
     private String password;
     private String cellNumber;
@@ -15,6 +19,33 @@ public class QuickChatApp {
 
     // === GUI Entry Point ===
     public static void main(String[] args) {
+        MessageHistory.Result history = null;
+        try {
+            // Replay messages stored by a run that ended before they reached messages.json
+            JSONHandler.recover();
+            // Earlier messages become searchable and count towards the reports again
+            history = MessageHistory.load();
+            System.out.println(history);
+        } catch (IOException e) {
+            System.err.println("Error loading earlier messages: " + e.getMessage());
+        }
+        // Keeps the next startup's replay short; -Dquickchat.snapshotSeconds=0 turns it off
+        long snapshotSeconds = Long.getLong("quickchat.snapshotSeconds", 60);
+        if (snapshotSeconds > 0) {
+            MessageHistory.startPeriodicSnapshots(snapshotSeconds);
+        }
+        if (args != null && args.length > 0 && args[0].equals("--ingest")) {
+            // Headless bulk send from a file; see BatchIngest
+            BatchIngest.main(args);
+            return;
+        }
+        // Persist sends/stores on a background writer instead of the event dispatch thread
+        JSONHandler.enableBatching(1024, 64, 5);
+        // Drop duplicate and deleted records left by earlier runs, off the startup path
+        if (history != null && history.getStaleRecords() >= COMPACT_MIN_STALE_RECORDS
+                && history.getStaleRecords() > history.getLoaded()) {
+            JSONHandler.compactAsync();
+        }
         SwingUtilities.invokeLater(() -> {
             QuickChatApp app = new QuickChatApp();
             app.showMainMenu();
@@ -57,9 +88,9 @@ public class QuickChatApp {
         testDataBtn.addActionListener(e -> {
             Message.populateWithTestData();
             JOptionPane.showMessageDialog(frame, "Test data loaded successfully!\n\n" +
-                    "Sent Messages: " + Message.getSentMessages().size() + "\n" +
-                    "Stored Messages: " + Message.getStoredMessages().size() + "\n" +
-                    "Disregarded Messages: " + Message.getDisregardedMessages().size());
+                    "Sent Messages: " + Message.getStore().count(MessageStore.Category.SENT) + "\n" +
+                    "Stored Messages: " + Message.getStore().count(MessageStore.Category.STORED) + "\n" +
+                    "Disregarded Messages: " + Message.getStore().count(MessageStore.Category.DISREGARDED));
         });
         quitBtn.addActionListener(e -> {
             JOptionPane.showMessageDialog(frame, "Thank you for using QuickChat. Goodbye!");
@@ -112,8 +143,10 @@ public class QuickChatApp {
 
             message.setRecipient(recipient);
             message.setMessage(text);
-            String result = message.sentMessage(1); // Send
-            JOptionPane.showMessageDialog(sendFrame, result + "\n\n" + message.printMessages(), "Message Sent", JOptionPane.INFORMATION_MESSAGE);
+            BackgroundTask.startUncancellable(sendFrame, "Sending message", () -> message.sentMessage(1), result -> { // Send
+                JOptionPane.showMessageDialog(sendFrame, result + "\n\n" + message.printMessages(), "Message Sent", JOptionPane.INFORMATION_MESSAGE);
+                reportPersistFailure(sendFrame, message);
+            });
         });
 
         storeBtn.addActionListener(e -> {
@@ -127,8 +160,10 @@ public class QuickChatApp {
 
             message.setRecipient(recipient);
             message.setMessage(text);
-            String result = message.sentMessage(3); // Store
-            JOptionPane.showMessageDialog(sendFrame, result, "Stored", JOptionPane.INFORMATION_MESSAGE);
+            BackgroundTask.startUncancellable(sendFrame, "Storing message", () -> message.sentMessage(3), result -> { // Store
+                JOptionPane.showMessageDialog(sendFrame, result, "Stored", JOptionPane.INFORMATION_MESSAGE);
+                reportPersistFailure(sendFrame, message);
+            });
         });
 
         discardBtn.addActionListener(e -> {
@@ -148,32 +183,49 @@ public class QuickChatApp {
         });
     }
 
+    // Writes happen in the background, so a failed save is reported when it completes
+    private void reportPersistFailure(JFrame parent, Message message) {
+        message.whenPersisted().exceptionally(ex -> {
+            SwingUtilities.invokeLater(() -> JOptionPane.showMessageDialog(parent,
+                    "Message could not be saved: " + ex.getMessage(), "Error", JOptionPane.ERROR_MESSAGE));
+            return null;
+        });
+    }
+
     // === GUI: View Stored Messages ===
     private void viewStoredMessagesGUI() {
-        JFrame viewFrame = new JFrame("Stored Messages");
-        viewFrame.setSize(400, 300);
-
-        JTextArea messagesArea = new JTextArea();
-        messagesArea.setEditable(false);
-        messagesArea.setText(JSONHandler.getAllMessages());
-
-        viewFrame.add(new JScrollPane(messagesArea));
-        viewFrame.setLocationRelativeTo(null);
-        viewFrame.setVisible(true);
+        // Opening the archive and reading the first page touch the disk
+        BackgroundTask.start(null, "Reading messages", MessageTableModel::storedMessages,
+                model -> showMessageTable("Stored Messages", 500, 300, model, "No messages stored."));
     }
 
     // === GUI: Show Recent Messages ===
     private void showRecentMessagesGUI() {
-        JFrame recentFrame = new JFrame("Recently Sent Messages");
-        recentFrame.setSize(500, 400);
-
-        JTextArea messagesArea = new JTextArea();
-        messagesArea.setEditable(false);
-        messagesArea.setText(Message.displaySentMessagesSendersRecipients());
+        showMessageTable("Recently Sent Messages", 500, 400, MessageTableModel.sentMessages(), "No sent messages found.");
+    }
 
-        recentFrame.add(new JScrollPane(messagesArea));
-        recentFrame.setLocationRelativeTo(null);
-        recentFrame.setVisible(true);
+    // Rows are read page by page as the table scrolls, so the window opens at the same
+    // speed whatever the size of the history
+    private void showMessageTable(String title, int width, int height, MessageTableModel<?> model, String emptyText) {
+        JFrame tableFrame = new JFrame(title);
+        tableFrame.setSize(width, height);
+
+        if (model.getRowCount() == 0) {
+            tableFrame.add(new JLabel(emptyText, SwingConstants.CENTER));
+        } else {
+            JTable table = new JTable(model);
+            table.setFillsViewportHeight(true);
+            tableFrame.add(new JScrollPane(table));
+        }
+        tableFrame.addWindowListener(new WindowAdapter() {
+            @Override
+            public void windowClosed(WindowEvent e) {
+                model.close();
+            }
+        });
+        tableFrame.setDefaultCloseOperation(JFrame.DISPOSE_ON_CLOSE);
+        tableFrame.setLocationRelativeTo(null);
+        tableFrame.setVisible(true);
     }
 
     // === GUI: Array Operations & Reports ===
@@ -199,54 +251,54 @@ public class QuickChatApp {
         arrayFrame.add(closeBtn);
 
         // === Event Listeners for Array Operations ===
+        // Reports scan the whole history and searches may read the archive, so all of
+        // them run in the background with a cancellable progress dialog
         sentRecipientsBtn.addActionListener(e -> {
-            JTextArea resultArea = new JTextArea(Message.displaySentMessagesSendersRecipients());
-            resultArea.setEditable(false);
-            JOptionPane.showMessageDialog(arrayFrame, new JScrollPane(resultArea), 
-                    "Sent Messages - Senders & Recipients", JOptionPane.INFORMATION_MESSAGE);
+            BackgroundTask.start(arrayFrame, "Building report", () -> {
+                BackgroundTask.ReportBuffer report = new BackgroundTask.ReportBuffer();
+                Message.writeSentMessagesSendersRecipients(report);
+                return report.toString();
+            }, result -> showTextResult(arrayFrame, result, "Sent Messages - Senders & Recipients"));
         });
 
         longestMsgBtn.addActionListener(e -> {
-            JOptionPane.showMessageDialog(arrayFrame, Message.displayLongestSentMessage(), 
-                    "Longest Sent Message", JOptionPane.INFORMATION_MESSAGE);
+            BackgroundTask.start(arrayFrame, "Finding longest message", Message::displayLongestSentMessage,
+                    result -> JOptionPane.showMessageDialog(arrayFrame, result,
+                            "Longest Sent Message", JOptionPane.INFORMATION_MESSAGE));
         });
 
         searchByIdBtn.addActionListener(e -> {
             String searchID = JOptionPane.showInputDialog(arrayFrame, "Enter Message ID to search:");
             if (searchID != null && !searchID.trim().isEmpty()) {
-                String result = Message.searchMessageByID(searchID.trim());
-                JTextArea resultArea = new JTextArea(result);
-                resultArea.setEditable(false);
-                JOptionPane.showMessageDialog(arrayFrame, new JScrollPane(resultArea), 
-                        "Search Result", JOptionPane.INFORMATION_MESSAGE);
+                BackgroundTask.start(arrayFrame, "Searching", () -> Message.searchMessageByID(searchID.trim()),
+                        result -> showTextResult(arrayFrame, result, "Search Result"));
             }
         });
 
         searchByRecipientBtn.addActionListener(e -> {
             String recipient = JOptionPane.showInputDialog(arrayFrame, "Enter recipient number:");
             if (recipient != null && !recipient.trim().isEmpty()) {
-                String result = Message.searchMessagesByRecipient(recipient.trim());
-                JTextArea resultArea = new JTextArea(result);
-                resultArea.setEditable(false);
-                JOptionPane.showMessageDialog(arrayFrame, new JScrollPane(resultArea), 
-                        "Messages for Recipient", JOptionPane.INFORMATION_MESSAGE);
+                BackgroundTask.start(arrayFrame, "Searching", () -> {
+                    BackgroundTask.ReportBuffer report = new BackgroundTask.ReportBuffer();
+                    Message.writeMessagesByRecipient(recipient.trim(), report);
+                    return report.toString();
+                }, result -> showTextResult(arrayFrame, result, "Messages for Recipient"));
             }
         });
 
         deleteByHashBtn.addActionListener(e -> {
             String hash = JOptionPane.showInputDialog(arrayFrame, "Enter message hash to delete:");
             if (hash != null && !hash.trim().isEmpty()) {
-                String result = Message.deleteMessageByHash(hash.trim());
-                JOptionPane.showMessageDialog(arrayFrame, result, 
-                        "Delete Message", JOptionPane.INFORMATION_MESSAGE);
+                BackgroundTask.startUncancellable(arrayFrame, "Deleting message", () -> Message.deleteMessageByHash(hash.trim()),
+                        result -> JOptionPane.showMessageDialog(arrayFrame, result,
+                                "Delete Message", JOptionPane.INFORMATION_MESSAGE));
             }
         });
 
         fullReportBtn.addActionListener(e -> {
-            JTextArea resultArea = new JTextArea(Message.displayFullReport());
-            resultArea.setEditable(false);
-            JOptionPane.showMessageDialog(arrayFrame, new JScrollPane(resultArea), 
-                    "Full Message Report", JOptionPane.INFORMATION_MESSAGE);
+            // Formatted in parallel chunks; Cancel discards the result rather than stopping the chunks
+            BackgroundTask.start(arrayFrame, "Building report", Message::displayFullReport,
+                    result -> showTextResult(arrayFrame, result, "Full Message Report"));
         });
 
         closeBtn.addActionListener(e -> arrayFrame.dispose());
@@ -255,21 +307,23 @@ public class QuickChatApp {
         arrayFrame.setVisible(true);
     }
 
+    private void showTextResult(JFrame parent, String text, String title) {
+        JTextArea resultArea = new JTextArea(text);
+        resultArea.setEditable(false);
+        JOptionPane.showMessageDialog(parent, new JScrollPane(resultArea), title, JOptionPane.INFORMATION_MESSAGE);
+    }
+
     // === Validation Methods ===
     public boolean checkUsername(String username) {
-        return username.length() <= 5 && username.contains("_");
+        return Validators.isValidUsername(username);
     }
 
     public boolean checkPasswordComplexity(String password) {
-        if (password.length() < 8) return false;
-        if (!Pattern.compile("[A-Z]").matcher(password).find()) return false;
-        if (!Pattern.compile("[0-9]").matcher(password).find()) return false;
-        return Pattern.compile("[^A-Za-z0-9]").matcher(password).find();
+        return Validators.isComplexAsciiPassword(password);
     }
 
     public boolean checkCellPhoneNumber(String cellNumber) {
-        String pattern = "^\\+\\d{1,3}\\d{7,10}$";
-        return Pattern.matches(pattern, cellNumber);
+        return Validators.isInternationalCellNumber(cellNumber);
     }
 
     // === Login ===
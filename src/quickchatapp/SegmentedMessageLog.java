@@ -0,0 +1,445 @@
+package quickchatapp;
+
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.StringReader;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+// Message store split into JSON Lines segment files of bounded size. Appends go to the
+// newest (active) segment; once it would grow past the size limit it is sealed and a new
+// one is started. The manifest records each sealed segment's record count, messageID
+// range and time range, so lookups skip segments that cannot hold an ID, old segments
+// can be scanned in parallel, and compaction and retention work one segment at a time.
+//
+// Manifest: one line per sealed segment, tab separated:
+//   file  records  minMessageID  maxMessageID  firstTimestamp  lastTimestamp
+public class SegmentedMessageLog implements Closeable {
+    static final String MANIFEST_NAME = "manifest.tsv";
+    private static final String SEGMENT_PREFIX = "segment-";
+    private static final String SEGMENT_SUFFIX = ".jsonl";
+
+    // Summary of one segment file, as kept in the manifest
+    public static final class Segment {
+        private final String fileName;
+        private int records;
+        private long minMessageID = Long.MAX_VALUE;
+        private long maxMessageID = Long.MIN_VALUE;
+        private String firstTimestamp = "";
+        private String lastTimestamp = "";
+
+        Segment(String fileName) {
+            this.fileName = fileName;
+        }
+
+        void add(MessageRecord record) {
+            records++;
+            long id = JSONHandler.parseMessageID(record.getMessageID());
+            minMessageID = Math.min(minMessageID, id);
+            maxMessageID = Math.max(maxMessageID, id);
+            // Timestamps are "yyyy-MM-dd HH:mm:ss", so text order is time order
+            String timestamp = record.getTimestamp();
+            if (firstTimestamp.isEmpty() || timestamp.compareTo(firstTimestamp) < 0) {
+                firstTimestamp = timestamp;
+            }
+            if (timestamp.compareTo(lastTimestamp) > 0) {
+                lastTimestamp = timestamp;
+            }
+        }
+
+        boolean mayContain(long messageID) {
+            return records > 0 && messageID >= minMessageID && messageID <= maxMessageID;
+        }
+
+        String toManifestLine() {
+            return fileName + "\t" + records + "\t" + minMessageID + "\t" + maxMessageID
+                    + "\t" + firstTimestamp + "\t" + lastTimestamp;
+        }
+
+        static Segment parse(String line) throws IOException {
+            String[] fields = line.split("\t", -1);
+            if (fields.length != 6) {
+                throw new IOException("Bad manifest line: " + line);
+            }
+            Segment segment = new Segment(fields[0]);
+            try {
+                segment.records = Integer.parseInt(fields[1]);
+                segment.minMessageID = Long.parseLong(fields[2]);
+                segment.maxMessageID = Long.parseLong(fields[3]);
+            } catch (NumberFormatException e) {
+                throw new IOException("Bad manifest line: " + line);
+            }
+            segment.firstTimestamp = fields[4];
+            segment.lastTimestamp = fields[5];
+            return segment;
+        }
+
+        public String getFileName() { return fileName; }
+        public int getRecords() { return records; }
+        public long getMinMessageID() { return minMessageID; }
+        public long getMaxMessageID() { return maxMessageID; }
+        public String getFirstTimestamp() { return firstTimestamp; }
+        public String getLastTimestamp() { return lastTimestamp; }
+    }
+
+    private final Path directory;
+    private final long maxSegmentBytes;
+    // Sealed segments, oldest first
+    private final List<Segment> sealed = new ArrayList<>();
+    private Segment active;
+    private MessageLog activeLog;
+    private int nextSegmentNumber;
+    private final long truncatedBytes;
+    // Guards the segment list and the active segment
+    private final ReentrantLock lock = new ReentrantLock();
+
+    public SegmentedMessageLog(Path directory, long maxSegmentBytes) throws IOException {
+        if (maxSegmentBytes < 1) {
+            throw new IllegalArgumentException("Segment size must be positive.");
+        }
+        this.directory = directory;
+        this.maxSegmentBytes = maxSegmentBytes;
+        Files.createDirectories(directory);
+
+        Map<String, Segment> manifest = new HashMap<>();
+        Path manifestPath = directory.resolve(MANIFEST_NAME);
+        if (Files.exists(manifestPath)) {
+            for (String line : Files.readAllLines(manifestPath, StandardCharsets.UTF_8)) {
+                if (!line.isBlank()) {
+                    Segment segment = Segment.parse(line);
+                    manifest.put(segment.fileName, segment);
+                }
+            }
+        }
+
+        // The files on disk are the truth: segments missing from the manifest (e.g. after a
+        // crash during rotation) are summarized by scanning them, and the newest is active.
+        // Opening the active segment drops a line torn by a crash before it is summarized.
+        List<String> files = segmentFiles();
+        for (int i = 0; i < files.size(); i++) {
+            String file = files.get(i);
+            if (i == files.size() - 1) {
+                activeLog = new MessageLog(directory.resolve(file));
+                active = summarize(file, activeLog);
+            } else {
+                Segment segment = manifest.get(file);
+                if (segment == null) {
+                    try (MessageLog log = new MessageLog(directory.resolve(file))) {
+                        segment = summarize(file, log);
+                    }
+                }
+                sealed.add(segment);
+            }
+            nextSegmentNumber = Math.max(nextSegmentNumber, segmentNumber(file) + 1);
+        }
+        if (active == null) {
+            active = new Segment(segmentName(nextSegmentNumber++));
+            activeLog = new MessageLog(directory.resolve(active.fileName));
+        }
+        truncatedBytes = activeLog.getTruncatedBytes();
+        if (sealed.size() != manifest.size()) {
+            writeManifest();
+        }
+    }
+
+    private List<String> segmentFiles() throws IOException {
+        List<String> files = new ArrayList<>();
+        try (Stream<Path> entries = Files.list(directory)) {
+            entries.map(path -> path.getFileName().toString())
+                   .filter(name -> name.startsWith(SEGMENT_PREFIX) && name.endsWith(SEGMENT_SUFFIX))
+                   .forEach(files::add);
+        }
+        Collections.sort(files);
+        return files;
+    }
+
+    private static String segmentName(int number) {
+        return SEGMENT_PREFIX + String.format("%06d", number) + SEGMENT_SUFFIX;
+    }
+
+    private static int segmentNumber(String fileName) {
+        return Integer.parseInt(fileName.substring(SEGMENT_PREFIX.length(), fileName.length() - SEGMENT_SUFFIX.length()));
+    }
+
+    // Only lines ending in '\n' are read, so the summary never counts a partial append
+    private static Segment summarize(String fileName, MessageLog log) throws IOException {
+        Segment segment = new Segment(fileName);
+        try {
+            log.forEachRecordFrom(0, (offset, line) -> {
+                try {
+                    MessageRecord record = new MessageJsonReader(new StringReader(line)).next();
+                    if (record != null) {
+                        segment.add(record);
+                    }
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+        return segment;
+    }
+
+    // Appends the records to the active segment, sealing it first if they would not fit
+    public void appendAll(List<MessageRecord> records) throws IOException {
+        lock.lock();
+        try {
+            List<String> lines = new ArrayList<>(records.size());
+            long bytes = 0;
+            for (MessageRecord record : records) {
+                String line = JSONHandler.toLogLine(record);
+                lines.add(line);
+                // Characters rather than bytes; the same for ASCII text and close enough for a limit
+                bytes += line.length() + 1;
+            }
+            if (activeLog.size() > 0 && activeLog.size() + bytes > maxSegmentBytes) {
+                rotate();
+            }
+            activeLog.appendAll(lines);
+            for (MessageRecord record : records) {
+                active.add(record);
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void rotate() throws IOException {
+        activeLog.sync();
+        activeLog.close();
+        sealed.add(active);
+        active = new Segment(segmentName(nextSegmentNumber++));
+        activeLog = new MessageLog(directory.resolve(active.fileName));
+        writeManifest();
+    }
+
+    private void writeManifest() throws IOException {
+        lock.lock();
+        try {
+            Path tmp = directory.resolve(MANIFEST_NAME + ".tmp");
+            try (BufferedWriter out = Files.newBufferedWriter(tmp, StandardCharsets.UTF_8)) {
+                for (Segment segment : sealed) {
+                    out.write(segment.toManifestLine());
+                    out.write("\n");
+                }
+            }
+            Files.move(tmp, directory.resolve(MANIFEST_NAME), StandardCopyOption.REPLACE_EXISTING,
+                    StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public void sync() throws IOException {
+        MessageLog log;
+        lock.lock();
+        try {
+            log = activeLog;
+        } finally {
+            lock.unlock();
+        }
+        log.sync();
+    }
+
+    // Every segment, oldest first; the last one is the active segment
+    public List<Segment> getSegments() {
+        lock.lock();
+        try {
+            List<Segment> all = new ArrayList<>(sealed);
+            all.add(active);
+            return all;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public List<Path> segmentPaths() {
+        List<Path> paths = new ArrayList<>();
+        for (Segment segment : getSegments()) {
+            paths.add(directory.resolve(segment.fileName));
+        }
+        return paths;
+    }
+
+    // Reads every record, segment by segment in the order they were appended
+    public void forEachRecord(Consumer<MessageRecord> action) throws IOException {
+        for (Path path : segmentPaths()) {
+            MessageJsonReader.forEach(path, action);
+        }
+    }
+
+    // Newest record for a message ID, or null. Only segments whose ID range covers the ID
+    // are read, and those are scanned in parallel; the newest segment with a match wins.
+    public MessageRecord findNewest(String messageID) throws IOException {
+        long id = JSONHandler.parseMessageID(messageID);
+        List<Path> candidates = new ArrayList<>();
+        for (Segment segment : getSegments()) {
+            if (segment.mayContain(id)) {
+                candidates.add(directory.resolve(segment.fileName));
+            }
+        }
+        try {
+            List<MessageRecord> found = candidates.parallelStream()
+                    .map(path -> newestIn(path, messageID))
+                    .collect(Collectors.toList());
+            for (int i = found.size() - 1; i >= 0; i--) {
+                if (found.get(i) != null) {
+                    return found.get(i);
+                }
+            }
+            return null;
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+    }
+
+    private static MessageRecord newestIn(Path segment, String messageID) {
+        List<MessageRecord> match = new ArrayList<>(1);
+        try {
+            MessageJsonReader.forEach(segment, record -> {
+                if (record.getMessageID().equals(messageID)) {
+                    match.clear();
+                    match.add(record);
+                }
+            });
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return match.isEmpty() ? null : match.get(0);
+    }
+
+    // Rewrites sealed segments that hold superseded records: only the newest record per
+    // messageID across all segments is kept, and deleted messages are dropped together
+    // with their tombstones. The active segment is never rewritten, so appends continue.
+    // Returns the number of records removed.
+    public int compact() throws IOException {
+        List<Segment> segments = getSegments();
+        List<Segment> candidates = segments.subList(0, segments.size() - 1);
+
+        // Newest (segment, position) of each message ID, across every segment
+        Map<String, long[]> newest = new HashMap<>();
+        for (int s = 0; s < segments.size(); s++) {
+            long segmentIndex = s;
+            long[] position = {0};
+            MessageJsonReader.forEach(directory.resolve(segments.get(s).fileName), record ->
+                    newest.put(record.getMessageID(), new long[] {segmentIndex, position[0]++}));
+        }
+
+        int removed = 0;
+        for (int s = 0; s < candidates.size(); s++) {
+            Segment segment = candidates.get(s);
+            Path path = directory.resolve(segment.fileName);
+            Segment rewritten = new Segment(segment.fileName);
+            List<String> kept = new ArrayList<>();
+            long segmentIndex = s;
+            long[] position = {0};
+            MessageJsonReader.forEach(path, record -> {
+                long[] where = newest.get(record.getMessageID());
+                if (where[0] == segmentIndex && where[1] == position[0] && !record.isDeleted()) {
+                    kept.add(JSONHandler.toLogLine(record));
+                    rewritten.add(record);
+                }
+                position[0]++;
+            });
+            if (rewritten.records == segment.records) {
+                continue;
+            }
+            Path tmp = directory.resolve(segment.fileName + ".compact");
+            Files.write(tmp, kept, StandardCharsets.UTF_8);
+            lock.lock();
+            try {
+                int index = sealed.indexOf(segment);
+                if (index < 0) {
+                    // Removed by retention in the meantime
+                    Files.delete(tmp);
+                    continue;
+                }
+                Files.move(tmp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+                sealed.set(index, rewritten);
+                writeManifest();
+            } finally {
+                lock.unlock();
+            }
+            removed += segment.records - rewritten.records;
+        }
+        return removed;
+    }
+
+    // Deletes sealed segments whose newest record is older than the timestamp.
+    // Returns the number of segments removed.
+    public int removeSegmentsBefore(String timestamp) throws IOException {
+        int removed = 0;
+        lock.lock();
+        try {
+            for (Segment segment : new ArrayList<>(sealed)) {
+                if (segment.lastTimestamp.compareTo(timestamp) < 0) {
+                    sealed.remove(segment);
+                    removed++;
+                }
+            }
+            if (removed > 0) {
+                writeManifest();
+            }
+        } finally {
+            lock.unlock();
+        }
+        // Files go only after the manifest no longer lists them
+        for (String file : segmentFiles()) {
+            if (!isListed(file)) {
+                Files.deleteIfExists(directory.resolve(file));
+            }
+        }
+        return removed;
+    }
+
+    private boolean isListed(String fileName) {
+        lock.lock();
+        try {
+            if (Objects.equals(active.fileName, fileName)) {
+                return true;
+            }
+            for (Segment segment : sealed) {
+                if (segment.fileName.equals(fileName)) {
+                    return true;
+                }
+            }
+            return false;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // Bytes of a torn last line dropped from the active segment when the log was opened
+    public long getTruncatedBytes() {
+        return truncatedBytes;
+    }
+
+    public Path getDirectory() {
+        return directory;
+    }
+
+    @Override
+    public void close() throws IOException {
+        lock.lock();
+        try {
+            activeLog.close();
+        } finally {
+            lock.unlock();
+        }
+    }
+}
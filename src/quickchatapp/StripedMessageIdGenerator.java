@@ -0,0 +1,55 @@
+package quickchatapp;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+// Unique 10-digit message IDs without a shared hot spot. Each thread claims a block of
+// consecutive IDs from one atomic counter and hands them out from a thread-local cursor,
+// so the counter is touched once per block and the common path allocates nothing.
+// IDs grow over time within a thread; blocks from different threads interleave.
+// Virtual threads typically live for a single message, so a block claimed for one would
+// be almost entirely thrown away; they take their IDs straight from the counter instead.
+public class StripedMessageIdGenerator implements MessageIdGenerator {
+    static final long MIN_ID = 1_000_000_000L;
+    static final long ID_RANGE = 9_000_000_000L;
+    static final int DEFAULT_BLOCK_SIZE = 1024;
+
+    private final AtomicLong nextBlock;
+    private final int blockSize;
+    // Offsets below this were handed out by an earlier run; blocks claimed before
+    // continueAfter raised it are abandoned
+    private volatile long floor;
+    // {next offset, end of block}
+    private final ThreadLocal<long[]> cursor = ThreadLocal.withInitial(() -> new long[2]);
+
+    public StripedMessageIdGenerator(long firstOffset, int blockSize) {
+        if (blockSize < 1) {
+            throw new IllegalArgumentException("Block size must be positive.");
+        }
+        this.nextBlock = new AtomicLong(Math.floorMod(firstOffset, ID_RANGE));
+        this.blockSize = blockSize;
+    }
+
+    @Override
+    public void continueAfter(long id) {
+        if (id < MIN_ID) {
+            return;
+        }
+        long offset = id - MIN_ID + 1;
+        nextBlock.accumulateAndGet(offset, Math::max);
+        floor = Math.max(floor, offset);
+    }
+
+    @Override
+    public long nextId() {
+        if (Thread.currentThread().isVirtual()) {
+            return MIN_ID + Math.floorMod(nextBlock.getAndIncrement(), ID_RANGE);
+        }
+        long[] block = cursor.get();
+        if (block[0] == block[1] || block[0] < floor) {
+            block[0] = nextBlock.getAndAdd(blockSize);
+            block[1] = block[0] + blockSize;
+        }
+        // Wraps around after 9 billion IDs so every ID keeps 10 digits
+        return MIN_ID + Math.floorMod(block[0]++, ID_RANGE);
+    }
+}
@@ -0,0 +1,105 @@
+package quickchatapp;
+
+// Input rules shared by registration, the Send Message window and bulk ingestion.
+// Each check scans the characters once, without regular expressions and without
+// allocating, so it is cheap enough to run on every record of a large import.
+// A null input is never valid.
+public final class Validators {
+    private static final int MIN_PASSWORD_LENGTH = 8;
+    private static final int MAX_USERNAME_LENGTH = 5;
+
+    private Validators() {
+    }
+
+    // At most five characters, one of them an underscore
+    public static boolean isValidUsername(CharSequence username) {
+        if (username == null || username.length() > MAX_USERNAME_LENGTH) {
+            return false;
+        }
+        for (int i = 0; i < username.length(); i++) {
+            if (username.charAt(i) == '_') {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    // Login's rule: at least eight characters with a capital letter, a digit and a
+    // character that is neither a letter nor a digit, in the Unicode sense
+    public static boolean isComplexPassword(CharSequence password) {
+        if (password == null || password.length() < MIN_PASSWORD_LENGTH) {
+            return false;
+        }
+        boolean hasCapital = false;
+        boolean hasNumber = false;
+        boolean hasSpecialChar = false;
+        for (int i = 0; i < password.length(); i++) {
+            char c = password.charAt(i);
+            if (Character.isUpperCase(c)) {
+                hasCapital = true;
+            } else if (Character.isDigit(c)) {
+                hasNumber = true;
+            } else if (!Character.isLetterOrDigit(c)) {
+                hasSpecialChar = true;
+            }
+            if (hasCapital && hasNumber && hasSpecialChar) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    // The GUI's rule: the same, but only A-Z counts as a capital and 0-9 as a digit,
+    // and anything outside A-Z, a-z and 0-9 is a special character
+    public static boolean isComplexAsciiPassword(CharSequence password) {
+        if (password == null || password.length() < MIN_PASSWORD_LENGTH) {
+            return false;
+        }
+        boolean hasCapital = false;
+        boolean hasNumber = false;
+        boolean hasSpecialChar = false;
+        for (int i = 0; i < password.length(); i++) {
+            char c = password.charAt(i);
+            if (c >= 'A' && c <= 'Z') {
+                hasCapital = true;
+            } else if (c >= '0' && c <= '9') {
+                hasNumber = true;
+            } else if (c < 'a' || c > 'z') {
+                hasSpecialChar = true;
+            }
+            if (hasCapital && hasNumber && hasSpecialChar) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    // A South African cell number with the international code: +27 and nine digits
+    public static boolean isSouthAfricanCellNumber(CharSequence number) {
+        return number != null && number.length() == 12
+                && number.charAt(0) == '+' && number.charAt(1) == '2' && number.charAt(2) == '7'
+                && allDigits(number, 3);
+    }
+
+    // Any cell number with an international code: + and 8 to 13 digits
+    public static boolean isInternationalCellNumber(CharSequence number) {
+        return number != null && number.length() >= 9 && number.length() <= 14
+                && number.charAt(0) == '+' && allDigits(number, 1);
+    }
+
+    // A message recipient: + and 10 to 12 digits
+    public static boolean isValidRecipient(CharSequence recipient) {
+        return recipient != null && recipient.length() >= 11 && recipient.length() <= 13
+                && recipient.charAt(0) == '+' && allDigits(recipient, 1);
+    }
+
+    private static boolean allDigits(CharSequence s, int from) {
+        for (int i = from; i < s.length(); i++) {
+            char c = s.charAt(i);
+            if (c < '0' || c > '9') {
+                return false;
+            }
+        }
+        return from < s.length();
+    }
+}
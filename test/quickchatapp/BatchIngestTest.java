@@ -0,0 +1,73 @@
+package quickchatapp;
+
+import org.junit.jupiter.api.*;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.junit.jupiter.api.io.TempDir;
+import static org.junit.jupiter.api.Assertions.*;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+@ExtendWith(JSONHandlerState.class)
+class BatchIngestTest {
+    @TempDir
+    Path tempDir;
+
+    @BeforeEach
+    void setUp() {
+        JSONHandler.setDataDirectory(tempDir);
+        JSONHandler.setStorageMode(JSONHandler.StorageMode.APPEND_LOG);
+    }
+
+    @Test
+    @DisplayName("Test a CSV file is validated, sent and persisted")
+    void testIngestCsv() throws IOException {
+        Path file = tempDir.resolve("ingest.csv");
+        Files.write(file, List.of(
+                "recipient,message,status",
+                "+27838884567,Did you get the cake?",
+                "+27838884567,\"Hi Mike, can you join us for \"\"dinner\"\" tonight?\"",
+                "+27838884567,Where are you?,stored",
+                "+27834484567,Unquoted, commas stay in the message",
+                "0838884567,Rejected: no international code",
+                "+27838884567,"), StandardCharsets.UTF_8);
+
+        int sentBefore = Message.getStore().count(MessageStore.Category.SENT);
+        BatchIngest.Result result = BatchIngest.ingest(file, 1, 1);
+
+        assertEquals(6, result.getRead());
+        assertEquals(4, result.getAccepted());
+        assertEquals(2, result.getRejected());
+        assertEquals(0, result.getFailed());
+        assertFalse(JSONHandler.isBatchingEnabled(), "Batching started for the run is stopped again");
+        assertEquals(sentBefore + 3, Message.getStore().count(MessageStore.Category.SENT));
+
+        List<MessageRecord> records = JSONHandler.getMessagesPage(0, 10);
+        assertEquals(4, records.size());
+        assertEquals("Hi Mike, can you join us for \"dinner\" tonight?", records.get(1).getMessage());
+        assertEquals("stored", records.get(2).getStatus());
+        assertEquals("Unquoted, commas stay in the message", records.get(3).getMessage());
+    }
+
+    @Test
+    @DisplayName("Test a JSON Lines file can be stored in bulk")
+    void testIngestJsonLines() throws IOException {
+        Path file = tempDir.resolve("ingest.jsonl");
+        Files.write(file, List.of(
+                "{\"recipient\": \"+27838884567\", \"message\": \"It is dinner time!\"}",
+                "{\"recipient\": \"+27834484567\"}",
+                "{\"recipient\": \"+27834484567\", \"message\": \"Ok, I am leaving without you.\", \"status\": \"sent\"}"),
+                StandardCharsets.UTF_8);
+
+        BatchIngest.Result result = BatchIngest.ingest(file, 3, 1);
+
+        assertEquals(2, result.getAccepted());
+        assertEquals(1, result.getRejected());
+        List<MessageRecord> records = JSONHandler.getMessagesPage(0, 10);
+        assertEquals("stored", records.get(0).getStatus());
+        assertEquals("sent", records.get(1).getStatus());
+        assertTrue(result.toString().contains("messages/second"));
+    }
+}
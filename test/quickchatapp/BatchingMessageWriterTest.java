@@ -0,0 +1,94 @@
+package quickchatapp;
+
+import org.junit.jupiter.api.*;
+import static org.junit.jupiter.api.Assertions.*;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+class BatchingMessageWriterTest {
+
+    @Test
+    @DisplayName("Test pending records are coalesced into bounded batches")
+    void testRecordsAreBatched() throws Exception {
+        List<Integer> batchSizes = Collections.synchronizedList(new ArrayList<>());
+        List<String> written = Collections.synchronizedList(new ArrayList<>());
+
+        List<CompletableFuture<Void>> futures = new ArrayList<>();
+        try (BatchingMessageWriter<String> writer = new BatchingMessageWriter<>(records -> {
+                batchSizes.add(records.size());
+                written.addAll(records);
+            }, 256, 16, 50)) {
+            for (int i = 0; i < 100; i++) {
+                futures.add(writer.submit("record " + i));
+            }
+            CompletableFuture.allOf(futures.toArray(new CompletableFuture<?>[0])).get(5, TimeUnit.SECONDS);
+        }
+
+        assertEquals(100, written.size());
+        assertEquals("record 0", written.get(0));
+        assertEquals("record 99", written.get(99));
+        assertTrue(batchSizes.size() < 100, "Records should share batches");
+        for (int size : batchSizes) {
+            assertTrue(size <= 16, "No batch should exceed the maximum batch size");
+        }
+    }
+
+    @Test
+    @DisplayName("Test a failed batch fails every future in it")
+    void testFailureIsReported() {
+        try (BatchingMessageWriter<String> writer = new BatchingMessageWriter<>(records -> {
+                throw new IOException("disk full");
+            }, 16, 4, 0)) {
+            CompletableFuture<Void> future = writer.submit("record");
+            ExecutionException e = assertThrows(ExecutionException.class, () -> future.get(5, TimeUnit.SECONDS));
+            assertEquals("disk full", e.getCause().getMessage());
+        }
+    }
+
+    @Test
+    @DisplayName("Test an Error in the sink fails its batch and everything queued behind it")
+    void testErrorIsReported() throws Exception {
+        CountDownLatch writing = new CountDownLatch(1);
+        CountDownLatch fail = new CountDownLatch(1);
+        try (BatchingMessageWriter<String> writer = new BatchingMessageWriter<>(records -> {
+                writing.countDown();
+                try {
+                    fail.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                throw new StackOverflowError("sink bug");
+            }, 16, 1, 0)) {
+            CompletableFuture<Void> first = writer.submit("first");
+            assertTrue(writing.await(5, TimeUnit.SECONDS));
+            CompletableFuture<Void> queued = writer.submit("queued");
+            fail.countDown();
+
+            ExecutionException e = assertThrows(ExecutionException.class, () -> first.get(5, TimeUnit.SECONDS));
+            assertInstanceOf(StackOverflowError.class, e.getCause());
+            e = assertThrows(ExecutionException.class, () -> queued.get(5, TimeUnit.SECONDS));
+            assertInstanceOf(IllegalStateException.class, e.getCause());
+            e = assertThrows(ExecutionException.class, () -> writer.submit("later").get(5, TimeUnit.SECONDS));
+            assertInstanceOf(IllegalStateException.class, e.getCause());
+        }
+    }
+
+    @Test
+    @DisplayName("Test records queued before close are still written")
+    void testCloseDrainsQueue() throws Exception {
+        List<String> written = Collections.synchronizedList(new ArrayList<>());
+        BatchingMessageWriter<String> writer = new BatchingMessageWriter<>(written::addAll, 64, 8, 1000);
+        CompletableFuture<Void> future = writer.submit("last record");
+        writer.close();
+
+        assertTrue(future.isDone());
+        assertEquals(List.of("last record"), written);
+        assertTrue(writer.submit("too late").isCompletedExceptionally());
+    }
+}
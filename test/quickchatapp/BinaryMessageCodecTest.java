@@ -0,0 +1,110 @@
+package quickchatapp;
+
+import org.junit.jupiter.api.*;
+import org.junit.jupiter.api.io.TempDir;
+import static org.junit.jupiter.api.Assertions.*;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+class BinaryMessageCodecTest {
+    @TempDir
+    Path tempDir;
+
+    private static final MessageRecord RECORD = new MessageRecord("7795628685", 300, "+27638208064",
+            "héllo \"world\"", "77:300:HELLOWORLD", "sent", "2025-10-13 14:45:30");
+
+    @Test
+    @DisplayName("Test a record survives an encode/decode round trip")
+    void testRoundTrip() throws IOException {
+        byte[] bytes = BinaryMessageCodec.encode(RECORD);
+        MessageRecord decoded = BinaryMessageCodec.decode(ByteBuffer.wrap(bytes));
+
+        assertEquals(RECORD.getMessageID(), decoded.getMessageID());
+        assertEquals(RECORD.getMessageCount(), decoded.getMessageCount());
+        assertEquals(RECORD.getRecipient(), decoded.getRecipient());
+        assertEquals(RECORD.getMessage(), decoded.getMessage());
+        assertEquals(RECORD.getMessageHash(), decoded.getMessageHash());
+        assertEquals(RECORD.getStatus(), decoded.getStatus());
+        assertEquals(RECORD.getTimestamp(), decoded.getTimestamp());
+    }
+
+    @Test
+    @DisplayName("Test message IDs that are not plain numbers are kept as text")
+    void testNonNumericIDs() throws IOException {
+        for (String id : List.of("N/A", "0012345678", "+7795628685", "-42", "", "99999999999999999999")) {
+            MessageRecord record = new MessageRecord(id, 1, "+27638208064", "Hi", "00:1:HIHI", "sent",
+                    "2025-10-13 14:45:30");
+            ByteBuffer buffer = ByteBuffer.wrap(BinaryMessageCodec.encode(record));
+            MessageRecord decoded = BinaryMessageCodec.decode(buffer);
+            assertEquals(id, decoded.getMessageID());
+            assertEquals("Hi", decoded.getMessage(), id);
+            assertFalse(buffer.hasRemaining(), id);
+        }
+    }
+
+    @Test
+    @DisplayName("Test binary records are much smaller than the JSON entries")
+    void testBinaryIsCompact() throws IOException {
+        int binarySize = BinaryMessageCodec.encode(RECORD).length;
+        int jsonSize = JSONHandler.toArrayEntry(RECORD).getBytes(StandardCharsets.UTF_8).length;
+        assertTrue(binarySize * 2 < jsonSize, "Binary " + binarySize + " bytes vs JSON " + jsonSize + " bytes");
+    }
+
+    @Test
+    @DisplayName("Test a partial record is left in the buffer")
+    void testPartialRecord() throws IOException {
+        byte[] bytes = BinaryMessageCodec.encode(RECORD);
+        ByteBuffer partial = ByteBuffer.wrap(bytes, 0, bytes.length - 1);
+        assertNull(BinaryMessageCodec.decode(partial));
+        assertEquals(0, partial.position());
+    }
+
+    @Test
+    @DisplayName("Test converting JSON to binary and back keeps every record")
+    void testConverterRoundTrip() throws IOException {
+        Path json = tempDir.resolve("messages.json");
+        List<String> entries = new ArrayList<>();
+        for (int i = 0; i < 1000; i++) {
+            entries.add(JSONHandler.toArrayEntry(new MessageRecord(String.valueOf(1000000000L + i), i,
+                    "+27638208064", "message " + i, "10:" + i + ":MESSAGE" + i, "sent", "2025-10-13 14:45:30")));
+        }
+        JSONHandler.writeMessagesToFile(json, entries);
+
+        Path binary = tempDir.resolve("messages.bin");
+        Path exported = tempDir.resolve("exported.json");
+        assertEquals(1000, MessageArchiveConverter.jsonToBinary(json, binary));
+        assertEquals(1000, MessageArchiveConverter.binaryToJson(binary, exported));
+
+        assertEquals(Files.readString(json), Files.readString(exported));
+    }
+
+    @Test
+    @DisplayName("Test reopening a log drops a record torn by a crash and appends after the last whole one")
+    void testTornLog() throws IOException {
+        Path file = tempDir.resolve("messages.bin");
+        try (BinaryMessageLog log = new BinaryMessageLog(file)) {
+            log.appendAll(List.of(RECORD, RECORD));
+        }
+        byte[] bytes = BinaryMessageCodec.encode(RECORD);
+        Files.write(file, Arrays.copyOf(bytes, bytes.length / 2), StandardOpenOption.APPEND);
+        try (BinaryMessageLog log = new BinaryMessageLog(file)) {
+            assertEquals(bytes.length / 2, log.getTruncatedBytes());
+            assertEquals(2L * bytes.length, log.size());
+            log.append(RECORD);
+        }
+        try (BinaryMessageLog log = new BinaryMessageLog(file)) {
+            assertEquals(0, log.getTruncatedBytes());
+            List<MessageRecord> records = new ArrayList<>();
+            log.forEachRecord(records::add);
+            assertEquals(3, records.size());
+            assertEquals(RECORD.getMessage(), records.get(2).getMessage());
+        }
+    }
+}
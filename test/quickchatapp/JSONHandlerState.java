@@ -0,0 +1,36 @@
+package quickchatapp;
+
+import java.nio.file.Path;
+import org.junit.jupiter.api.extension.AfterEachCallback;
+import org.junit.jupiter.api.extension.BeforeEachCallback;
+import org.junit.jupiter.api.extension.ExtensionContext;
+
+// Saves JSONHandler's storage mode, durability and data directory before each test and
+// puts them back after it, with batching off on both sides, so a test can point the
+// handler at its own temporary directory without leaking that into the next test.
+// Use with @ExtendWith(JSONHandlerState.class).
+class JSONHandlerState implements BeforeEachCallback, AfterEachCallback {
+    private static final ExtensionContext.Namespace NAMESPACE =
+            ExtensionContext.Namespace.create(JSONHandlerState.class);
+
+    private record Saved(JSONHandler.StorageMode mode, JSONHandler.Durability durability, Path directory) {
+    }
+
+    @Override
+    public void beforeEach(ExtensionContext context) {
+        JSONHandler.disableBatching();
+        context.getStore(NAMESPACE).put(Saved.class, new Saved(JSONHandler.getStorageMode(),
+                JSONHandler.getDurability(), JSONHandler.getDataDirectory()));
+    }
+
+    @Override
+    public void afterEach(ExtensionContext context) {
+        JSONHandler.disableBatching();
+        Saved saved = context.getStore(NAMESPACE).remove(Saved.class, Saved.class);
+        if (saved != null) {
+            JSONHandler.setStorageMode(saved.mode());
+            JSONHandler.setDurability(saved.durability());
+            JSONHandler.setDataDirectory(saved.directory());
+        }
+    }
+}
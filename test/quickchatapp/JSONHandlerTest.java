@@ -0,0 +1,195 @@
+package quickchatapp;
+
+import org.junit.jupiter.api.*;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.junit.jupiter.api.io.TempDir;
+import static org.junit.jupiter.api.Assertions.*;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.stream.Stream;
+
+@ExtendWith(JSONHandlerState.class)
+class JSONHandlerTest {
+    @TempDir
+    Path tempDir;
+
+    private static String entry(int i) {
+        return JSONHandler.toArrayEntry(new MessageRecord(String.valueOf(1_000_000_000L + i), i, "+27838884567",
+                "Message " + i, "10:" + i + ":MESSAGE" + i, "sent", "2025-10-13 14:45:30"));
+    }
+
+    @Test
+    @DisplayName("Test a mistyped storage property falls back to the default")
+    void testEnumProperty() {
+        String property = "quickchat.test.storage";
+        try {
+            assertEquals(JSONHandler.StorageMode.JSON_ARRAY,
+                    JSONHandler.enumProperty(property, JSONHandler.StorageMode.JSON_ARRAY));
+            System.setProperty(property, " binary");
+            assertEquals(JSONHandler.StorageMode.BINARY,
+                    JSONHandler.enumProperty(property, JSONHandler.StorageMode.JSON_ARRAY));
+            System.setProperty(property, "APPEND-LOG");
+            assertEquals(JSONHandler.StorageMode.JSON_ARRAY,
+                    JSONHandler.enumProperty(property, JSONHandler.StorageMode.JSON_ARRAY));
+        } finally {
+            System.clearProperty(property);
+        }
+    }
+
+    @Test
+    @DisplayName("Test every durability level writes each batched message once")
+    void testDurabilityLevels() throws IOException {
+        for (JSONHandler.Durability level : JSONHandler.Durability.values()) {
+            JSONHandler.setDataDirectory(Files.createDirectories(tempDir.resolve(level.name())));
+            JSONHandler.setStorageMode(JSONHandler.StorageMode.APPEND_LOG);
+            JSONHandler.setDurability(level);
+            JSONHandler.enableBatching(64, 8, 5);
+            List<Message> messages = new ArrayList<>();
+            for (int i = 0; i < 20; i++) {
+                Message message = new Message();
+                message.setRecipient("+27831000000");
+                message.setMessage(level + " message " + i);
+                message.sentMessage(1);
+                messages.add(message);
+            }
+            for (Message message : messages) {
+                message.whenPersisted().join();
+            }
+            JSONHandler.disableBatching();
+            try (var lines = Files.lines(tempDir.resolve(level.name()).resolve("messages.jsonl"))) {
+                assertEquals(20, lines.count(), level.name());
+            }
+        }
+    }
+
+    private static long batchWriterThreads() {
+        return Thread.getAllStackTraces().keySet().stream()
+                .filter(thread -> thread.getName().equals("message-batch-writer") && thread.isAlive())
+                .count();
+    }
+
+    @Test
+    @DisplayName("Test concurrent enableBatching calls leave one writer, and disableBatching stops it")
+    void testConcurrentEnableBatching() throws Exception {
+        long before = batchWriterThreads();
+        ExecutorService pool = Executors.newFixedThreadPool(8);
+        try {
+            JSONHandler.setDataDirectory(tempDir);
+            CountDownLatch start = new CountDownLatch(1);
+            List<Future<?>> calls = new ArrayList<>();
+            for (int i = 0; i < 8; i++) {
+                calls.add(pool.submit(() -> {
+                    start.await();
+                    for (int j = 0; j < 20; j++) {
+                        JSONHandler.enableBatching(64, 8, 1);
+                    }
+                    return null;
+                }));
+            }
+            start.countDown();
+            for (Future<?> call : calls) {
+                call.get();
+            }
+            assertEquals(before + 1, batchWriterThreads());
+            JSONHandler.disableBatching();
+            assertEquals(before, batchWriterThreads());
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    @Test
+    @DisplayName("Test a log is seeded from messages.json whole, whatever a crashed seeding left behind")
+    void testSeedFromArray() throws IOException {
+        Map<JSONHandler.StorageMode, String> seeds = Map.of(
+                JSONHandler.StorageMode.APPEND_LOG, "messages.jsonl.seed",
+                JSONHandler.StorageMode.BINARY, "messages.bin.seed",
+                JSONHandler.StorageMode.SEGMENTED, "messages.segments.seed/segment-000001.jsonl");
+        for (Map.Entry<JSONHandler.StorageMode, String> seed : seeds.entrySet()) {
+            JSONHandler.StorageMode mode = seed.getKey();
+            Path directory = Files.createDirectories(tempDir.resolve(mode.name()));
+            JSONHandler.writeMessagesToFile(directory.resolve("messages.json"), List.of(entry(1), entry(2)));
+            // Half a copy from a run that crashed while seeding
+            Path partial = directory.resolve(seed.getValue());
+            Files.createDirectories(partial.getParent());
+            Files.writeString(partial, entry(1));
+            JSONHandler.setDataDirectory(directory);
+            JSONHandler.setStorageMode(mode);
+
+            assertEquals(2, JSONHandler.readArchive().size(), mode.name());
+            assertFalse(Files.exists(partial), mode.name());
+        }
+    }
+
+    @Test
+    @DisplayName("Test a torn messages.json keeps its complete records and is quarantined")
+    void testRepairTornArray() throws IOException {
+        Path file = tempDir.resolve("messages.json");
+        JSONHandler.writeMessagesToFile(file, List.of(entry(1), entry(2), entry(3)));
+        String whole = Files.readString(file);
+        // Cut off in the middle of the third record
+        Files.writeString(file, whole.substring(0, whole.indexOf("Message 3")));
+        JSONHandler.setDataDirectory(tempDir);
+        JSONHandler.setStorageMode(JSONHandler.StorageMode.JSON_ARRAY);
+
+        assertEquals(2, JSONHandler.readArchive().size());
+        try (Stream<Path> files = Files.list(tempDir)) {
+            assertEquals(1, files.filter(path -> path.getFileName().toString()
+                    .startsWith("messages.json.corrupt-")).count());
+        }
+        Message message = new Message();
+        message.setRecipient("+27838884567");
+        message.setMessage("Did you get the cake?");
+        message.sentMessage(3);
+        JSONHandler.closeLog();
+        assertEquals(3, JSONHandler.readArchive().size());
+        assertNotNull(JSONHandler.findMessageByID(message.getMessageID()));
+    }
+
+    @Test
+    @DisplayName("Test a lookup whose index entry points at another record scans the log instead")
+    void testStaleIndexEntry() throws IOException {
+        for (JSONHandler.StorageMode mode : List.of(JSONHandler.StorageMode.APPEND_LOG, JSONHandler.StorageMode.BINARY)) {
+            Path directory = Files.createDirectories(tempDir.resolve(mode.name()));
+            JSONHandler.setDataDirectory(directory);
+            JSONHandler.setStorageMode(mode);
+            List<Message> messages = new ArrayList<>();
+            for (String text : List.of("Did you get the cake?", "Where are you?")) {
+                Message message = new Message();
+                message.setRecipient("+27838884567");
+                message.setMessage(text);
+                message.sentMessage(3);
+                messages.add(message);
+            }
+            JSONHandler.closeLog();
+
+            // The first message's entry now points at the second message's record
+            String index = (mode == JSONHandler.StorageMode.BINARY ? "messages.bin" : "messages.jsonl") + ".idx";
+            long first = Long.parseLong(messages.get(0).getMessageID());
+            long second = Long.parseLong(messages.get(1).getMessageID());
+            try (MessageIndex stale = new MessageIndex(directory.resolve(index))) {
+                stale.put(first, stale.get(second));
+            }
+            assertEquals(messages.get(0).getMessageID(),
+                    JSONHandler.findMessageByID(messages.get(0).getMessageID()).getMessageID(), mode.name());
+            assertEquals(messages.get(1).getMessageID(),
+                    JSONHandler.findMessageByID(messages.get(1).getMessageID()).getMessageID(), mode.name());
+
+            // An offset past the end of the log is no record at all
+            JSONHandler.closeLog();
+            try (MessageIndex stale = new MessageIndex(directory.resolve(index))) {
+                stale.put(first, stale.getIndexedLength() + 1_000);
+            }
+            assertEquals(messages.get(0).getMessageID(),
+                    JSONHandler.findMessageByID(messages.get(0).getMessageID()).getMessageID(), mode.name());
+        }
+    }
+}
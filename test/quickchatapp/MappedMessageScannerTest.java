@@ -0,0 +1,61 @@
+package quickchatapp;
+
+import org.junit.jupiter.api.*;
+import org.junit.jupiter.api.io.TempDir;
+import static org.junit.jupiter.api.Assertions.*;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+class MappedMessageScannerTest {
+    @TempDir
+    Path tempDir;
+
+    private static final String ARCHIVE = "[\n"
+            + "  {\n"
+            + "    \"messageID\": \"7795628685\",\n"
+            + "    \"messageCount\": 1,\n"
+            + "    \"recipient\": \"+27638208064\",\n"
+            + "    \"message\": \"hello, {world}\",\n"
+            + "    \"status\": \"sent\",\n"
+            + "    \"timestamp\": \"2025-10-13 14:45:30\"\n"
+            + "  },\n"
+            + "  {\"messageID\":\"3568395113\",\"messageCount\":2,\"recipient\":\"+27654569879\","
+            + "\"message\":\"say \\\"hi\\\"\",\"status\":\"stored\",\"timestamp\":\"2025-10-13 14:54:50\"}\n"
+            + "]";
+
+    private List<String> scan(Path file, long windowSize) throws IOException {
+        List<String> rows = new ArrayList<>();
+        new MappedMessageScanner(windowSize).scanFile(file, (id, recipient, status, timestamp) ->
+                rows.add(id + "|" + recipient + "|" + status + "|" + timestamp));
+        return rows;
+    }
+
+    @Test
+    @DisplayName("Test displayed fields are decoded from a mapped file")
+    void testScansDisplayedFields() throws IOException {
+        Path file = Files.writeString(tempDir.resolve("messages.json"), ARCHIVE, StandardCharsets.UTF_8);
+
+        assertEquals(List.of("7795628685|+27638208064|sent|2025-10-13 14:45:30",
+                "3568395113|+27654569879|stored|2025-10-13 14:54:50"), scan(file, 1 << 20));
+    }
+
+    @Test
+    @DisplayName("Test records spanning window boundaries are remapped")
+    void testRecordsAcrossWindows() throws IOException {
+        Path file = Files.writeString(tempDir.resolve("messages.json"), ARCHIVE, StandardCharsets.UTF_8);
+
+        assertEquals(scan(file, 1 << 20), scan(file, 200));
+    }
+
+    @Test
+    @DisplayName("Test a truncated record is reported")
+    void testTruncatedRecord() throws IOException {
+        Path file = Files.writeString(tempDir.resolve("messages.json"), ARCHIVE.substring(0, 60), StandardCharsets.UTF_8);
+
+        assertThrows(IOException.class, () -> scan(file, 1 << 20));
+    }
+}
@@ -0,0 +1,106 @@
+package quickchatapp;
+
+import org.junit.jupiter.api.*;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.junit.jupiter.api.io.TempDir;
+import static org.junit.jupiter.api.Assertions.*;
+import java.io.IOException;
+import java.io.StringReader;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+@ExtendWith(JSONHandlerState.class)
+class MessageCompactionTest {
+    @TempDir
+    Path tempDir;
+
+    @BeforeEach
+    void setUp() {
+        JSONHandler.setDataDirectory(tempDir);
+    }
+
+    private static Message message(String text) {
+        Message message = new Message();
+        message.setRecipient("+27838884567");
+        message.setMessage(text);
+        return message;
+    }
+
+    private static List<String> storedIDs() throws IOException {
+        List<String> ids = new ArrayList<>();
+        for (String line : JSONHandler.getAllMessages().split("\n")) {
+            if (line.startsWith("ID: ")) {
+                ids.add(line.substring(4, line.indexOf(' ', 4)));
+            }
+        }
+        return ids;
+    }
+
+    @Test
+    @DisplayName("Test compaction keeps the newest record per message and drops deleted ones")
+    void testCompactEachMode() throws IOException {
+        // SEGMENTED compacts sealed segments only; see SegmentedMessageLogTest
+        for (JSONHandler.StorageMode mode : List.of(JSONHandler.StorageMode.JSON_ARRAY,
+                JSONHandler.StorageMode.APPEND_LOG, JSONHandler.StorageMode.BINARY)) {
+            JSONHandler.setDataDirectory(Files.createDirectories(tempDir.resolve(mode.name())));
+            JSONHandler.setStorageMode(mode);
+
+            Message kept = message("Did you get the cake?");
+            Message restored = message("Where are you?");
+            Message deleted = message("It is dinner time!");
+            kept.sentMessage(1);
+            restored.sentMessage(1);
+            restored.sentMessage(3);
+            deleted.sentMessage(1);
+            JSONHandler.deleteMessageAsync(deleted);
+
+            assertEquals(3, JSONHandler.compact(), mode + ": one duplicate and the deleted message with its tombstone");
+            assertEquals(List.of(kept.getMessageID(), restored.getMessageID()), storedIDs(), mode.name());
+            assertEquals("stored", JSONHandler.findMessageByID(restored.getMessageID()).getStatus(), mode.name());
+            assertNull(JSONHandler.findMessageByID(deleted.getMessageID()), mode.name());
+
+            // Stores after a compaction land in the swapped-in file and are indexed
+            Message later = message("Ok, I am leaving without you.");
+            later.sentMessage(1);
+            assertNotNull(JSONHandler.findMessageByID(later.getMessageID()), mode.name());
+            assertEquals(0, JSONHandler.compact(), mode.name());
+        }
+    }
+
+    @Test
+    @DisplayName("Test records appended during a compaction are carried over")
+    void testAppendsDuringCompaction() throws IOException {
+        JSONHandler.setStorageMode(JSONHandler.StorageMode.APPEND_LOG);
+        Message first = message("Did you get the cake?");
+        first.sentMessage(1);
+        first.sentMessage(3);
+        long cutoff = Files.size(tempDir.resolve("messages.jsonl"));
+
+        MessageLogCompactor compactor = new MessageLogCompactor(tempDir.resolve("messages.jsonl"),
+                tempDir.resolve("messages.jsonl.idx"), (log, start, action) -> {
+                    try (MessageLog messageLog = new MessageLog(log)) {
+                        messageLog.forEachRecordFrom(start, (offset, line) -> {
+                            try {
+                                action.accept(offset, new MessageJsonReader(new StringReader(line)).next());
+                            } catch (IOException e) {
+                                throw new UncheckedIOException(e);
+                            }
+                        });
+                    }
+                }, record -> (JSONHandler.toLogLine(record) + "\n").getBytes(StandardCharsets.UTF_8));
+        compactor.prepare(cutoff);
+
+        // Appended after the copy was made, before it is swapped in
+        Message second = message("Where are you?");
+        second.sentMessage(1);
+        JSONHandler.closeLog();
+        assertEquals(1, compactor.commit());
+
+        assertEquals(List.of(first.getMessageID(), second.getMessageID()), storedIDs());
+        assertNotNull(JSONHandler.findMessageByID(second.getMessageID()));
+    }
+}
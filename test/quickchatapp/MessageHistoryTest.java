@@ -0,0 +1,206 @@
+package quickchatapp;
+
+import org.junit.jupiter.api.*;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.junit.jupiter.api.io.TempDir;
+import static org.junit.jupiter.api.Assertions.*;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+@ExtendWith(JSONHandlerState.class)
+class MessageHistoryTest {
+    @TempDir
+    Path tempDir;
+
+    @BeforeEach
+    void setUp() {
+        JSONHandler.setDataDirectory(tempDir);
+    }
+
+    @AfterEach
+    void tearDown() {
+        Message.getStore().clear();
+    }
+
+    private static Message message(String text) {
+        Message message = new Message();
+        message.setRecipient("+27838884567");
+        message.setMessage(text);
+        return message;
+    }
+
+    @Test
+    @DisplayName("Test earlier messages are loaded into the store by parsing the archive")
+    void testLoadArchive() throws IOException {
+        for (JSONHandler.StorageMode mode : JSONHandler.StorageMode.values()) {
+            JSONHandler.setDataDirectory(Files.createDirectories(tempDir.resolve(mode.name())));
+            JSONHandler.setStorageMode(mode);
+            Message sent = message("Did you get the cake?");
+            Message stored = message("Where are you?");
+            Message deleted = message("It is dinner time!");
+            sent.sentMessage(1);
+            stored.sentMessage(1);
+            stored.sentMessage(3);
+            deleted.sentMessage(1);
+            Message.deleteMessageByHash(deleted.getMessageHash());
+
+            // As after a restart
+            Message.getStore().clear();
+            MessageHistory.Result result = MessageHistory.load();
+            assertEquals(2, result.getLoaded(), mode.name());
+            assertFalse(result.isFromSnapshot(), mode.name());
+            assertEquals("sent", Message.getStore().findByID(sent.getMessageID()).getStatus(), mode.name());
+            assertEquals("stored", Message.getStore().findByID(stored.getMessageID()).getStatus(), mode.name());
+            assertNull(Message.getStore().findByID(deleted.getMessageID()), mode.name());
+
+            // A message created after the load is numbered after the loaded ones
+            assertTrue(message("Ok, I am leaving without you.").getMessageCount() > stored.getMessageCount());
+        }
+    }
+
+    @Test
+    @DisplayName("Test a restart loads the snapshot and replays only the newer records")
+    void testSnapshotPlusTail() throws IOException {
+        for (JSONHandler.StorageMode mode : JSONHandler.StorageMode.values()) {
+            JSONHandler.setDataDirectory(Files.createDirectories(tempDir.resolve(mode.name())));
+            JSONHandler.setStorageMode(mode);
+            Message.getStore().clear();
+            Message first = message("Did you get the cake?");
+            Message second = message("Where are you?");
+            first.sentMessage(1);
+            second.sentMessage(3);
+            assertTrue(MessageHistory.snapshot(), mode.name());
+            assertFalse(MessageHistory.snapshot(), mode + ": nothing stored since");
+
+            Message.getStore().clear();
+            MessageHistory.Result unchanged = MessageHistory.load();
+            assertTrue(unchanged.isFromSnapshot(), mode.name());
+            assertEquals(0, unchanged.getReplayed(), mode.name());
+            assertEquals(2, unchanged.getLoaded(), mode.name());
+
+            // Written after the snapshot: a new message, a changed one and a deletion
+            Message third = message("It is dinner time!");
+            third.sentMessage(1);
+            first.sentMessage(3);
+            Message.deleteMessageByHash(second.getMessageHash());
+
+            Message.getStore().clear();
+            MessageHistory.Result replayed = MessageHistory.load();
+            assertTrue(replayed.isFromSnapshot(), mode.name());
+            assertEquals(3, replayed.getReplayed(), mode.name());
+            assertEquals(2, replayed.getLoaded(), mode.name());
+            assertEquals("stored", Message.getStore().findByID(first.getMessageID()).getStatus(), mode.name());
+            assertNotNull(Message.getStore().findByID(third.getMessageID()), mode.name());
+            assertNull(Message.getStore().findByID(second.getMessageID()), mode.name());
+            assertTrue(message("Ok, I am leaving without you.").getMessageCount() > third.getMessageCount());
+
+            if (mode != JSONHandler.StorageMode.SEGMENTED) {
+                // Compaction rewrites the archive the snapshot pointed into
+                JSONHandler.compact();
+                Message.getStore().clear();
+                MessageHistory.Result compacted = MessageHistory.load();
+                assertFalse(compacted.isFromSnapshot(), mode.name());
+                assertEquals(2, compacted.getLoaded(), mode.name());
+            }
+        }
+    }
+
+    @Test
+    @DisplayName("Test a snapshot restores the same store and statistics as the run that took it")
+    void testSnapshotRestoresStore() throws IOException {
+        JSONHandler.setStorageMode(JSONHandler.StorageMode.APPEND_LOG);
+        Message.getStore().clear();
+        Message first = message("Did you get the cake?");
+        Message second = message("Where are you? You are late! I have asked you to be on time.");
+        Message other = message("It is dinner time!");
+        other.setRecipient("+27834484567");
+        first.sentMessage(1);
+        second.sentMessage(3);
+        second.sentMessage(1);
+        other.sentMessage(3);
+        message("Ok, I am leaving without you.").sentMessage(2);
+        assertTrue(MessageHistory.snapshot());
+        String before = describe(Message.getStore());
+
+        Message.getStore().clear();
+        assertTrue(MessageHistory.load().isFromSnapshot());
+        assertEquals(before, describe(Message.getStore()));
+        // Still removable through every index after a bulk restore
+        assertNotNull(Message.getStore().removeByHash(other.getMessageHash()));
+        assertEquals(0, Message.getStore().statistics().countForRecipient("+27834484567"));
+        assertFalse(Message.getStore().hashes().contains(other.getMessageHash()));
+    }
+
+    private static String describe(MessageStore store) {
+        StringBuilder out = new StringBuilder();
+        MessageStatistics statistics = store.statistics();
+        for (MessageStore.Category category : MessageStore.Category.values()) {
+            out.append(category).append(' ').append(store.count(category)).append(' ')
+                    .append(statistics.count(category)).append(' ').append(statistics.totalLength(category))
+                    .append(' ').append(store.list(category).stream().map(Message::getMessageID).toList())
+                    .append('\n');
+        }
+        out.append(statistics.longestSent().getMessageID()).append('\n');
+        out.append(new java.util.TreeMap<>(statistics.recipientCounts())).append('\n');
+        out.append(store.findByRecipient("+27838884567").stream().map(Message::getMessageID).toList()).append('\n');
+        out.append(store.hashes().stream().sorted().toList()).append('\n');
+        out.append(store.ids().stream().sorted().toList());
+        return out.toString();
+    }
+
+    @Test
+    @DisplayName("Test deleting a message that was stored and then sent removes it now and after a restart")
+    void testDeleteStoredAndSent() throws IOException {
+        JSONHandler.setStorageMode(JSONHandler.StorageMode.APPEND_LOG);
+        Message.getStore().clear();
+        Message message = message("Did you get the cake?");
+        message.sentMessage(3);
+        message.sentMessage(1);
+        assertTrue(Message.deleteMessageByHash(message.getMessageHash()).startsWith("Message successfully deleted"));
+        assertNull(Message.getStore().findByID(message.getMessageID()));
+        assertEquals(0, Message.getStore().count(MessageStore.Category.STORED));
+
+        Message.getStore().clear();
+        MessageHistory.Result result = MessageHistory.load();
+        assertEquals(0, result.getLoaded());
+        assertEquals(3, result.getStaleRecords());
+    }
+
+    @Test
+    @DisplayName("Test messages from runs that each counted from 1 all load, with counts of their own")
+    void testRepeatedCounts() throws IOException {
+        JSONHandler.setStorageMode(JSONHandler.StorageMode.JSON_ARRAY);
+        Message.getStore().clear();
+        // As two earlier runs would have left messages.json: both first messages have count 1
+        JSONHandler.writeMessagesToFile(tempDir.resolve("messages.json"), java.util.List.of(
+                JSONHandler.toArrayEntry(new MessageRecord("1000000001", 1, "+27838884567",
+                        "Did you get the cake?", "10:1:DIDCAKE?", "sent", "2025-10-13 14:45:30")),
+                JSONHandler.toArrayEntry(new MessageRecord("1000000002", 2, "+27838884567",
+                        "Where are you?", "10:2:WHEREYOU?", "stored", "2025-10-13 14:46:30")),
+                JSONHandler.toArrayEntry(new MessageRecord("5000000003", 1, "+27834484567",
+                        "It is dinner time!", "50:1:ITTIME!", "sent", "2025-10-14 09:12:00"))));
+        int sentBefore = Message.returnTotalMessages();
+
+        assertEquals(3, MessageHistory.load().getLoaded());
+        assertEquals(2, Message.getSentMessages().size());
+        assertEquals(1, Message.getStoredMessages().size());
+        assertEquals(2, Message.returnTotalMessages() - sentBefore);
+        assertTrue(Message.searchMessageByID("5000000003").startsWith("Message Found:\n"));
+        Message first = Message.getStore().findByID("1000000001");
+        Message repeated = Message.getStore().findByID("5000000003");
+        assertEquals(1, first.getMessageCount());
+        assertTrue(repeated.getMessageCount() > 2);
+        Message next = message("Ok, I am leaving without you.");
+        assertTrue(next.getMessageCount() > repeated.getMessageCount());
+        // IDs carry on after the highest one in the archive
+        assertTrue(Long.parseLong(next.getMessageID()) > 5_000_000_003L);
+
+        // The new counts are what a snapshot keeps
+        assertTrue(MessageHistory.snapshot());
+        Message.getStore().clear();
+        MessageHistory.Result fromSnapshot = MessageHistory.load();
+        assertTrue(fromSnapshot.isFromSnapshot());
+        assertEquals(3, fromSnapshot.getLoaded());
+    }
+}
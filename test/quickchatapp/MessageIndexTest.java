@@ -0,0 +1,71 @@
+package quickchatapp;
+
+import org.junit.jupiter.api.*;
+import org.junit.jupiter.api.io.TempDir;
+import static org.junit.jupiter.api.Assertions.*;
+import java.io.IOException;
+import java.nio.file.Path;
+
+class MessageIndexTest {
+    @TempDir
+    Path tempDir;
+
+    @Test
+    @DisplayName("Test lookups return the newest offset for an ID")
+    void testPutAndGet() throws IOException {
+        try (MessageIndex index = new MessageIndex(tempDir.resolve("messages.idx"))) {
+            index.put(3568395113L, 0);
+            index.put(7795628685L, 180);
+            index.put(3568395113L, 360);
+
+            assertEquals(360, index.get(3568395113L));
+            assertEquals(180, index.get(7795628685L));
+            assertEquals(-1, index.get(1234567890L));
+            assertEquals(2, index.size());
+        }
+    }
+
+    @Test
+    @DisplayName("Test the index grows and survives a reopen")
+    void testGrowAndReopen() throws IOException {
+        Path file = tempDir.resolve("messages.idx");
+        try (MessageIndex index = new MessageIndex(file)) {
+            for (int i = 0; i < 10_000; i++) {
+                index.put(1_000_000_000L + i, i * 100L);
+            }
+            index.setIndexedLength(1_000_000L);
+        }
+        try (MessageIndex index = new MessageIndex(file)) {
+            assertEquals(10_000, index.size());
+            assertEquals(1_000_000L, index.getIndexedLength());
+            for (int i = 0; i < 10_000; i++) {
+                assertEquals(i * 100L, index.get(1_000_000_000L + i));
+            }
+        }
+    }
+
+    @Test
+    @DisplayName("Test clearing drops every entry")
+    void testClear() throws IOException {
+        try (MessageIndex index = new MessageIndex(tempDir.resolve("messages.idx"))) {
+            index.put(3568395113L, 42);
+            index.setIndexedLength(100);
+            index.clear();
+
+            assertEquals(-1, index.get(3568395113L));
+            assertEquals(0, index.getIndexedLength());
+        }
+    }
+
+    @Test
+    @DisplayName("Test a lookup on a closed index fails with an IOException")
+    void testClosed() throws IOException {
+        MessageIndex index = new MessageIndex(tempDir.resolve("messages.idx"));
+        index.put(3568395113L, 42);
+        index.close();
+        assertThrows(IOException.class, () -> index.get(3568395113L));
+        assertThrows(IOException.class, () -> index.put(7795628685L, 180));
+        assertThrows(IOException.class, index::getIndexedLength);
+        assertThrows(IOException.class, () -> index.setIndexedLength(100));
+    }
+}
@@ -0,0 +1,72 @@
+package quickchatapp;
+
+import org.junit.jupiter.api.*;
+import static org.junit.jupiter.api.Assertions.*;
+import java.io.IOException;
+import java.io.StringReader;
+
+class MessageJsonReaderTest {
+
+    @Test
+    @DisplayName("Test reading the pretty-printed messages.json array")
+    void testReadsJsonArray() throws IOException {
+        String json = "[\n"
+                + "  {\n"
+                + "    \"messageID\": \"7795628685\",\n"
+                + "    \"messageCount\": 1,\n"
+                + "    \"recipient\": \"+27638208064\",\n"
+                + "    \"message\": \"hello\",\n"
+                + "    \"messageHash\": \"77:1:HELLOHELLO\",\n"
+                + "    \"status\": \"sent\",\n"
+                + "    \"timestamp\": \"2025-10-13 14:45:30\"\n"
+                + "  },\n"
+                + "  {\n"
+                + "    \"messageID\": \"3568395113\",\n"
+                + "    \"messageCount\": 2,\n"
+                + "    \"status\": \"stored\"\n"
+                + "  }\n"
+                + "]";
+        try (MessageJsonReader reader = new MessageJsonReader(new StringReader(json))) {
+            MessageRecord first = reader.next();
+            assertEquals("7795628685", first.getMessageID());
+            assertEquals(1, first.getMessageCount());
+            assertEquals("+27638208064", first.getRecipient());
+            assertEquals("hello", first.getMessage());
+            assertEquals("77:1:HELLOHELLO", first.getMessageHash());
+            assertEquals("sent", first.getStatus());
+            assertEquals("2025-10-13 14:45:30", first.getTimestamp());
+
+            MessageRecord second = reader.next();
+            assertEquals("3568395113", second.getMessageID());
+            assertEquals(2, second.getMessageCount());
+            assertEquals("N/A", second.getRecipient(), "Missing fields should be reported as N/A");
+
+            assertNull(reader.next());
+        }
+    }
+
+    @Test
+    @DisplayName("Test reading compact JSON lines with escapes and unknown fields")
+    void testReadsJsonLines() throws IOException {
+        String json = "{\"messageID\":\"1000000001\",\"message\":\"say \\\"hi\\\"\\nbye \\u00e9\",\"extra\":true}\n"
+                + "{ \"messageID\" : \"1000000002\" , \"messageCount\" : 7 }";
+        try (MessageJsonReader reader = new MessageJsonReader(new StringReader(json))) {
+            MessageRecord first = reader.next();
+            assertEquals("1000000001", first.getMessageID());
+            assertEquals("say \"hi\"\nbye \u00e9", first.getMessage());
+
+            MessageRecord second = reader.next();
+            assertEquals("1000000002", second.getMessageID());
+            assertEquals(7, second.getMessageCount());
+
+            assertNull(reader.next());
+        }
+    }
+
+    @Test
+    @DisplayName("Test malformed input is rejected")
+    void testRejectsMalformedInput() {
+        MessageJsonReader reader = new MessageJsonReader(new StringReader("{\"messageID\": \"1000000001\""));
+        assertThrows(IOException.class, reader::next);
+    }
+}
@@ -0,0 +1,89 @@
+package quickchatapp;
+
+import org.junit.jupiter.api.*;
+import org.junit.jupiter.api.io.TempDir;
+import static org.junit.jupiter.api.Assertions.*;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+
+class MessageLogTest {
+    @TempDir
+    Path tempDir;
+
+    @Test
+    @DisplayName("Test appended records are read back in order")
+    void testAppendAndReadBack() throws IOException {
+        Path file = tempDir.resolve("messages.jsonl");
+        try (MessageLog log = new MessageLog(file)) {
+            long first = log.append("{\"messageID\":\"1000000001\"}");
+            long second = log.append("{\"messageID\":\"1000000002\"}");
+
+            assertEquals(0, first);
+            assertTrue(second > first, "Each append should land after the previous record");
+
+            List<String> records = new ArrayList<>();
+            log.forEachRecord(records::add);
+            assertEquals(List.of("{\"messageID\":\"1000000001\"}", "{\"messageID\":\"1000000002\"}"), records);
+        }
+    }
+
+    @Test
+    @DisplayName("Test reopening the log continues at the end of the file")
+    void testReopenAppendsAtEnd() throws IOException {
+        Path file = tempDir.resolve("messages.jsonl");
+        try (MessageLog log = new MessageLog(file)) {
+            log.append("{\"messageID\":\"1000000001\"}");
+        }
+        try (MessageLog log = new MessageLog(file)) {
+            long end = log.size();
+            assertEquals(end, log.append("{\"messageID\":\"1000000002\"}"));
+
+            List<String> records = new ArrayList<>();
+            log.forEachRecord(records::add);
+            assertEquals(2, records.size());
+        }
+    }
+
+    @Test
+    @DisplayName("Test records can be read back by offset")
+    void testReadAtOffset() throws IOException {
+        try (MessageLog log = new MessageLog(tempDir.resolve("messages.jsonl"))) {
+            long[] offsets = log.appendAll(List.of("{\"messageID\":\"1000000001\"}", "{\"message\":\"h\u00e9llo\"}"));
+
+            assertEquals("{\"message\":\"h\u00e9llo\"}", log.readAt(offsets[1]));
+            assertEquals("{\"messageID\":\"1000000001\"}", log.readAt(offsets[0]));
+
+            List<Long> seen = new ArrayList<>();
+            log.forEachRecordFrom(offsets[1], (offset, record) -> seen.add(offset));
+            assertEquals(List.of(offsets[1]), seen);
+        }
+    }
+
+    @Test
+    @DisplayName("Test reopening the log drops a line torn by a crash so the next append starts a new line")
+    void testTornLine() throws IOException {
+        Path file = tempDir.resolve("messages.jsonl");
+        try (MessageLog log = new MessageLog(file)) {
+            log.append("{\"messageID\":\"1000000001\"}");
+        }
+        long intact = Files.size(file);
+        // Longer than the buffer the end of the file is searched with
+        String torn = "{\"messageID\":\"1000000002\",\"message\":\"" + "x".repeat(10_000);
+        Files.writeString(file, torn, StandardOpenOption.APPEND);
+        try (MessageLog log = new MessageLog(file)) {
+            assertEquals(torn.length(), log.getTruncatedBytes());
+            assertEquals(intact, log.size());
+            log.append("{\"messageID\":\"1000000003\"}");
+        }
+        try (MessageLog log = new MessageLog(file)) {
+            assertEquals(0, log.getTruncatedBytes());
+            List<String> records = new ArrayList<>();
+            log.forEachRecord(records::add);
+            assertEquals(List.of("{\"messageID\":\"1000000001\"}", "{\"messageID\":\"1000000003\"}"), records);
+        }
+    }
+}
@@ -0,0 +1,90 @@
+package quickchatapp;
+
+import org.junit.jupiter.api.*;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.junit.jupiter.api.io.TempDir;
+import static org.junit.jupiter.api.Assertions.*;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+@ExtendWith(JSONHandlerState.class)
+class MessagePipelineTest {
+    @TempDir
+    Path tempDir;
+
+    @BeforeEach
+    void setUp() {
+        JSONHandler.setDataDirectory(tempDir);
+        JSONHandler.setStorageMode(JSONHandler.StorageMode.APPEND_LOG);
+    }
+
+    @Test
+    @DisplayName("Test every valid message passes all stages and is persisted once")
+    void testPipeline() throws Exception {
+        JSONHandler.enableBatching(1024, 64, 1);
+        Set<Long> rejectedSequences = ConcurrentHashMap.newKeySet();
+        // Tiny queues so that every stage blocks on the next one now and then
+        MessagePipeline pipeline = new MessagePipeline(3, 2, 2, 4,
+                (sequence, problem) -> rejectedSequences.add(sequence));
+        int total = 3000;
+        for (int i = 1; i <= total; i++) {
+            String recipient = i % 10 == 0 ? "0838884567" : "+2783" + String.format("%07d", i);
+            pipeline.submit(recipient, "Message number " + i, i % 3 == 0 ? 3 : 1);
+        }
+        pipeline.close();
+
+        assertEquals(total, pipeline.getSubmitted());
+        assertEquals(total / 10, pipeline.getRejected());
+        assertEquals(total - total / 10, pipeline.getAccepted());
+        assertEquals(0, pipeline.getFailed());
+        assertTrue(rejectedSequences.contains(10L) && rejectedSequences.contains(3000L));
+
+        List<MessageRecord> records = JSONHandler.getMessagesPage(0, total);
+        assertEquals(pipeline.getAccepted(), records.size(), "close() waits for the batching writer");
+        Set<String> ids = new HashSet<>();
+        for (MessageRecord record : records) {
+            assertTrue(ids.add(record.getMessageID()));
+        }
+        assertThrows(IllegalStateException.class, () -> pipeline.submit("+27838884567", "Too late", 1));
+    }
+
+    @Test
+    @DisplayName("Test one worker per stage keeps the input order")
+    void testSingleWorkersKeepOrder() throws Exception {
+        try (MessagePipeline pipeline = new MessagePipeline(1, 1, 1, 2)) {
+            for (int i = 0; i < 50; i++) {
+                pipeline.submit("+27838884567", "Message " + i, 3);
+            }
+        }
+        List<MessageRecord> records = JSONHandler.getMessagesPage(0, 100);
+        assertEquals(50, records.size());
+        for (int i = 0; i < 50; i++) {
+            assertEquals("Message " + i, records.get(i).getMessage());
+        }
+    }
+
+    @Test
+    @DisplayName("Test close returns even when a worker dies of an Error")
+    void testWorkerError() throws Exception {
+        MessagePipeline pipeline = new MessagePipeline(1, 1, 1, 16, (sequence, problem) -> {
+            throw new Error("Listener failed on record " + sequence);
+        });
+        pipeline.submit("0838884567", "Rejected, and the listener throws", 1);
+        pipeline.submit("+27838884567", "Never validated", 1);
+        assertTimeoutPreemptively(Duration.ofSeconds(10), pipeline::close);
+        assertEquals(1, pipeline.getRejected());
+    }
+
+    @Test
+    @DisplayName("Test validation rules")
+    void testValidate() {
+        assertNull(MessagePipeline.validate("+27838884567", "Hello"));
+        assertNotNull(MessagePipeline.validate("0838884567", "Hello"));
+        assertNotNull(MessagePipeline.validate("+27838884567", ""));
+        assertNotNull(MessagePipeline.validate("+27838884567", "x".repeat(251)));
+    }
+}
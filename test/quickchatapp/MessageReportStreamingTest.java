@@ -0,0 +1,134 @@
+package quickchatapp;
+
+import org.junit.jupiter.api.*;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.junit.jupiter.api.io.TempDir;
+import static org.junit.jupiter.api.Assertions.*;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.StringWriter;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Collectors;
+
+@ExtendWith(JSONHandlerState.class)
+class MessageReportStreamingTest {
+    @TempDir
+    Path tempDir;
+
+    @BeforeEach
+    void setUp() {
+        JSONHandler.setDataDirectory(tempDir);
+    }
+
+    @Test
+    @DisplayName("Test written reports match the String reports")
+    void testWrittenReportsMatch() throws IOException {
+        Message.populateWithTestData();
+
+        StringWriter senders = new StringWriter();
+        Message.writeSentMessagesSendersRecipients(senders);
+        assertEquals(Message.displaySentMessagesSendersRecipients(), senders.toString());
+
+        StringWriter report = new StringWriter();
+        Message.writeFullReport(report);
+        assertEquals(Message.displayFullReport(), report.toString());
+
+        for (String recipient : List.of("+27838884567", "+27000000000")) {
+            StringWriter found = new StringWriter();
+            Message.writeMessagesByRecipient(recipient, found);
+            assertEquals(Message.searchMessagesByRecipient(recipient), found.toString());
+        }
+    }
+
+    @Test
+    @DisplayName("Test a report written into a background buffer stops once the thread is interrupted")
+    void testCancelledReport() throws IOException {
+        Message.populateWithTestData();
+        BackgroundTask.ReportBuffer report = new BackgroundTask.ReportBuffer();
+        Message.writeFullReport(report);
+        assertEquals(Message.displayFullReport(), report.toString());
+
+        Thread.currentThread().interrupt();
+        try {
+            assertThrows(InterruptedIOException.class, () -> Message.writeFullReport(new BackgroundTask.ReportBuffer()));
+        } finally {
+            Thread.interrupted();
+        }
+    }
+
+    @Test
+    @DisplayName("Test sent message pages cover the sent list in order")
+    void testSentMessagePages() {
+        Message.populateWithTestData();
+        List<Message> paged = new ArrayList<>(Message.getSentMessagesPage(0, 1));
+        paged.addAll(Message.getSentMessagesPage(1, 10));
+        assertEquals(Message.getSentMessages(), paged);
+        assertTrue(Message.getSentMessagesPage(5, 10).isEmpty());
+        assertEquals(Message.getSentMessages(), Message.streamSentMessages().collect(Collectors.toList()));
+    }
+
+    @Test
+    @DisplayName("Test archive pages and the written archive list every stored record")
+    void testArchivePages() throws IOException {
+        for (JSONHandler.StorageMode mode : JSONHandler.StorageMode.values()) {
+            JSONHandler.setDataDirectory(Files.createDirectories(tempDir.resolve(mode.name())));
+            JSONHandler.setStorageMode(mode);
+
+            StringWriter empty = new StringWriter();
+            JSONHandler.writeAllMessages(empty);
+            assertEquals(JSONHandler.getAllMessages(), empty.toString(), mode.name());
+
+            List<String> stored = new ArrayList<>();
+            for (int i = 0; i < 5; i++) {
+                Message message = new Message();
+                message.setRecipient("+27838884567");
+                message.setMessage("Message " + i);
+                message.sentMessage(3);
+                stored.add(message.getMessageID());
+            }
+
+            List<String> paged = new ArrayList<>();
+            for (int offset = 0; offset < 6; offset += 2) {
+                for (MessageRecord record : JSONHandler.getMessagesPage(offset, 2)) {
+                    paged.add(record.getMessageID());
+                }
+            }
+            assertEquals(stored, paged, mode.name());
+
+            StringWriter all = new StringWriter();
+            JSONHandler.writeAllMessages(all);
+            assertEquals(JSONHandler.getAllMessages(), all.toString(), mode.name());
+        }
+    }
+
+    @Test
+    @DisplayName("Test the stored record list leaves out the tombstones of deleted messages")
+    void testArchiveListSkipsTombstones() throws IOException {
+        for (JSONHandler.StorageMode mode : JSONHandler.StorageMode.values()) {
+            JSONHandler.setDataDirectory(Files.createDirectories(tempDir.resolve(mode.name())));
+            JSONHandler.setStorageMode(mode);
+            Message message = new Message();
+            message.setRecipient("+27838884567");
+            message.setMessage("It is dinner time!");
+
+            // Nothing but a tombstone lists as nothing stored
+            JSONHandler.deleteMessageAsync(message).join();
+            assertEquals("No messages stored.", JSONHandler.getAllMessages(), mode.name());
+            StringWriter tombstoneOnly = new StringWriter();
+            JSONHandler.writeAllMessages(tombstoneOnly);
+            assertEquals(JSONHandler.getAllMessages(), tombstoneOnly.toString(), mode.name());
+
+            message.sentMessage(3);
+            JSONHandler.deleteMessageAsync(message).join();
+            String all = JSONHandler.getAllMessages();
+            assertTrue(all.contains(message.getMessageID()), mode.name());
+            assertFalse(all.contains("Status: " + MessageRecord.DELETED), mode.name());
+            StringWriter written = new StringWriter();
+            JSONHandler.writeAllMessages(written);
+            assertEquals(all, written.toString(), mode.name());
+        }
+    }
+}
@@ -0,0 +1,79 @@
+package quickchatapp;
+
+import org.junit.jupiter.api.*;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.junit.jupiter.api.io.TempDir;
+import static org.junit.jupiter.api.Assertions.*;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+
+@ExtendWith(JSONHandlerState.class)
+class MessageSendExecutorTest {
+    @TempDir
+    Path tempDir;
+
+    @BeforeEach
+    void setUp() {
+        JSONHandler.setDataDirectory(tempDir);
+        JSONHandler.setStorageMode(JSONHandler.StorageMode.APPEND_LOG);
+    }
+
+    @Test
+    @DisplayName("Test both executor modes persist every message before completing it")
+    void testModes() throws Exception {
+        JSONHandler.enableBatching(1024, 64, 1);
+        int expected = 0;
+        for (MessageSendExecutor.Mode mode : MessageSendExecutor.Mode.values()) {
+            List<CompletableFuture<Message>> sent = new ArrayList<>();
+            // An in-flight limit below the number of messages makes send block now and then
+            try (MessageSendExecutor executor = new MessageSendExecutor(mode, 4, 50)) {
+                for (int i = 0; i < 500; i++) {
+                    sent.add(executor.send("+27838884567", mode + " message " + i, 1));
+                }
+            }
+            expected += sent.size();
+            for (CompletableFuture<Message> future : sent) {
+                Message message = future.join();
+                assertTrue(message.whenPersisted().isDone(), mode.name());
+                assertEquals("sent", message.getStatus(), mode.name());
+            }
+            assertEquals(expected, JSONHandler.getMessagesPage(0, 2000).size(), mode.name());
+        }
+    }
+
+    @Test
+    @DisplayName("Test an invalid message completes with the validation problem")
+    void testRejected() throws Exception {
+        try (MessageSendExecutor executor = new MessageSendExecutor(MessageSendExecutor.Mode.VIRTUAL, 1, 10)) {
+            CompletableFuture<Message> rejected = executor.send("0838884567", "No international code", 1);
+            CompletionException e = assertThrows(CompletionException.class, rejected::join);
+            assertInstanceOf(IllegalArgumentException.class, e.getCause());
+        }
+    }
+
+    @Test
+    @DisplayName("Test a burst on virtual threads gets unique IDs without skipping ahead")
+    void testVirtualThreadIds() throws Exception {
+        JSONHandler.enableBatching(16 * 1024, 512, 1);
+        int burst = 10_000;
+        List<CompletableFuture<Message>> sent = new ArrayList<>(burst);
+        try (MessageSendExecutor executor = new MessageSendExecutor(MessageSendExecutor.Mode.VIRTUAL, 1, 1000)) {
+            for (int i = 0; i < burst; i++) {
+                sent.add(executor.send("+27838884567", "Burst message " + i, 1));
+            }
+        }
+        Set<Long> ids = new HashSet<>();
+        for (CompletableFuture<Message> future : sent) {
+            ids.add(Long.parseLong(future.join().getMessageID()));
+        }
+        assertEquals(burst, ids.size());
+        // Each message used up one ID, not a block of them
+        assertTrue(Collections.max(ids) - Collections.min(ids) < 2L * burst);
+    }
+}
@@ -0,0 +1,112 @@
+package quickchatapp;
+
+import org.junit.jupiter.api.*;
+import static org.junit.jupiter.api.Assertions.*;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+class MessageStatisticsTest {
+    private MessageStore store;
+
+    private static Message message(String recipient, String text) {
+        Message message = new Message();
+        message.setRecipient(recipient);
+        message.setMessage(text);
+        return message;
+    }
+
+    @BeforeEach
+    void setUp() {
+        store = new MessageStore();
+    }
+
+    @Test
+    @DisplayName("Test the longest sent message follows sends and deletes")
+    void testLongestSent() {
+        MessageStatistics stats = store.statistics();
+        assertNull(stats.longestSent());
+
+        Message first = message("+27838884567", "Twelve chars");
+        Message tie = message("+27838884567", "Twelve char!");
+        Message longest = message("+27834484567", "The longest message of them all");
+        store.add(MessageStore.Category.SENT, first);
+        store.add(MessageStore.Category.SENT, tie);
+        store.add(MessageStore.Category.STORED, message("+27834484567", "A stored message is never the longest sent"));
+        assertSame(first, stats.longestSent(), "Of equal lengths the earliest wins");
+
+        store.add(MessageStore.Category.SENT, longest);
+        assertSame(longest, stats.longestSent());
+        store.removeByHash(longest.getMessageHash());
+        assertSame(first, stats.longestSent());
+        store.removeByHash(first.getMessageHash());
+        assertSame(tie, stats.longestSent());
+    }
+
+    @Test
+    @DisplayName("Test counts, average length and recipient counts")
+    void testAggregates() {
+        MessageStatistics stats = store.statistics();
+        Message a = message("+27838884567", "1234");
+        Message b = message("+27838884567", "12345678");
+        store.add(MessageStore.Category.SENT, a);
+        store.add(MessageStore.Category.SENT, b);
+        store.add(MessageStore.Category.STORED, message("+27834484567", "12"));
+        store.add(MessageStore.Category.DISREGARDED, message("+27834484567", "123"));
+
+        assertEquals(2, stats.count(MessageStore.Category.SENT));
+        assertEquals(6.0, stats.averageLength(MessageStore.Category.SENT));
+        assertEquals(12, stats.totalLength(MessageStore.Category.SENT));
+        assertEquals(1, stats.count(MessageStore.Category.DISREGARDED));
+        assertEquals(2, stats.countForRecipient("+27838884567"));
+        assertEquals(Map.of("+27838884567", 2, "+27834484567", 1), stats.recipientCounts());
+
+        store.removeByHash(b.getMessageHash());
+        assertEquals(4.0, stats.averageLength(MessageStore.Category.SENT));
+        assertEquals(1, stats.countForRecipient("+27838884567"));
+
+        store.clear();
+        assertEquals(0, stats.count(MessageStore.Category.SENT));
+        assertEquals(0, stats.averageLength(MessageStore.Category.SENT));
+        assertNull(stats.longestSent());
+    }
+
+    @Test
+    @DisplayName("Test statistics match a full scan after concurrent sends and deletes")
+    void testConcurrentUpdates() throws Exception {
+        List<Message> messages = new ArrayList<>();
+        for (int i = 0; i < 4000; i++) {
+            messages.add(message("+2783000000" + (i % 4), "x".repeat(1 + i % 97)));
+        }
+        List<Thread> threads = new ArrayList<>();
+        for (int t = 0; t < 4; t++) {
+            int start = t;
+            threads.add(new Thread(() -> {
+                for (int i = start; i < messages.size(); i += 4) {
+                    store.add(MessageStore.Category.SENT, messages.get(i));
+                    if (i % 3 == 0) {
+                        store.removeByHash(messages.get(i).getMessageHash());
+                    }
+                }
+            }));
+        }
+        threads.forEach(Thread::start);
+        for (Thread thread : threads) {
+            thread.join();
+        }
+
+        MessageStatistics stats = store.statistics();
+        long total = 0;
+        Message longest = null;
+        for (Message msg : store.view(MessageStore.Category.SENT)) {
+            total += msg.getMessage().length();
+            if (longest == null || msg.getMessage().length() > longest.getMessage().length()) {
+                longest = msg;
+            }
+        }
+        assertEquals(store.count(MessageStore.Category.SENT), stats.count(MessageStore.Category.SENT));
+        assertEquals(total, stats.totalLength(MessageStore.Category.SENT));
+        assertSame(longest, stats.longestSent());
+        assertEquals(store.findByRecipient("+27830000001").size(), stats.countForRecipient("+27830000001"));
+    }
+}
@@ -0,0 +1,219 @@
+package quickchatapp;
+
+import org.junit.jupiter.api.*;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.junit.jupiter.api.io.TempDir;
+import static org.junit.jupiter.api.Assertions.*;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+@ExtendWith(JSONHandlerState.class)
+class MessageStoreTest {
+    private static final int THREADS = 8;
+    private static final int PER_THREAD = 500;
+
+    private MessageStore store;
+
+    @TempDir
+    Path tempDir;
+
+    private static Message message(String recipient, String text) {
+        Message message = new Message();
+        message.setRecipient(recipient);
+        message.setMessage(text);
+        return message;
+    }
+
+    @BeforeEach
+    void setUp() {
+        store = new MessageStore();
+    }
+
+    @Test
+    @DisplayName("Test messages are found by ID and recipient")
+    void testIndexes() {
+        Message stored = message("+27838884567", "Where are you?");
+        Message sent = message("+27838884567", "Did you get the cake?");
+        Message other = message("+27834484567", "It is dinner time!");
+        store.add(MessageStore.Category.STORED, stored);
+        store.add(MessageStore.Category.SENT, sent);
+        store.add(MessageStore.Category.SENT, other);
+
+        assertSame(sent, store.findByID(sent.getMessageID()));
+        assertTrue(store.isSent(sent));
+        assertFalse(store.isSent(stored));
+        // Sent messages are listed before stored ones
+        assertEquals(List.of(sent, stored), store.findByRecipient("+27838884567"));
+        assertEquals(List.of(), store.findByRecipient("+27000000000"));
+        assertEquals(2, store.count(MessageStore.Category.SENT));
+    }
+
+    @Test
+    @DisplayName("Test deleting by hash removes the message from every index")
+    void testRemoveByHash() {
+        Message sent = message("+27838884567", "Did you get the cake?");
+        store.add(MessageStore.Category.SENT, sent);
+
+        assertSame(sent, store.removeByHash(sent.getMessageHash()));
+        assertNull(store.findByID(sent.getMessageID()));
+        assertEquals(List.of(), store.findByRecipient("+27838884567"));
+        assertEquals(0, store.count(MessageStore.Category.SENT));
+        assertNull(store.removeByHash(sent.getMessageHash()), "A deleted message cannot be deleted twice");
+    }
+
+    @Test
+    @DisplayName("Test a message that was sent and stored is deleted from sent first")
+    void testRemoveSentBeforeStored() {
+        Message message = message("+27838884567", "Did you get the cake?");
+        store.add(MessageStore.Category.SENT, message);
+        store.add(MessageStore.Category.STORED, message);
+
+        assertSame(message, store.removeByHash(message.getMessageHash()));
+        assertEquals(0, store.count(MessageStore.Category.SENT));
+        assertEquals(1, store.count(MessageStore.Category.STORED));
+        assertSame(message, store.findByID(message.getMessageID()), "The stored copy is still searchable");
+    }
+
+    @Test
+    @DisplayName("Test removing a message as a whole takes it out of sent and stored messages at once")
+    void testRemoveAllByHash() {
+        Message message = message("+27838884567", "Did you get the cake?");
+        store.add(MessageStore.Category.SENT, message);
+        store.add(MessageStore.Category.STORED, message);
+
+        assertSame(message, store.removeAllByHash(message.getMessageHash()));
+        assertEquals(0, store.count(MessageStore.Category.SENT));
+        assertEquals(0, store.count(MessageStore.Category.STORED));
+        assertEquals(0, store.statistics().count(MessageStore.Category.STORED));
+        assertNull(store.findByID(message.getMessageID()));
+        assertNull(store.removeAllByHash(message.getMessageHash()));
+    }
+
+    @Test
+    @DisplayName("Test hashes are listed in the order registered, repeats included, as the array kept them")
+    void testHashOrder() {
+        Message first = message("+27838884567", "Hi");
+        Message second = message("+27838884567", "Where are you?");
+        for (Message message : List.of(second, first, second)) {
+            store.registerHash(message.getMessageHash());
+        }
+        store.add(MessageStore.Category.SENT, second);
+        assertEquals(List.of(second.getMessageHash(), first.getMessageHash(), second.getMessageHash()),
+                store.hashes());
+
+        store.removeByHash(second.getMessageHash());
+        assertEquals(List.of(first.getMessageHash(), second.getMessageHash()), store.hashes());
+    }
+
+    @Test
+    @DisplayName("Test the Message array operations work on the test data")
+    void testMessageFacade() {
+        Message.populateWithTestData();
+
+        assertEquals(2, Message.getSentMessages().size());
+        assertEquals(2, Message.getStoredMessages().size());
+        assertEquals(1, Message.getDisregardedMessages().size());
+        assertTrue(Message.searchMessagesByRecipient("+27838884567").contains("Where are you?"));
+
+        Message stored = Message.getStoredMessages().get(0);
+        assertTrue(Message.searchMessageByID(stored.getMessageID()).startsWith("Message Found (Stored):"));
+        assertTrue(Message.deleteMessageByHash(stored.getMessageHash()).startsWith("Message successfully deleted"));
+        assertEquals(1, Message.getStoredMessages().size());
+    }
+
+    @Test
+    @DisplayName("Test concurrent adds and deletes lose no updates")
+    void testConcurrentAddAndRemove() throws Exception {
+        List<Message> messages = new ArrayList<>();
+        for (int i = 0; i < THREADS * PER_THREAD; i++) {
+            messages.add(message("+2783000000" + (i % THREADS), "Message number " + i));
+        }
+        AtomicInteger removed = new AtomicInteger();
+        runConcurrently(t -> {
+            for (int i = t; i < messages.size(); i += THREADS) {
+                store.add(MessageStore.Category.SENT, messages.get(i));
+            }
+            // Every thread tries to delete every other block of messages; each must be removed exactly once
+            for (int i = 0; i < messages.size(); i++) {
+                if ((i / THREADS) % 2 == 0 && store.removeByHash(messages.get(i).getMessageHash()) != null) {
+                    removed.incrementAndGet();
+                }
+            }
+        });
+
+        assertEquals(messages.size() / 2, removed.get());
+        assertEquals(messages.size() / 2, store.count(MessageStore.Category.SENT));
+        assertEquals(messages.size() / 2, store.list(MessageStore.Category.SENT).size());
+        for (int t = 0; t < THREADS; t++) {
+            assertEquals(PER_THREAD / 2, store.findByRecipient("+2783000000" + t).size());
+        }
+    }
+
+    @Test
+    @DisplayName("Test many threads creating and sending messages keep counts and indexes consistent")
+    void testConcurrentSenders() throws Exception {
+        JSONHandler.setDataDirectory(tempDir);
+        JSONHandler.setStorageMode(JSONHandler.StorageMode.APPEND_LOG);
+        int sentBefore = Message.returnTotalMessages();
+        int sentCountBefore = Message.getStore().count(MessageStore.Category.SENT);
+        int storedCountBefore = Message.getStore().count(MessageStore.Category.STORED);
+        Set<Integer> counts = ConcurrentHashMap.newKeySet();
+        runConcurrently(t -> {
+            for (int i = 0; i < PER_THREAD; i++) {
+                Message message = message("+2783100000" + t, "Thread " + t + " message " + i);
+                counts.add(message.getMessageCount());
+                message.sentMessage(i % 4 == 0 ? 3 : 1);
+            }
+        });
+
+        int stored = THREADS * (PER_THREAD / 4);
+        int sent = THREADS * PER_THREAD - stored;
+        assertEquals(THREADS * PER_THREAD, counts.size(), "Every message gets its own count");
+        assertEquals(sentBefore + sent, Message.returnTotalMessages());
+        assertEquals(sentCountBefore + sent, Message.getStore().count(MessageStore.Category.SENT));
+        assertEquals(storedCountBefore + stored, Message.getStore().count(MessageStore.Category.STORED));
+        for (int t = 0; t < THREADS; t++) {
+            assertEquals(PER_THREAD, Message.getStore().findByRecipient("+2783100000" + t).size());
+        }
+        try (var lines = Files.lines(tempDir.resolve("messages.jsonl"))) {
+            assertEquals(THREADS * PER_THREAD, lines.count(), "Every send and store is written once");
+        }
+    }
+
+    private interface Worker {
+        void run(int thread) throws IOException;
+    }
+
+    // Starts THREADS workers together and rethrows the first failure
+    private static void runConcurrently(Worker worker) throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        CountDownLatch start = new CountDownLatch(1);
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int t = 0; t < THREADS; t++) {
+                int thread = t;
+                futures.add(executor.submit(() -> {
+                    start.await();
+                    worker.run(thread);
+                    return null;
+                }));
+            }
+            start.countDown();
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        } finally {
+            executor.shutdown();
+        }
+    }
+}
@@ -0,0 +1,134 @@
+package quickchatapp;
+
+import org.junit.jupiter.api.*;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.junit.jupiter.api.io.TempDir;
+import static org.junit.jupiter.api.Assertions.*;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import javax.swing.SwingUtilities;
+
+@ExtendWith(JSONHandlerState.class)
+class MessageTableModelTest {
+    @TempDir
+    Path tempDir;
+
+    @BeforeEach
+    void setUp() {
+        JSONHandler.setDataDirectory(tempDir);
+        JSONHandler.setStorageMode(JSONHandler.StorageMode.APPEND_LOG);
+    }
+
+    @Test
+    @DisplayName("Test the stored messages table loads one page at a time")
+    void testStoredMessagesPages() throws IOException {
+        int total = MessageTableModel.PAGE_SIZE * 2 + 10;
+        String lastID = null;
+        for (int i = 0; i < total; i++) {
+            Message message = new Message();
+            message.setRecipient("+27838884567");
+            message.setMessage("Message " + i);
+            message.sentMessage(3);
+            lastID = message.getMessageID();
+        }
+
+        try (MessageTableModel<MessageRecord> model = MessageTableModel.storedMessages()) {
+            assertEquals(MessageTableModel.PAGE_SIZE, model.getRowCount());
+            assertEquals("Recipient", model.getColumnName(1));
+            assertEquals("+27838884567", model.getValueAt(0, 1));
+            assertEquals("stored", model.getValueAt(0, 2));
+
+            assertEquals(MessageTableModel.PAGE_SIZE, model.loadPage());
+            assertEquals(10, model.loadPage());
+            assertFalse(model.isComplete());
+            assertEquals(0, model.loadPage());
+            assertTrue(model.isComplete());
+            assertEquals(total, model.getRowCount());
+            assertEquals(lastID, model.getValueAt(total - 1, 0));
+        }
+    }
+
+    @Test
+    @DisplayName("Test the stored messages table leaves out tombstones, as getAllMessages does")
+    void testStoredMessagesSkipTombstones() throws IOException {
+        Message deleted = new Message();
+        deleted.setRecipient("+27838884567");
+        deleted.setMessage("It is dinner time!");
+        for (int i = 0; i < MessageTableModel.PAGE_SIZE; i++) {
+            JSONHandler.deleteMessageAsync(deleted).join();
+        }
+        Message kept = new Message();
+        kept.setRecipient("+27838884567");
+        kept.setMessage("Did you get the cake?");
+        kept.sentMessage(3);
+
+        try (MessageTableModel<MessageRecord> model = MessageTableModel.storedMessages()) {
+            assertEquals(1, model.getRowCount());
+            assertEquals(kept.getMessageID(), model.getValueAt(0, 0));
+        }
+    }
+
+    @Test
+    @DisplayName("Test the sent messages table lists sent messages in order")
+    void testSentMessages() {
+        Message.populateWithTestData();
+        try (MessageTableModel<Message> model = MessageTableModel.sentMessages()) {
+            assertEquals(2, model.getRowCount());
+            assertEquals("+2783457896", model.getValueAt(0, 0));
+            assertEquals("It is dinner time!", model.getValueAt(1, 1));
+        }
+    }
+
+    @Test
+    @DisplayName("Test closing the table while a page loads leaves the source open until the load is done")
+    void testCloseDuringLoad() throws Exception {
+        CountDownLatch reading = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        CountDownLatch closed = new CountDownLatch(1);
+        AtomicInteger calls = new AtomicInteger();
+        MessageTableModel.RowSource<Integer> source = new MessageTableModel.RowSource<Integer>() {
+            @Override
+            public List<Integer> next(int limit) throws IOException {
+                if (calls.incrementAndGet() == 1) {
+                    return Collections.nCopies(limit, 1);
+                }
+                reading.countDown();
+                try {
+                    release.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                assertEquals(1, closed.getCount(), "Read after the source was closed");
+                return List.of(2);
+            }
+
+            @Override
+            public void close() {
+                closed.countDown();
+            }
+        };
+        List<MessageTableModel<Integer>> model = new ArrayList<>();
+        SwingUtilities.invokeAndWait(() -> {
+            model.add(MessageTableModel.open(source, new String[] {"Row"}, List.of(row -> row)));
+            // Painting the last row reads the next page in the background
+            model.get(0).getValueAt(MessageTableModel.PAGE_SIZE - 1, 0);
+        });
+        assertTrue(reading.await(5, TimeUnit.SECONDS));
+
+        SwingUtilities.invokeAndWait(() -> {
+            model.get(0).close();
+            assertEquals(0, model.get(0).loadPage());
+        });
+        assertEquals(1, closed.getCount(), "Closed while the worker was still reading");
+        release.countDown();
+        assertTrue(closed.await(5, TimeUnit.SECONDS));
+        SwingUtilities.invokeAndWait(() -> assertEquals(MessageTableModel.PAGE_SIZE, model.get(0).getRowCount()));
+        assertEquals(2, calls.get());
+    }
+}
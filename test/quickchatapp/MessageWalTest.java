@@ -0,0 +1,191 @@
+package quickchatapp;
+
+import org.junit.jupiter.api.*;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.junit.jupiter.api.io.TempDir;
+import static org.junit.jupiter.api.Assertions.*;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+@ExtendWith(JSONHandlerState.class)
+class MessageWalTest {
+    @TempDir
+    Path tempDir;
+
+    private static MessageRecord record(int i) {
+        return new MessageRecord(String.valueOf(1_000_000_000L + i), i, "+27838884567", "Message " + i,
+                "10:" + i + ":MESSAGE" + i, "sent", "2025-10-13 14:45:30");
+    }
+
+    private static List<String> messageIDs(MessageWal wal) throws IOException {
+        List<String> ids = new ArrayList<>();
+        wal.forEachRecord(record -> ids.add(record.getMessageID()));
+        return ids;
+    }
+
+    @Test
+    @DisplayName("Test logged records survive reopening the log")
+    void testReopen() throws IOException {
+        Path file = tempDir.resolve("messages.wal");
+        try (MessageWal wal = new MessageWal(file)) {
+            assertEquals(2, wal.appendAll(List.of(record(1), record(2))));
+        }
+        try (MessageWal wal = new MessageWal(file)) {
+            assertEquals(2, wal.getRecoveredRecords());
+            assertEquals(0, wal.getTruncatedBytes());
+            assertEquals(List.of("1000000001", "1000000002"), messageIDs(wal));
+            // Sequence numbers carry on after the recovered records
+            assertEquals(3, wal.appendAll(List.of(record(3))));
+        }
+    }
+
+    @Test
+    @DisplayName("Test a torn last record is cut off and appends continue after the intact ones")
+    void testTornTail() throws IOException {
+        Path file = tempDir.resolve("messages.wal");
+        try (MessageWal wal = new MessageWal(file)) {
+            wal.appendAll(List.of(record(1), record(2), record(3)));
+        }
+        long size = Files.size(file);
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE)) {
+            channel.truncate(size - 5);
+        }
+        try (MessageWal wal = new MessageWal(file)) {
+            assertEquals(2, wal.getRecoveredRecords());
+            assertTrue(wal.getTruncatedBytes() > 0);
+            wal.appendAll(List.of(record(4)));
+            assertEquals(List.of("1000000001", "1000000002", "1000000004"), messageIDs(wal));
+        }
+    }
+
+    @Test
+    @DisplayName("Test a record failing its checksum ends recovery")
+    void testCorruptRecord() throws IOException {
+        Path file = tempDir.resolve("messages.wal");
+        long second;
+        try (MessageWal wal = new MessageWal(file)) {
+            wal.appendAll(List.of(record(1)));
+            second = Files.size(file);
+            wal.appendAll(List.of(record(2), record(3)));
+        }
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE)) {
+            // A byte in the middle of the second record's payload
+            channel.write(ByteBuffer.wrap(new byte[] {'X'}), second + MessageWal.HEADER_BYTES + 20);
+        }
+        try (MessageWal wal = new MessageWal(file)) {
+            assertEquals(1, wal.getRecoveredRecords());
+            assertEquals(second, Files.size(file));
+            assertEquals(List.of("1000000001"), messageIDs(wal));
+        }
+    }
+
+    @Test
+    @DisplayName("Test JSON_ARRAY stores are replayed after a crash, without duplicates")
+    void testRecoverIntoArchive() throws IOException {
+        Path live = Files.createDirectories(tempDir.resolve("live"));
+        JSONHandler.setDataDirectory(live);
+        JSONHandler.setStorageMode(JSONHandler.StorageMode.JSON_ARRAY);
+        Message first = new Message();
+        first.setRecipient("+27838884567");
+        first.setMessage("Did you get the cake?");
+        first.sentMessage(1);
+        Message second = new Message();
+        second.setRecipient("+27838884567");
+        second.setMessage("Where are you?");
+        second.sentMessage(3);
+
+        // A copy of the files taken now is what a crash would leave: both messages
+        // are only in the log
+        Path crashed = Files.createDirectories(tempDir.resolve("crashed"));
+        Path halfway = Files.createDirectories(tempDir.resolve("halfway"));
+        Files.copy(live.resolve("messages.wal"), crashed.resolve("messages.wal"));
+        Files.copy(live.resolve("messages.wal"), halfway.resolve("messages.wal"));
+
+        // Reads see the logged messages without checkpointing them
+        assertTrue(JSONHandler.getAllMessages().contains(second.getMessageID()));
+        assertEquals("stored", JSONHandler.findMessageByID(second.getMessageID()).getStatus());
+        assertEquals(2, JSONHandler.getMessagesPage(0, 10).size());
+        assertFalse(Files.exists(live.resolve("messages.json")));
+        assertTrue(Files.size(live.resolve("messages.wal")) > 0);
+
+        // Closing the log checkpoints it into messages.json
+        JSONHandler.closeLog();
+        assertEquals(0, Files.size(live.resolve("messages.wal")));
+        assertEquals(2, JSONHandler.getMessagesPage(0, 10).size());
+
+        JSONHandler.setDataDirectory(crashed);
+        assertEquals(2, JSONHandler.recover());
+        assertEquals(0, JSONHandler.recover(), "Recovery runs once per directory");
+        assertEquals("stored", JSONHandler.findMessageByID(second.getMessageID()).getStatus());
+
+        // A crash after messages.json and its mark were replaced but before the log
+        // was emptied
+        Files.copy(live.resolve("messages.json"), halfway.resolve("messages.json"));
+        Files.copy(live.resolve("messages.wal.mark"), halfway.resolve("messages.wal.mark"));
+        JSONHandler.setDataDirectory(halfway);
+        JSONHandler.recover();
+        assertEquals(2, JSONHandler.getMessagesPage(0, 10).size());
+        assertEquals(0, Files.size(halfway.resolve("messages.wal")));
+    }
+
+    @Test
+    @DisplayName("Test a logged record identical to the last one in messages.json is kept")
+    void testRepeatedRecord() throws IOException {
+        // The same message stored twice: once before the last checkpoint, once after
+        JSONHandler.writeMessagesToFile(tempDir.resolve("messages.json"),
+                List.of(JSONHandler.toArrayEntry(record(1))));
+        try (MessageWal wal = new MessageWal(tempDir.resolve("messages.wal"))) {
+            wal.appendAll(List.of(record(1)));
+        }
+        JSONHandler.setDataDirectory(tempDir);
+        JSONHandler.setStorageMode(JSONHandler.StorageMode.JSON_ARRAY);
+        assertEquals(2, JSONHandler.readArchive().size());
+
+        JSONHandler.closeLog();
+        assertEquals(2, JSONHandler.readArchive().size());
+        assertEquals(0, Files.size(tempDir.resolve("messages.wal")));
+    }
+
+    @Test
+    @DisplayName("Test a checkpoint adds the logged records after the existing array, byte for byte")
+    void testCheckpointAppends() throws IOException {
+        Path formatted = tempDir.resolve("formatted.json");
+        JSONHandler.writeMessagesToFile(formatted, List.of(JSONHandler.toArrayEntry(record(1))));
+        Path expected = tempDir.resolve("expected.json");
+        JSONHandler.writeMessagesToFile(expected, List.of(JSONHandler.toArrayEntry(record(1)),
+                JSONHandler.toArrayEntry(record(2)), JSONHandler.toArrayEntry(record(3))));
+        Map<String, String> arrays = new LinkedHashMap<>();
+        arrays.put("formatted", Files.readString(formatted));
+        arrays.put("minified", "[{\"messageID\":\"1000000001\",\"messageCount\":1}]\n");
+        arrays.put("empty", "[ ]");
+        for (Map.Entry<String, String> array : arrays.entrySet()) {
+            Path directory = Files.createDirectories(tempDir.resolve(array.getKey()));
+            String before = array.getValue();
+            Files.writeString(directory.resolve("messages.json"), before);
+            try (MessageWal wal = new MessageWal(directory.resolve("messages.wal"))) {
+                wal.appendAll(List.of(record(2), record(3)));
+            }
+            JSONHandler.closeLog();
+            JSONHandler.setDataDirectory(directory);
+            JSONHandler.setStorageMode(JSONHandler.StorageMode.JSON_ARRAY);
+            JSONHandler.recover();
+            JSONHandler.closeLog();
+
+            String after = Files.readString(directory.resolve("messages.json"));
+            // Everything up to the last entry's closing brace is kept as it was
+            int end = before.lastIndexOf('}') + 1;
+            assertEquals(before.substring(0, end), after.substring(0, end), array.getKey());
+            assertTrue(after.endsWith(JSONHandler.toArrayEntry(record(3)) + "\n]"), array.getKey());
+            assertEquals(array.getKey().equals("empty") ? 2 : 3, JSONHandler.readArchive().size(), array.getKey());
+        }
+        assertEquals(Files.readString(expected), Files.readString(tempDir.resolve("formatted").resolve("messages.json")));
+    }
+}
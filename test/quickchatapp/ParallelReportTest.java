@@ -0,0 +1,74 @@
+package quickchatapp;
+
+import org.junit.jupiter.api.*;
+import org.junit.jupiter.api.io.TempDir;
+import static org.junit.jupiter.api.Assertions.*;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+class ParallelReportTest {
+    @TempDir
+    Path tempDir;
+
+    private int previousParallelism;
+
+    @BeforeEach
+    void setUp() {
+        previousParallelism = ParallelReport.getParallelism();
+    }
+
+    @AfterEach
+    void tearDown() {
+        ParallelReport.setParallelism(previousParallelism);
+    }
+
+    private static String formatList(List<Integer> items, int parallelism) {
+        ParallelReport.setParallelism(parallelism);
+        StringBuilder sb = new StringBuilder();
+        ParallelReport.formatList(sb, items, (out, item) -> out.append(item).append('\n'));
+        return sb.toString();
+    }
+
+    private static String formatFile(Path file, int parallelism) throws IOException {
+        ParallelReport.setParallelism(parallelism);
+        StringBuilder sb = new StringBuilder();
+        ParallelReport.formatJsonLines(sb, file, (out, record) -> out.append(record.getMessageID()).append('\n'));
+        return sb.toString();
+    }
+
+    @Test
+    @DisplayName("Test a parallel list report matches the sequential one")
+    void testListReport() {
+        List<Integer> items = new ArrayList<>();
+        for (int i = 0; i < ParallelReport.LIST_CHUNK * 5 + 17; i++) {
+            items.add(i);
+        }
+        assertEquals(formatList(items, 1), formatList(items, 4));
+    }
+
+    @Test
+    @DisplayName("Test a JSON Lines file split into parallel chunks keeps every record in order")
+    void testFileReport() throws IOException {
+        Path file = tempDir.resolve("messages.jsonl");
+        int records = 0;
+        try (BufferedWriter out = Files.newBufferedWriter(file, StandardCharsets.UTF_8)) {
+            while (Files.size(file) < ParallelReport.FILE_CHUNK * 3) {
+                for (int i = 0; i < 1000; i++, records++) {
+                    out.write(JSONHandler.toLogLine(new MessageRecord(String.valueOf(1000000000L + records), records,
+                            "+27838884567", "Ünïcode message " + records, "10:1:HASH", "sent", "2025-10-13 14:45:30")));
+                    out.write("\n");
+                }
+                out.flush();
+            }
+        }
+
+        String parallel = formatFile(file, 4);
+        assertEquals(formatFile(file, 1), parallel);
+        assertEquals(records, parallel.split("\n").length);
+    }
+}
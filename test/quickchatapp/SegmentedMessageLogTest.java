@@ -0,0 +1,135 @@
+package quickchatapp;
+
+import org.junit.jupiter.api.*;
+import org.junit.jupiter.api.io.TempDir;
+import static org.junit.jupiter.api.Assertions.*;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+
+class SegmentedMessageLogTest {
+    // Small enough that a few records fill a segment
+    private static final long SEGMENT_BYTES = 600;
+
+    @TempDir
+    Path tempDir;
+
+    private static MessageRecord record(int i, String status, String timestamp) {
+        return new MessageRecord(String.valueOf(1000000000L + i), i, "+27838884567",
+                "Message number " + i, "10:" + i + ":MESSAGENUMBER", status, timestamp);
+    }
+
+    private static List<MessageRecord> records(int from, int to) {
+        List<MessageRecord> records = new ArrayList<>();
+        for (int i = from; i < to; i++) {
+            records.add(record(i, "sent", "2025-10-13 14:45:" + (10 + i)));
+        }
+        return records;
+    }
+
+    private static List<String> ids(SegmentedMessageLog log) throws IOException {
+        List<String> ids = new ArrayList<>();
+        log.forEachRecord(record -> ids.add(record.getMessageID()));
+        return ids;
+    }
+
+    @Test
+    @DisplayName("Test segments rotate at the size limit and the manifest survives a reopen")
+    void testRotationAndManifest() throws IOException {
+        Path dir = tempDir.resolve("segments");
+        try (SegmentedMessageLog log = new SegmentedMessageLog(dir, SEGMENT_BYTES)) {
+            for (int i = 0; i < 20; i++) {
+                log.appendAll(records(i, i + 1));
+            }
+            assertTrue(log.getSegments().size() > 2, "Twenty records should not fit in one segment");
+            assertEquals(log.getSegments().size() - 1,
+                    Files.readAllLines(dir.resolve(SegmentedMessageLog.MANIFEST_NAME)).size(),
+                    "The manifest lists every sealed segment");
+        }
+        try (SegmentedMessageLog log = new SegmentedMessageLog(dir, SEGMENT_BYTES)) {
+            assertEquals(records(0, 20).stream().map(MessageRecord::getMessageID).toList(), ids(log));
+            SegmentedMessageLog.Segment first = log.getSegments().get(0);
+            assertEquals(1000000000L, first.getMinMessageID());
+            assertEquals("2025-10-13 14:45:10", first.getFirstTimestamp());
+
+            log.appendAll(records(20, 21));
+            assertEquals("Message number 20", log.findNewest("1000000020").getMessage());
+            assertEquals("Message number 3", log.findNewest("1000000003").getMessage());
+            assertNull(log.findNewest("1000000099"));
+        }
+    }
+
+    @Test
+    @DisplayName("Test compaction rewrites sealed segments and keeps the newest record per ID")
+    void testCompaction() throws IOException {
+        try (SegmentedMessageLog log = new SegmentedMessageLog(tempDir.resolve("segments"), SEGMENT_BYTES)) {
+            for (int i = 0; i < 10; i++) {
+                log.appendAll(records(i, i + 1));
+            }
+            // Re-store message 1, delete message 2, then push both into sealed segments
+            log.appendAll(List.of(record(1, "stored", "2025-10-13 15:00:00")));
+            log.appendAll(List.of(record(2, MessageRecord.DELETED, "2025-10-13 15:00:01")));
+            for (int i = 10; i < 20; i++) {
+                log.appendAll(records(i, i + 1));
+            }
+
+            assertEquals(3, log.compact(), "The older copies of 1 and 2 and the tombstone for 2");
+            assertEquals("stored", log.findNewest("1000000001").getStatus());
+            assertNull(log.findNewest("1000000002"));
+            List<String> ids = ids(log);
+            assertEquals(19, ids.size());
+            assertEquals(0, log.compact(), "A second pass finds nothing to remove");
+        }
+    }
+
+    @Test
+    @DisplayName("Test retention drops old sealed segments but never the active one")
+    void testRetention() throws IOException {
+        Path dir = tempDir.resolve("segments");
+        try (SegmentedMessageLog log = new SegmentedMessageLog(dir, SEGMENT_BYTES)) {
+            for (int i = 0; i < 20; i++) {
+                log.appendAll(records(i, i + 1));
+            }
+            int segments = log.getSegments().size();
+            String keepFrom = log.getSegments().get(1).getFirstTimestamp();
+
+            assertEquals(1, log.removeSegmentsBefore(keepFrom));
+            assertEquals(segments - 1, log.getSegments().size());
+            assertNull(log.findNewest("1000000000"));
+            assertEquals(segments - 1, Files.list(dir).filter(p -> p.toString().endsWith(".jsonl")).count());
+            assertEquals(segments - 2, log.removeSegmentsBefore("9999-12-31 23:59:59"));
+            assertEquals(1, log.getSegments().size());
+        }
+    }
+
+    @Test
+    @DisplayName("Test a line torn by a crash in the active segment is dropped on reopen")
+    void testTornActiveSegment() throws IOException {
+        Path directory = tempDir.resolve("segments");
+        try (SegmentedMessageLog log = new SegmentedMessageLog(directory, SEGMENT_BYTES)) {
+            log.appendAll(records(0, 6));
+        }
+        List<Path> segments;
+        try (SegmentedMessageLog log = new SegmentedMessageLog(directory, SEGMENT_BYTES)) {
+            segments = log.segmentPaths();
+        }
+        Path active = segments.get(segments.size() - 1);
+        String torn = JSONHandler.toLogLine(record(6, "sent", "2025-10-13 14:45:16"));
+        Files.writeString(active, torn.substring(0, torn.length() / 2), StandardOpenOption.APPEND);
+
+        try (SegmentedMessageLog log = new SegmentedMessageLog(directory, SEGMENT_BYTES)) {
+            assertEquals(torn.length() / 2, log.getTruncatedBytes());
+            int stored = 0;
+            for (SegmentedMessageLog.Segment segment : log.getSegments()) {
+                stored += segment.getRecords();
+            }
+            assertEquals(6, stored);
+            log.appendAll(records(7, 8));
+            assertEquals(7, ids(log).size());
+            assertEquals("1000000007", ids(log).get(6));
+        }
+    }
+}
@@ -0,0 +1,69 @@
+package quickchatapp;
+
+import org.junit.jupiter.api.*;
+import static org.junit.jupiter.api.Assertions.*;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+class StripedMessageIdGeneratorTest {
+
+    @Test
+    @DisplayName("Test IDs from many threads are unique and have 10 digits")
+    void testUniqueAcrossThreads() throws InterruptedException {
+        StripedMessageIdGenerator generator = new StripedMessageIdGenerator(0, 64);
+        Set<Long> ids = ConcurrentHashMap.newKeySet();
+        List<Thread> threads = new ArrayList<>();
+        for (int t = 0; t < 8; t++) {
+            threads.add(new Thread(() -> {
+                for (int i = 0; i < 10_000; i++) {
+                    long id = generator.nextId();
+                    assertEquals(10, String.valueOf(id).length());
+                    ids.add(id);
+                }
+            }));
+        }
+        for (Thread thread : threads) {
+            thread.start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        assertEquals(80_000, ids.size());
+    }
+
+    @Test
+    @DisplayName("Test IDs wrap around at the end of the 10-digit range")
+    void testWrapAround() {
+        StripedMessageIdGenerator generator = new StripedMessageIdGenerator(StripedMessageIdGenerator.ID_RANGE - 1, 4);
+        assertEquals(9_999_999_999L, generator.nextId());
+        assertEquals(1_000_000_000L, generator.nextId());
+    }
+
+    @Test
+    @DisplayName("Test messages take their IDs from the configured generator")
+    void testPluggableGenerator() {
+        MessageIdGenerator previous = Message.getIdGenerator();
+        try {
+            Message.setIdGenerator(() -> 1234567890L);
+            Message message = new Message();
+            assertEquals("1234567890", message.getMessageID());
+            assertTrue(message.checkMessageID());
+        } finally {
+            Message.setIdGenerator(previous);
+        }
+    }
+
+    @Test
+    @DisplayName("Test IDs continue after the highest persisted one, including in blocks already claimed")
+    void testContinueAfter() {
+        StripedMessageIdGenerator generator = new StripedMessageIdGenerator(0, 64);
+        assertEquals(1_000_000_000L, generator.nextId());
+        generator.continueAfter(1_000_500_000L);
+        assertEquals(1_000_500_001L, generator.nextId());
+        // Never moves backwards
+        generator.continueAfter(1_000_000_010L);
+        assertTrue(generator.nextId() > 1_000_500_001L);
+    }
+}
@@ -0,0 +1,55 @@
+package quickchatapp;
+
+import org.junit.jupiter.api.*;
+import static org.junit.jupiter.api.Assertions.*;
+import java.util.regex.Pattern;
+
+class ValidatorsTest {
+    // Edge cases for every rule, including non-ASCII letters and digits
+    private static final String[] INPUTS = {
+        "", "+", "+2", "+27", "+27838968976", "+2783896897", "+278389689761", "27838968976+",
+        "+27838968g76", "+26838968976", "+1234567", "+12345678", "+1234567890123", "+12345678901234",
+        "+٢٧٨٣٨٩٦٨٩٧٦", "++27838968976", " +27838968976", "+27838968976\n",
+        "kyl_1", "kyle!!!!!!", "_", "kyle_", "kyle_1", "ky_l", "k y_",
+        "Ch&&sec@ke99!", "password", "Password1", "Password!", "PASSWORD1!", "Passw0rd", "Pässw0rd",
+        "ÉCOLE123abc", "Passw0rd٣!", "Abcdefg1😀", "aB1!", "aBcdefg1 ",
+    };
+
+    @Test
+    @DisplayName("Test the validators accept exactly what the regular expressions they replace accepted")
+    void testSameAsRegex() {
+        for (String input : INPUTS) {
+            assertEquals(Pattern.matches("^\\+27[0-9]{9}$", input),
+                    Validators.isSouthAfricanCellNumber(input), input);
+            assertEquals(Pattern.matches("^\\+\\d{1,3}\\d{7,10}$", input),
+                    Validators.isInternationalCellNumber(input), input);
+            assertEquals(input.startsWith("+") && input.length() <= 13 && input.length() >= 11
+                    && input.substring(1).matches("\\d+"), Validators.isValidRecipient(input), input);
+            assertEquals(input.length() >= 8 && Pattern.compile("[A-Z]").matcher(input).find()
+                    && Pattern.compile("[0-9]").matcher(input).find()
+                    && Pattern.compile("[^A-Za-z0-9]").matcher(input).find(),
+                    Validators.isComplexAsciiPassword(input), input);
+            assertEquals(input.contains("_") && input.length() <= 5, Validators.isValidUsername(input), input);
+        }
+    }
+
+    @Test
+    @DisplayName("Test Login's password rule counts Unicode capitals and digits")
+    void testUnicodePassword() {
+        assertTrue(Validators.isComplexPassword("ÉCOLE123!"));
+        assertFalse(Validators.isComplexAsciiPassword("Écolé123abc"));
+        assertTrue(Validators.isComplexPassword("Passw٣rd!"));
+        assertFalse(Validators.isComplexPassword("Passw0rd"));
+    }
+
+    @Test
+    @DisplayName("Test null is never valid")
+    void testNull() {
+        assertFalse(Validators.isValidUsername(null));
+        assertFalse(Validators.isComplexPassword(null));
+        assertFalse(Validators.isComplexAsciiPassword(null));
+        assertFalse(Validators.isSouthAfricanCellNumber(null));
+        assertFalse(Validators.isInternationalCellNumber(null));
+        assertFalse(Validators.isValidRecipient(null));
+    }
+}